@@ -0,0 +1,35 @@
+package com.example.libreria.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@EnableCaching
+public class CacheConfig {
+    
+    public static final String BOOKS_CACHE = "books";
+    
+    @Value("${libreria.cache.books.max-size:10000}")
+    private long booksMaxSize;
+    
+    @Value("${libreria.cache.books.ttl:10m}")
+    private Duration booksTtl;
+    
+    @Bean
+    public CacheManager cacheManager() {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager(BOOKS_CACHE);
+        // recordStats() permite que Actuator publique hits, misses y evictions (cache.gets, cache.evictions)
+        cacheManager.setCaffeine(Caffeine.newBuilder()
+                .maximumSize(booksMaxSize)
+                .expireAfterWrite(booksTtl)
+                .recordStats());
+        return cacheManager;
+    }
+}
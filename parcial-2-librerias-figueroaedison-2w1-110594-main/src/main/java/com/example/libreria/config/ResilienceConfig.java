@@ -0,0 +1,164 @@
+package com.example.libreria.config;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.core.IntervalFunction;
+import io.github.resilience4j.micrometer.tagged.TaggedBulkheadMetrics;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.github.resilience4j.micrometer.tagged.TaggedRetryMetrics;
+import io.github.resilience4j.retry.Retry;
+import io.github.resilience4j.retry.RetryConfig;
+import io.github.resilience4j.retry.RetryRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.time.Duration;
+
+/**
+ * Circuit breaker, bulkhead y reintentos para los pedidos de libros por id a la API externa.
+ * El bulkhead limita cuántos hilos pueden estar esperando a la API a la vez; el circuit breaker
+ * corta los pedidos mientras la API falla o responde lento, sin esperar el timeout de lectura.
+ * Los reintentos se aplican a cada libro pedido por id; con micro-lotes habilitados, el circuit breaker
+ * y el bulkhead cuentan la llamada multi-id del lote y no cada libro.
+ */
+@Configuration
+public class ResilienceConfig {
+    
+    public static final String EXTERNAL_BOOKS_API = "external-books-api";
+    
+    @Value("${external.api.resilience.failure-rate-threshold:50}")
+    private float failureRateThreshold;
+    
+    @Value("${external.api.resilience.slow-call-duration:2s}")
+    private Duration slowCallDuration;
+    
+    @Value("${external.api.resilience.slow-call-rate-threshold:50}")
+    private float slowCallRateThreshold;
+    
+    @Value("${external.api.resilience.sliding-window-size:20}")
+    private int slidingWindowSize;
+    
+    @Value("${external.api.resilience.minimum-calls:10}")
+    private int minimumCalls;
+    
+    @Value("${external.api.resilience.open-duration:30s}")
+    private Duration openDuration;
+    
+    @Value("${external.api.resilience.half-open-calls:3}")
+    private int halfOpenCalls;
+    
+    @Value("${external.api.resilience.max-concurrent-calls:10}")
+    private int maxConcurrentCalls;
+    
+    @Value("${external.api.resilience.max-wait:0ms}")
+    private Duration maxWait;
+    
+    @Value("${external.api.resilience.retry.max-attempts:3}")
+    private int retryMaxAttempts;
+    
+    @Value("${external.api.resilience.retry.initial-backoff:100ms}")
+    private Duration retryInitialBackoff;
+    
+    @Value("${external.api.resilience.retry.multiplier:2}")
+    private double retryMultiplier;
+    
+    @Value("${external.api.resilience.retry.jitter:0.5}")
+    private double retryJitter;
+    
+    @Bean
+    public CircuitBreakerRegistry circuitBreakerRegistry() {
+        return CircuitBreakerRegistry.of(CircuitBreakerConfig.custom()
+                .failureRateThreshold(failureRateThreshold)
+                .slowCallDurationThreshold(slowCallDuration)
+                .slowCallRateThreshold(slowCallRateThreshold)
+                .slidingWindowSize(slidingWindowSize)
+                .minimumNumberOfCalls(minimumCalls)
+                .waitDurationInOpenState(openDuration)
+                .permittedNumberOfCallsInHalfOpenState(halfOpenCalls)
+                .automaticTransitionFromOpenToHalfOpenEnabled(true)
+                // Un rechazo del bulkhead no es culpa de la API
+                .ignoreExceptions(BulkheadFullException.class)
+                .recordException(ResilienceConfig::isExternalApiFailure)
+                .build());
+    }
+    
+    /**
+     * Indica si el error cuenta como falla de la API para el circuit breaker.
+     * Un 4xx (por ejemplo un 404 de un libro inexistente) es una respuesta válida, aunque llegue
+     * envuelto en la RuntimeException del servicio.
+     */
+    public static boolean isExternalApiFailure(Throwable error) {
+        return !(error instanceof HttpClientErrorException)
+                && !(error.getCause() instanceof HttpClientErrorException);
+    }
+    
+    public static boolean isRetryable(Throwable error) {
+        return isExternalApiFailure(error)
+                && !(error instanceof CallNotPermittedException)
+                && !(error instanceof BulkheadFullException);
+    }
+    
+    @Bean
+    public CircuitBreaker externalBooksCircuitBreaker(CircuitBreakerRegistry circuitBreakerRegistry) {
+        return circuitBreakerRegistry.circuitBreaker(EXTERNAL_BOOKS_API);
+    }
+    
+    @Bean
+    public BulkheadRegistry bulkheadRegistry() {
+        return BulkheadRegistry.of(BulkheadConfig.custom()
+                .maxConcurrentCalls(maxConcurrentCalls)
+                .maxWaitDuration(maxWait)
+                .build());
+    }
+    
+    @Bean
+    public Bulkhead externalBooksBulkhead(BulkheadRegistry bulkheadRegistry) {
+        return bulkheadRegistry.bulkhead(EXTERNAL_BOOKS_API);
+    }
+    
+    /**
+     * Reintentos con backoff exponencial y jitter: la espera n-ésima es initial-backoff * multiplier^(n-1)
+     * ± jitter, para que los clientes que fallaron juntos no vuelvan a llamar todos a la vez.
+     * No se reintentan los 4xx ni los pedidos que rechazaron el circuit breaker o el bulkhead.
+     */
+    @Bean
+    public RetryRegistry retryRegistry() {
+        return RetryRegistry.of(RetryConfig.custom()
+                .maxAttempts(retryMaxAttempts)
+                .intervalFunction(IntervalFunction.ofExponentialRandomBackoff(
+                        retryInitialBackoff, retryMultiplier, retryJitter))
+                .retryOnException(ResilienceConfig::isRetryable)
+                .build());
+    }
+    
+    @Bean
+    public Retry externalBooksRetry(RetryRegistry retryRegistry) {
+        return retryRegistry.retry(EXTERNAL_BOOKS_API);
+    }
+    
+    // Publica resilience4j.circuitbreaker.state, .calls, .not.permitted.calls y resilience4j.bulkhead.*
+    @Bean
+    public MeterBinder circuitBreakerMetrics(CircuitBreakerRegistry circuitBreakerRegistry) {
+        return TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(circuitBreakerRegistry);
+    }
+    
+    @Bean
+    public MeterBinder bulkheadMetrics(BulkheadRegistry bulkheadRegistry) {
+        return TaggedBulkheadMetrics.ofBulkheadRegistry(bulkheadRegistry);
+    }
+    
+    // Publica resilience4j.retry.calls (con y sin reintentos, exitosas o fallidas)
+    @Bean
+    public MeterBinder retryMetrics(RetryRegistry retryRegistry) {
+        return TaggedRetryMetrics.ofRetryRegistry(retryRegistry);
+    }
+}
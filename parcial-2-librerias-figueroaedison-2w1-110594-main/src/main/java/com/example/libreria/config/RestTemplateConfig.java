@@ -1,14 +1,50 @@
 package com.example.libreria.config;
 
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.ConnectionKeepAliveStrategy;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.DefaultConnectionKeepAliveStrategy;
+import org.apache.hc.client5.http.impl.DefaultHttpRequestRetryStrategy;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.client.ClientHttpRequestFactory;
-import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
+import java.time.Duration;
+
 @Configuration
 public class RestTemplateConfig {
     
+    @Value("${external.api.http.connect-timeout:5s}")
+    private Duration connectTimeout;
+    
+    @Value("${external.api.http.read-timeout:5s}")
+    private Duration readTimeout;
+    
+    @Value("${external.api.http.max-connections:50}")
+    private int maxConnections;
+    
+    @Value("${external.api.http.max-connections-per-route:20}")
+    private int maxConnectionsPerRoute;
+    
+    @Value("${external.api.http.idle-eviction:30s}")
+    private Duration idleEviction;
+    
+    @Value("${external.api.http.keep-alive:30s}")
+    private Duration keepAlive;
+    
     @Bean
     public RestTemplate restTemplate() {
         RestTemplate restTemplate = new RestTemplate();
@@ -18,10 +54,64 @@ public class RestTemplateConfig {
     
     @Bean
     public ClientHttpRequestFactory clientHttpRequestFactory() {
-        SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
-        factory.setConnectTimeout(5000);
-        factory.setReadTimeout(5000);
-        return factory;
+        return new HttpComponentsClientHttpRequestFactory(httpClient());
+    }
+    
+    /**
+     * Cliente HTTP con pool de conexiones persistentes (keep-alive), para no pagar
+     * un handshake TCP por cada llamada a la API externa.
+     * Se queda en HTTP/1.1: RestTemplate usa el cliente clásico (bloqueante), que no habla HTTP/2,
+     * y con el pool ya se reutilizan las conexiones; el feed completo viaja en una sola respuesta.
+     */
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient httpClient() {
+        return HttpClients.custom()
+                .setConnectionManager(connectionManager())
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.of(connectTimeout))
+                        .setConnectionKeepAlive(TimeValue.of(keepAlive))
+                        .build())
+                .setKeepAliveStrategy(cappedKeepAlive(TimeValue.of(keepAlive)))
+                .evictIdleConnections(TimeValue.of(idleEviction))
+                .evictExpiredConnections()
+                // Un solo reintento, y solo de pedidos idempotentes que fallaron por E/S sin respuesta: el caso
+                // típico es una conexión del pool que el servidor ya cerró. El feed no tiene otro reintento.
+                // Los timeouts y las respuestas 429/503 no se reintentan acá: de eso se ocupa ExternalBookService,
+                // con backoff y contando cada intento
+                .setRetryStrategy(new DefaultHttpRequestRetryStrategy(1, TimeValue.ZERO_MILLISECONDS) {
+                    @Override
+                    public boolean retryRequest(HttpResponse response, int execCount, HttpContext context) {
+                        return false;
+                    }
+                })
+                .build();
+    }
+    
+    /**
+     * Respeta el Keep-Alive: timeout=N que anuncia el servidor (DefaultConnectionKeepAliveStrategy),
+     * sin pasar de external.api.http.keep-alive: no se reutiliza una conexión que el servidor va a cerrar antes.
+     */
+    static ConnectionKeepAliveStrategy cappedKeepAlive(TimeValue max) {
+        return (response, context) -> DefaultConnectionKeepAliveStrategy.INSTANCE
+                .getKeepAliveDuration(response, context)
+                .min(max);
+    }
+    
+    @Bean(destroyMethod = "close")
+    public PoolingHttpClientConnectionManager connectionManager() {
+        return PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnectionsPerRoute)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.of(connectTimeout))
+                        .setSocketTimeout(Timeout.of(readTimeout))
+                        .build())
+                .build();
+    }
+    
+    // Publica httpcomponents.httpclient.pool.* (conexiones disponibles, alquiladas y pedidos en espera)
+    @Bean
+    public MeterBinder externalApiConnectionPoolMetrics() {
+        return new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager(), "external-books-api");
     }
 }
-
@@ -1,12 +1,24 @@
 package com.example.libreria.controller;
 
+import com.example.libreria.dto.BookPageResponseDTO;
 import com.example.libreria.dto.BookResponseDTO;
+import com.example.libreria.dto.SyncJobDTO;
 import com.example.libreria.service.BookService;
+import com.example.libreria.service.SyncJob;
+import com.example.libreria.service.SyncJobService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.List;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
 
 @RestController
 @RequestMapping("/api/books")
@@ -14,17 +26,44 @@ import java.util.List;
 public class BookController {
     
     private final BookService bookService;
+    private final SyncJobService syncJobService;
+    private final ObjectMapper objectMapper;
     
+    /**
+     * Inicia la sincronización en segundo plano y responde 202 con la tarea creada.
+     * El avance se consulta en la URL del header Location.
+     */
     @PostMapping("/sync")
-    public ResponseEntity<String> syncBooks() {
-        bookService.syncBooksFromExternalApi();
-        return ResponseEntity.ok("Libros sincronizados exitosamente desde la API externa");
+    public ResponseEntity<SyncJobDTO> syncBooks() {
+        SyncJob job = syncJobService.startSync();
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/books/sync/" + job.getId()))
+                .body(job.toDTO());
     }
     
+    @GetMapping("/sync/{jobId}")
+    public ResponseEntity<SyncJobDTO> getSyncJob(@PathVariable String jobId) {
+        return ResponseEntity.ok(syncJobService.getJob(jobId).toDTO());
+    }
+    
+    /**
+     * Devuelve el catálogo completo como un arreglo JSON escrito en streaming.
+     * Se recorre el catálogo por páginas (keyset sobre externalId) y cada página se escribe
+     * y se descarta antes de leer la siguiente, por lo que la memoria no crece con el catálogo.
+     */
     @GetMapping
-    public ResponseEntity<List<BookResponseDTO>> getAllBooks() {
-        List<BookResponseDTO> books = bookService.getAllBooks();
-        return ResponseEntity.ok(books);
+    public ResponseEntity<StreamingResponseBody> getAllBooks() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(this::writeCatalog);
+    }
+    
+    @GetMapping("/page")
+    public ResponseEntity<BookPageResponseDTO> getBooksPage(
+            @RequestParam(required = false) Long after,
+            @RequestParam(required = false) Integer size) {
+        BookPageResponseDTO page = bookService.getBooksPage(after, size);
+        return ResponseEntity.ok(page);
     }
     
     @GetMapping("/{externalId}")
@@ -40,5 +79,24 @@ public class BookController {
         BookResponseDTO book = bookService.updateStock(externalId, stockQuantity);
         return ResponseEntity.ok(book);
     }
+    
+    private void writeCatalog(OutputStream outputStream) throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+            // Se evita el flush por cada libro; se hace uno por página
+            ObjectWriter writer = objectMapper.writerFor(BookResponseDTO.class)
+                    .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+            generator.writeStartArray();
+            Long cursor = null;
+            BookPageResponseDTO page;
+            do {
+                page = bookService.getBooksPage(cursor, BookService.MAX_PAGE_SIZE);
+                for (BookResponseDTO book : page.getContent()) {
+                    writer.writeValue(generator, book);
+                }
+                generator.flush();
+                cursor = page.getNextCursor();
+            } while (page.getHasNext());
+            generator.writeEndArray();
+        }
+    }
 }
-
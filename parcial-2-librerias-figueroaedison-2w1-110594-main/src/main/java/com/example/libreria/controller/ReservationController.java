@@ -1,15 +1,26 @@
 package com.example.libreria.controller;
 
+import com.example.libreria.dto.ReservationFilterDTO;
+import com.example.libreria.dto.ReservationPageResponseDTO;
 import com.example.libreria.dto.ReservationRequestDTO;
 import com.example.libreria.dto.ReservationResponseDTO;
 import com.example.libreria.dto.ReturnBookRequestDTO;
+import com.example.libreria.service.ReservationFacade;
 import com.example.libreria.service.ReservationService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 
 @RestController
@@ -18,11 +29,13 @@ import java.util.List;
 public class ReservationController {
     
     private final ReservationService reservationService;
+    private final ReservationFacade reservationFacade;
+    private final ObjectMapper objectMapper;
     
     @PostMapping
     public ResponseEntity<ReservationResponseDTO> createReservation(
             @Valid @RequestBody ReservationRequestDTO requestDTO) {
-        ReservationResponseDTO reservation = reservationService.createReservation(requestDTO);
+        ReservationResponseDTO reservation = reservationFacade.createReservation(requestDTO);
         return ResponseEntity.status(HttpStatus.CREATED).body(reservation);
     }
     
@@ -32,16 +45,44 @@ public class ReservationController {
         return ResponseEntity.ok(reservation);
     }
     
+    /**
+     * Devuelve todas las reservas (de la más nueva a la más vieja) como un arreglo JSON escrito en streaming,
+     * recorriéndolas por páginas: la memoria no crece con el historial.
+     */
     @GetMapping
-    public ResponseEntity<List<ReservationResponseDTO>> getAllReservations() {
-        List<ReservationResponseDTO> reservations = reservationService.getAllReservations();
-        return ResponseEntity.ok(reservations);
+    public ResponseEntity<StreamingResponseBody> getAllReservations() {
+        return streamReservations(new ReservationFilterDTO());
+    }
+    
+    /**
+     * Una página de reservas, con filtros opcionales: userId, bookExternalId, status y rango de fechas
+     * de creación (from, to, en formato yyyy-MM-dd). Para la página siguiente se pasa el nextCursor en after.
+     */
+    @GetMapping("/page")
+    public ResponseEntity<ReservationPageResponseDTO> getReservationsPage(
+            ReservationFilterDTO filter,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer size) {
+        ReservationPageResponseDTO page = reservationService.getReservationsPage(filter, after, size);
+        return ResponseEntity.ok(page);
     }
     
     @GetMapping("/user/{userId}")
-    public ResponseEntity<List<ReservationResponseDTO>> getReservationsByUserId(@PathVariable Long userId) {
-        List<ReservationResponseDTO> reservations = reservationService.getReservationsByUserId(userId);
-        return ResponseEntity.ok(reservations);
+    public ResponseEntity<StreamingResponseBody> getReservationsByUserId(@PathVariable Long userId) {
+        ReservationFilterDTO filter = new ReservationFilterDTO();
+        filter.setUserId(userId);
+        return streamReservations(filter);
+    }
+    
+    @GetMapping("/user/{userId}/page")
+    public ResponseEntity<ReservationPageResponseDTO> getReservationsPageByUserId(
+            @PathVariable Long userId,
+            ReservationFilterDTO filter,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer size) {
+        filter.setUserId(userId);
+        ReservationPageResponseDTO page = reservationService.getReservationsPage(filter, after, size);
+        return ResponseEntity.ok(page);
     }
     
     @GetMapping("/active")
@@ -63,5 +104,31 @@ public class ReservationController {
         ReservationResponseDTO reservation = reservationService.returnBook(id, returnRequest);
         return ResponseEntity.ok(reservation);
     }
+    
+    private ResponseEntity<StreamingResponseBody> streamReservations(ReservationFilterDTO filter) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(outputStream -> writeReservations(filter, outputStream));
+    }
+    
+    private void writeReservations(ReservationFilterDTO filter, OutputStream outputStream) throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+            // Se evita el flush por cada reserva; se hace uno por página
+            ObjectWriter writer = objectMapper.writerFor(ReservationResponseDTO.class)
+                    .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+            generator.writeStartArray();
+            String cursor = null;
+            ReservationPageResponseDTO page;
+            do {
+                page = reservationService.getReservationsPage(filter, cursor, ReservationService.MAX_PAGE_SIZE);
+                for (ReservationResponseDTO reservation : page.getContent()) {
+                    writer.writeValue(generator, reservation);
+                }
+                generator.flush();
+                cursor = page.getNextCursor();
+            } while (page.getHasNext());
+            generator.writeEndArray();
+        }
+    }
 }
 
@@ -0,0 +1,18 @@
+package com.example.libreria.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookPageResponseDTO {
+    
+    private List<BookResponseDTO> content;
+    private Integer size;
+    private Long nextCursor;
+    private Boolean hasNext;
+}
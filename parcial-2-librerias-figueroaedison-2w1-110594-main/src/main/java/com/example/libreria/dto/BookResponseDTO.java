@@ -21,5 +21,8 @@ public class BookResponseDTO {
     private BigDecimal price;
     private Integer stockQuantity;
     private Integer availableQuantity;
+    
+    // Ya no viene en la API externa: no se lista ni se puede reservar
+    private Boolean retired;
 }
 
@@ -0,0 +1,29 @@
+package com.example.libreria.dto;
+
+import com.example.libreria.model.Reservation;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDate;
+
+/**
+ * Filtros opcionales del listado paginado de reservas; los que vienen en null no se aplican
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReservationFilterDTO {
+    
+    private Long userId;
+    private Long bookExternalId;
+    private Reservation.ReservationStatus status;
+    
+    // Rango de fechas de creación, ambos extremos incluidos
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate from;
+    
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate to;
+}
@@ -0,0 +1,19 @@
+package com.example.libreria.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReservationPageResponseDTO {
+    
+    private List<ReservationResponseDTO> content;
+    private Integer size;
+    // Cursor opaco (createdAt e id de la última reserva) para pedir la página siguiente
+    private String nextCursor;
+    private Boolean hasNext;
+}
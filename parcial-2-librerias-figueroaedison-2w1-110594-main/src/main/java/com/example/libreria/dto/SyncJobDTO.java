@@ -0,0 +1,25 @@
+package com.example.libreria.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SyncJobDTO {
+    
+    private String jobId;
+    private String status;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private Long processed;
+    private Long failed;
+    private Integer chunks;
+    private Double rowsPerSecond;
+    private SyncResultDTO result;
+    private List<String> errors;
+}
@@ -0,0 +1,22 @@
+package com.example.libreria.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SyncResultDTO {
+    
+    private Integer created;
+    private Integer updated;
+    private Integer unchanged;
+    
+    // Libros activos retirados del catálogo en esta sincronización porque ya no vienen en la API;
+    // no se borran (ver Book.retired) y los retirados en sincronizaciones anteriores no se cuentan
+    private Integer deleted;
+    
+    // true si la API respondió 304 y no hubo nada que sincronizar
+    private Boolean notModified;
+}
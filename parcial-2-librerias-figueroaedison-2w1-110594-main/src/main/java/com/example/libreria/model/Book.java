@@ -4,12 +4,14 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.BatchSize;
 
 import java.math.BigDecimal;
 import java.util.List;
 
 @Entity
 @Table(name = "books")
+@EntityListeners(BookCacheListener.class)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -22,7 +24,10 @@ public class Book {
     @Column(nullable = false)
     private String title;
     
+    // Las rutas que no usan un EntityGraph cargan los autores en lotes (evita N+1).
+    // El lote coincide con BookService.MAX_PAGE_SIZE: una página completa carga sus autores en una sola consulta
     @ElementCollection
+    @BatchSize(size = 500)
     @CollectionTable(name = "book_authors", joinColumns = @JoinColumn(name = "book_id"))
     @Column(name = "author_name")
     private List<String> authorName;
@@ -45,5 +50,14 @@ public class Book {
     
     @Column(name = "available_quantity", nullable = false)
     private Integer availableQuantity = 0;
+    
+    // Huella del contenido recibido de la API externa (ver BookFingerprint)
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+    
+    // Ya no viene en la API externa: se conserva por las reservas existentes, pero no se lista ni se reserva
+    // Con default en la columna para poder agregarla a una tabla con filas existentes
+    @Column(nullable = false, columnDefinition = "boolean default false")
+    private Boolean retired = false;
 }
 
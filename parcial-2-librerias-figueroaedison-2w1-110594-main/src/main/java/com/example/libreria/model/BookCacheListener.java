@@ -0,0 +1,47 @@
+package com.example.libreria.model;
+
+import com.example.libreria.config.CacheConfig;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import lombok.RequiredArgsConstructor;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Invalida la entrada de un libro en la caché "books" cada vez que la fila cambia
+ * (updateStock, sincronización, reservas y devoluciones).
+ * Si hay una transacción activa la invalidación se hace después del commit,
+ * para que una lectura concurrente no vuelva a cachear el valor anterior.
+ */
+@Component
+@RequiredArgsConstructor
+public class BookCacheListener {
+    
+    private final CacheManager cacheManager;
+    
+    @PostUpdate
+    @PostRemove
+    public void onBookChanged(Book book) {
+        evict(book.getExternalId());
+    }
+    
+    public void evict(Long externalId) {
+        Cache cache = cacheManager.getCache(CacheConfig.BOOKS_CACHE);
+        if (cache == null || externalId == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.evict(externalId);
+                }
+            });
+        } else {
+            cache.evict(externalId);
+        }
+    }
+}
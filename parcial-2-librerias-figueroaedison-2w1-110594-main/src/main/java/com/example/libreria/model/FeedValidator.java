@@ -0,0 +1,33 @@
+package com.example.libreria.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Validadores HTTP (ETag y Last-Modified) del último feed de la API externa sincronizado por completo.
+ * Se envían en la siguiente sincronización para que la API responda 304 si el feed no cambió.
+ */
+@Entity
+@Table(name = "feed_validators")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FeedValidator {
+    
+    @Id
+    @Column(length = 512)
+    private String url;
+    
+    @Column(name = "etag")
+    private String etag;
+    
+    @Column(name = "last_modified")
+    private String lastModified;
+    
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -10,7 +10,18 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "reservations")
+// Paginación por cursor (created_at, id), sola o detrás de un filtro por igualdad (ver ReservationPageRepository);
+// user_created también sirve a findByUserId. status_due: findActiveDueDates, con la que OverdueTracker arma su
+// índice al arrancar, se resuelve solo con el índice, y findOverdueReservations es un rango de fechas dentro de
+// ACTIVE. book_status: reservas activas de un libro, el conteo se resuelve solo con el índice
+@Table(name = "reservations", indexes = {
+        @Index(name = "idx_reservations_created", columnList = "created_at, id"),
+        @Index(name = "idx_reservations_user_created", columnList = "user_id, created_at, id"),
+        @Index(name = "idx_reservations_book_created", columnList = "book_external_id, created_at, id"),
+        @Index(name = "idx_reservations_status_created", columnList = "status, created_at, id"),
+        @Index(name = "idx_reservations_status_due", columnList = "status, expected_return_date"),
+        @Index(name = "idx_reservations_book_status", columnList = "book_external_id, status")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -0,0 +1,142 @@
+package com.example.libreria.repository;
+
+import com.example.libreria.dto.ExternalBookDTO;
+import com.example.libreria.model.BookCacheListener;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Escrituras masivas del catálogo con JDBC en lotes.
+ * Se usa en la sincronización, donde pasar por el ciclo de vida de JPA libro por libro
+ * (select, dirty-check, update) es el costo dominante.
+ */
+@Repository
+@RequiredArgsConstructor
+public class BookBulkRepository {
+    
+    private static final int BATCH_SIZE = 500;
+    
+    // Upsert: si el libro existe solo se actualizan los datos del catálogo, nunca el stock.
+    // Un libro retirado que vuelve a aparecer en la API queda activo otra vez
+    private static final String UPSERT_BOOK_SQL = """
+            MERGE INTO books b
+            USING (VALUES (CAST(? AS BIGINT), CAST(? AS VARCHAR(255)), CAST(? AS INTEGER), CAST(? AS INTEGER),
+                           CAST(? AS BOOLEAN), CAST(? AS NUMERIC(10, 2)), CAST(? AS VARCHAR(64))))
+                AS s (external_id, title, first_publish_year, edition_count, has_fulltext, price, content_hash)
+            ON b.external_id = s.external_id
+            WHEN MATCHED THEN UPDATE SET
+                title = s.title, first_publish_year = s.first_publish_year, edition_count = s.edition_count,
+                has_fulltext = s.has_fulltext, price = s.price, content_hash = s.content_hash, retired = FALSE
+            WHEN NOT MATCHED THEN INSERT
+                (external_id, title, first_publish_year, edition_count, has_fulltext, price, content_hash,
+                 stock_quantity, available_quantity, retired)
+                VALUES (s.external_id, s.title, s.first_publish_year, s.edition_count, s.has_fulltext, s.price,
+                        s.content_hash, CAST(? AS INTEGER), CAST(? AS INTEGER), FALSE)
+            """;
+    
+    private static final String DELETE_AUTHORS_SQL = "DELETE FROM book_authors WHERE book_id = ?";
+    
+    private static final String INSERT_AUTHOR_SQL = "INSERT INTO book_authors (book_id, author_name) VALUES (?, ?)";
+    
+    // Recorre la clave primaria en orden, sin ordenar en memoria
+    private static final String ACTIVE_IDS_SQL =
+            "SELECT external_id FROM books WHERE retired = FALSE ORDER BY external_id";
+    
+    private static final String RETIRE_BOOK_SQL = "UPDATE books SET retired = TRUE WHERE external_id = ?";
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final BookCacheListener bookCacheListener;
+    
+    /**
+     * Inserta o actualiza los libros recibidos junto con sus autores.
+     * Cada llamada confirma en su propia transacción, salvo que ya exista una en curso.
+     *
+     * @param books libros nuevos o modificados en la API externa
+     * @param fingerprints huella de contenido de cada libro, por externalId
+     * @param initialStock stock asignado a los libros nuevos
+     */
+    @Transactional
+    public void upsertBooks(List<ExternalBookDTO> books, Map<Long, String> fingerprints, int initialStock) {
+        if (books.isEmpty()) {
+            return;
+        }
+        
+        jdbcTemplate.batchUpdate(UPSERT_BOOK_SQL, books, BATCH_SIZE, (ps, book) -> {
+            ps.setLong(1, book.getId());
+            ps.setString(2, book.getTitle());
+            ps.setObject(3, book.getFirstPublishYear(), Types.INTEGER);
+            ps.setObject(4, book.getEditionCount(), Types.INTEGER);
+            ps.setObject(5, book.getHasFulltext(), Types.BOOLEAN);
+            ps.setBigDecimal(6, book.getPrice());
+            ps.setString(7, fingerprints.get(book.getId()));
+            ps.setInt(8, initialStock);
+            ps.setInt(9, initialStock);
+        });
+        
+        // Los autores se reemplazan completos, igual que hace Hibernate con la colección
+        jdbcTemplate.batchUpdate(DELETE_AUTHORS_SQL, books, BATCH_SIZE,
+                (ps, book) -> ps.setLong(1, book.getId()));
+        
+        List<Object[]> authors = new ArrayList<>();
+        for (ExternalBookDTO book : books) {
+            if (book.getAuthorName() != null) {
+                for (String author : book.getAuthorName()) {
+                    authors.add(new Object[]{book.getId(), author});
+                }
+            }
+        }
+        jdbcTemplate.batchUpdate(INSERT_AUTHOR_SQL, authors, BATCH_SIZE,
+                (ps, author) -> {
+                    ps.setLong(1, (Long) author[0]);
+                    ps.setString(2, (String) author[1]);
+                });
+        
+        // JDBC no pasa por BookCacheListener
+        books.forEach(book -> bookCacheListener.evict(book.getId()));
+    }
+    
+    /**
+     * Inserta o actualiza un único libro en una transacción propia, independiente de la que esté en curso.
+     * Lo usa la importación a demanda: el libro queda en el catálogo aunque falle la operación que lo pidió.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void importBook(ExternalBookDTO book, String fingerprint, int initialStock) {
+        upsertBooks(List.of(book), Map.of(book.getId(), fingerprint), initialStock);
+    }
+    
+    /**
+     * Retira los libros activos del catálogo que no están en el feed.
+     * Los ids activos se leen ordenados y se recorren a la par de los del feed (merge de dos listas ordenadas),
+     * así que no hay una consulta por libro y solo se escriben los que hay que retirar.
+     * Los libros no se borran: las reservas existentes siguen apuntando a ellos.
+     *
+     * @param sortedFeedIds ids del feed, ordenados de menor a mayor y sin repetidos
+     * @return cantidad de libros retirados
+     */
+    @Transactional
+    public int retireBooksNotIn(long[] sortedFeedIds) {
+        List<Long> missing = new ArrayList<>();
+        int[] position = {0};
+        jdbcTemplate.query(ACTIVE_IDS_SQL, rs -> {
+            long externalId = rs.getLong(1);
+            while (position[0] < sortedFeedIds.length && sortedFeedIds[position[0]] < externalId) {
+                position[0]++;
+            }
+            if (position[0] == sortedFeedIds.length || sortedFeedIds[position[0]] != externalId) {
+                missing.add(externalId);
+            }
+        });
+        
+        jdbcTemplate.batchUpdate(RETIRE_BOOK_SQL, missing, BATCH_SIZE, (ps, externalId) -> ps.setLong(1, externalId));
+        missing.forEach(bookCacheListener::evict);
+        return missing.size();
+    }
+}
@@ -1,16 +1,75 @@
 package com.example.libreria.repository;
 
 import com.example.libreria.model.Book;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface BookRepository extends JpaRepository<Book, Long> {
     
+    /**
+     * Proyección con lo mínimo para comparar el catálogo contra la API externa
+     */
+    interface BookFingerprintView {
+        Long getExternalId();
+        String getContentHash();
+        Boolean getRetired();
+    }
+    
+    @Override
+    @EntityGraph(attributePaths = "authorName")
+    List<Book> findAll();
+    
+    @EntityGraph(attributePaths = "authorName")
     Optional<Book> findByExternalId(Long externalId);
     
     boolean existsByExternalId(Long externalId);
+    
+    @Query("SELECT b.externalId AS externalId, b.contentHash AS contentHash, b.retired AS retired FROM Book b " +
+           "WHERE b.externalId IN :externalIds")
+    List<BookFingerprintView> findFingerprintsByExternalIdIn(@Param("externalIds") Collection<Long> externalIds);
+    
+    // Paginación por cursor (keyset): siguiente bloque de libros después de un externalId.
+    // No usa EntityGraph porque un fetch join de la colección obligaría a aplicar el límite en memoria;
+    // los autores de la página se cargan con @BatchSize. Los libros retirados no se listan.
+    List<Book> findByExternalIdGreaterThanAndRetiredFalseOrderByExternalIdAsc(Long externalId, Limit limit);
+    
+    /**
+     * Descuenta una unidad disponible en una sola sentencia, solo si el libro sigue en el catálogo y queda stock:
+     * un libro que una sincronización retira entre la lectura del que reserva y este update no se reserva.
+     * Los updates masivos no pasan por BookCacheListener: quien lo llama invalida la caché
+     * con BookCacheListener.evict, que espera al commit.
+     *
+     * @return 1 si se descontó; 0 si el libro no existe, está retirado o no tiene unidades disponibles
+     *         (con {@link #findRetiredByExternalId(Long)} se distingue cuál de los tres)
+     */
+    @Modifying
+    @Query("UPDATE Book b SET b.availableQuantity = b.availableQuantity - 1 " +
+           "WHERE b.externalId = :externalId AND b.retired = false AND b.availableQuantity > 0")
+    int decrementAvailableQuantity(@Param("externalId") Long externalId);
+    
+    /**
+     * Si el libro está retirado del catálogo; vacío si no existe
+     */
+    @Query("SELECT b.retired FROM Book b WHERE b.externalId = :externalId")
+    Optional<Boolean> findRetiredByExternalId(@Param("externalId") Long externalId);
+    
+    /**
+     * Devuelve una unidad disponible en una sola sentencia, sin superar el stock total.
+     *
+     * @return 1 si se incrementó, 0 si el libro no existe o ya tiene todo su stock disponible
+     */
+    @Modifying
+    @Query("UPDATE Book b SET b.availableQuantity = b.availableQuantity + 1 " +
+           "WHERE b.externalId = :externalId AND b.availableQuantity < b.stockQuantity")
+    int incrementAvailableQuantity(@Param("externalId") Long externalId);
 }
-
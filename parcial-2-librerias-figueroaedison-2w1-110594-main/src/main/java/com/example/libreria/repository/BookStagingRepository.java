@@ -0,0 +1,225 @@
+package com.example.libreria.repository;
+
+import com.example.libreria.dto.ExternalBookDTO;
+import com.example.libreria.dto.SyncResultDTO;
+import com.example.libreria.model.BookCacheListener;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Types;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sincronización del catálogo por etapas: el feed completo se carga primero en una tabla de staging
+ * con inserts JDBC en lotes y después se aplica al catálogo con sentencias sobre conjuntos
+ * (MERGE, anti-join), sin recorrer los libros uno por uno.
+ * La tabla de staging es compartida: solo puede correr una sincronización por etapas a la vez.
+ * Es un modo opcional (libreria.sync.mode: staged) y solo funciona sobre H2: el DDL y el SQL usan ARRAY,
+ * CARDINALITY y SYSTEM_RANGE, y el MERGE con USING sigue la sintaxis de H2. Con otra base la tabla no se crea,
+ * {@link #isSupported()} devuelve false y BookService no arranca en modo staged.
+ */
+@Repository
+@RequiredArgsConstructor
+public class BookStagingRepository {
+    
+    private static final int BATCH_SIZE = 500;
+    
+    // Mismas restricciones que books: un libro inválido falla al cargarse y no al aplicar el MERGE.
+    // Los autores van en un ARRAY para no escribir una fila por autor de los libros que no cambiaron
+    private static final String CREATE_STAGING_SQL = """
+            CREATE TABLE IF NOT EXISTS book_sync_staging (
+                external_id BIGINT PRIMARY KEY,
+                title VARCHAR(255) NOT NULL,
+                author_names VARCHAR(255) ARRAY,
+                first_publish_year INTEGER,
+                edition_count INTEGER,
+                has_fulltext BOOLEAN,
+                price NUMERIC(10, 2) NOT NULL,
+                content_hash VARCHAR(64),
+                change_type VARCHAR(9) NOT NULL
+            )
+            """;
+    
+    // Cada libro se marca al cargarlo como nuevo, modificado o sin cambios según la huella guardada.
+    // Un libro retirado que vuelve a aparecer cuenta como modificado, para reactivarlo en el MERGE
+    private static final String INSERT_STAGING_SQL = """
+            INSERT INTO book_sync_staging
+                (external_id, title, author_names, first_publish_year, edition_count, has_fulltext, price,
+                 content_hash, change_type)
+            SELECT v.external_id, v.title, v.author_names, v.first_publish_year, v.edition_count, v.has_fulltext,
+                   v.price, v.content_hash,
+                   CASE WHEN b.external_id IS NULL THEN 'CREATED'
+                        WHEN b.content_hash = v.content_hash AND b.retired = FALSE THEN 'UNCHANGED'
+                        ELSE 'UPDATED' END
+            FROM (VALUES (CAST(? AS BIGINT), CAST(? AS VARCHAR(255)), CAST(? AS VARCHAR(255) ARRAY),
+                          CAST(? AS INTEGER), CAST(? AS INTEGER), CAST(? AS BOOLEAN), CAST(? AS NUMERIC(10, 2)),
+                          CAST(? AS VARCHAR(64))))
+                AS v (external_id, title, author_names, first_publish_year, edition_count, has_fulltext, price,
+                      content_hash)
+            LEFT JOIN books b ON b.external_id = v.external_id
+            """;
+    
+    private static final String COUNT_BY_CHANGE_SQL =
+            "SELECT change_type, COUNT(*) FROM book_sync_staging GROUP BY change_type";
+    
+    private static final String CHANGED_IDS_SQL =
+            "SELECT external_id FROM book_sync_staging WHERE change_type <> 'UNCHANGED'";
+    
+    // Igual que el upsert de BookBulkRepository: en los libros existentes nunca se toca el stock
+    private static final String MERGE_BOOKS_SQL = """
+            MERGE INTO books b
+            USING (SELECT * FROM book_sync_staging WHERE change_type <> 'UNCHANGED') s
+            ON b.external_id = s.external_id
+            WHEN MATCHED THEN UPDATE SET
+                title = s.title, first_publish_year = s.first_publish_year, edition_count = s.edition_count,
+                has_fulltext = s.has_fulltext, price = s.price, content_hash = s.content_hash, retired = FALSE
+            WHEN NOT MATCHED THEN INSERT
+                (external_id, title, first_publish_year, edition_count, has_fulltext, price, content_hash,
+                 stock_quantity, available_quantity, retired)
+                VALUES (s.external_id, s.title, s.first_publish_year, s.edition_count, s.has_fulltext, s.price,
+                        s.content_hash, CAST(? AS INTEGER), CAST(? AS INTEGER), FALSE)
+            """;
+    
+    // También los marcados como nuevos: pudieron importarse a demanda después de cargarlos en staging
+    private static final String DELETE_CHANGED_AUTHORS_SQL = """
+            DELETE FROM book_authors
+            WHERE book_id IN (SELECT external_id FROM book_sync_staging WHERE change_type <> 'UNCHANGED')
+            """;
+    
+    // Una fila por autor: cada libro se cruza con las posiciones 1..N de su array
+    private static final String INSERT_CHANGED_AUTHORS_SQL = """
+            INSERT INTO book_authors (book_id, author_name)
+            SELECT s.external_id, s.author_names[p.X]
+            FROM book_sync_staging s
+            JOIN SYSTEM_RANGE(1, (SELECT COALESCE(MAX(CARDINALITY(author_names)), 0) FROM book_sync_staging)) p
+                ON p.X <= CARDINALITY(s.author_names)
+            WHERE s.change_type <> 'UNCHANGED'
+            ORDER BY s.external_id, p.X
+            """;
+    
+    // Anti-join: libros activos del catálogo que no vinieron en el feed
+    private static final String MISSING_ACTIVE_IDS_SQL = """
+            SELECT b.external_id FROM books b
+            WHERE b.retired = FALSE
+              AND NOT EXISTS (SELECT 1 FROM book_sync_staging s WHERE s.external_id = b.external_id)
+            """;
+    
+    private static final String RETIRE_MISSING_SQL = """
+            UPDATE books b SET retired = TRUE
+            WHERE b.retired = FALSE
+              AND NOT EXISTS (SELECT 1 FROM book_sync_staging s WHERE s.external_id = b.external_id)
+            """;
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final BookCacheListener bookCacheListener;
+    
+    private boolean supported;
+    
+    // La tabla de staging no es una entidad JPA; se crea al arrancar, fuera de cualquier transacción
+    @PostConstruct
+    void createTable() {
+        supported = Boolean.TRUE.equals(jdbcTemplate.execute((ConnectionCallback<Boolean>) connection ->
+                "H2".equals(connection.getMetaData().getDatabaseProductName())));
+        if (supported) {
+            jdbcTemplate.execute(CREATE_STAGING_SQL);
+        }
+    }
+    
+    /**
+     * @return true si la base es H2 y la tabla de staging existe
+     */
+    public boolean isSupported() {
+        return supported;
+    }
+    
+    /**
+     * Vacía la tabla de staging. Con DELETE y no TRUNCATE, que en H2 confirma la transacción en curso.
+     */
+    @Transactional
+    public void clear() {
+        jdbcTemplate.update("DELETE FROM book_sync_staging");
+    }
+    
+    /**
+     * Carga un bloque del feed en staging, comparando cada huella con la del catálogo.
+     * Los ids no pueden repetirse entre bloques.
+     *
+     * @param books libros del bloque, sin ids repetidos
+     * @param fingerprints huella de contenido de cada libro, por externalId
+     */
+    @Transactional
+    public void stage(List<ExternalBookDTO> books, Map<Long, String> fingerprints) {
+        jdbcTemplate.batchUpdate(INSERT_STAGING_SQL, books, BATCH_SIZE, (ps, book) -> {
+            ps.setLong(1, book.getId());
+            ps.setString(2, book.getTitle());
+            if (book.getAuthorName() != null) {
+                ps.setObject(3, book.getAuthorName().toArray(new String[0]), Types.ARRAY);
+            } else {
+                ps.setNull(3, Types.ARRAY);
+            }
+            ps.setObject(4, book.getFirstPublishYear(), Types.INTEGER);
+            ps.setObject(5, book.getEditionCount(), Types.INTEGER);
+            ps.setObject(6, book.getHasFulltext(), Types.BOOLEAN);
+            ps.setBigDecimal(7, book.getPrice());
+            ps.setString(8, fingerprints.get(book.getId()));
+        });
+    }
+    
+    /**
+     * Aplica al catálogo los libros cargados en staging y, si se pide, retira los que no están,
+     * todo en una sola transacción: las lecturas concurrentes ven el catálogo anterior completo o el nuevo completo.
+     * Solo se escriben los libros nuevos o con otra huella; sus autores se reemplazan completos.
+     *
+     * @param initialStock stock asignado a los libros nuevos
+     * @param retireMissing si se retiran los libros activos que no vinieron en el feed (solo con el feed completo)
+     * @return libros nuevos, modificados, sin cambios y retirados (deleted en 0 si no se retira)
+     */
+    @Transactional
+    public SyncResultDTO mergeIntoCatalog(int initialStock, boolean retireMissing) {
+        SyncResultDTO result = new SyncResultDTO(0, 0, 0, 0, false);
+        jdbcTemplate.query(COUNT_BY_CHANGE_SQL, rs -> {
+            int count = rs.getInt(2);
+            switch (rs.getString(1)) {
+                case "CREATED" -> result.setCreated(count);
+                case "UPDATED" -> result.setUpdated(count);
+                default -> result.setUnchanged(count);
+            }
+        });
+        List<Long> changedIds = jdbcTemplate.queryForList(CHANGED_IDS_SQL, Long.class);
+        
+        jdbcTemplate.update(MERGE_BOOKS_SQL, initialStock, initialStock);
+        jdbcTemplate.update(DELETE_CHANGED_AUTHORS_SQL);
+        jdbcTemplate.update(INSERT_CHANGED_AUTHORS_SQL);
+        
+        // JDBC no pasa por BookCacheListener
+        changedIds.forEach(bookCacheListener::evict);
+        
+        if (retireMissing) {
+            result.setDeleted(retireMissingFromStaging());
+        }
+        return result;
+    }
+    
+    /**
+     * Retira los libros activos del catálogo que no están en staging, con un único UPDATE sobre el anti-join.
+     * Los libros no se borran: las reservas existentes siguen apuntando a ellos.
+     *
+     * @return cantidad de libros retirados
+     */
+    private int retireMissingFromStaging() {
+        List<Long> missingIds = jdbcTemplate.queryForList(MISSING_ACTIVE_IDS_SQL, Long.class);
+        if (missingIds.isEmpty()) {
+            return 0;
+        }
+        int retired = jdbcTemplate.update(RETIRE_MISSING_SQL);
+        
+        // JDBC no pasa por BookCacheListener
+        missingIds.forEach(bookCacheListener::evict);
+        return retired;
+    }
+}
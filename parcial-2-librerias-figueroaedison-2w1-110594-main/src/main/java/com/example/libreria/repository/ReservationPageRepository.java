@@ -0,0 +1,95 @@
+package com.example.libreria.repository;
+
+import com.example.libreria.dto.ReservationFilterDTO;
+import com.example.libreria.model.Reservation;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Listado de reservas con paginación por cursor (keyset) sobre (createdAt, id), de la más nueva a la más vieja.
+ * La consulta se arma con los filtros presentes para que cada combinación recorra uno de los índices
+ * compuestos de Reservation ya ordenado y corte en el límite, sin ordenar todas las reservas que cumplen
+ * el filtro: una página profunda cuesta lo mismo que la primera.
+ */
+@Repository
+public class ReservationPageRepository {
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    /**
+     * Busca la página de reservas siguiente al cursor.
+     *
+     * @param filter filtros opcionales; los que vienen en null no se aplican
+     * @param afterCreatedAt createdAt de la última reserva de la página anterior, null para la primera página
+     * @param afterId id de la última reserva de la página anterior
+     * @param limit cantidad máxima de reservas
+     * @return reservas con el usuario y el libro ya cargados
+     */
+    public List<Reservation> findPage(ReservationFilterDTO filter, LocalDateTime afterCreatedAt, Long afterId,
+                                      int limit) {
+        List<String> conditions = new ArrayList<>();
+        Map<String, Object> parameters = new HashMap<>();
+        
+        // El filtro por igualdad más selectivo elige el índice (usuario, libro o estado + created_at, id).
+        // Va también al principio del ORDER BY: H2 solo recorre el índice ordenado si el orden lo incluye
+        String leadingColumn = null;
+        if (filter.getUserId() != null) {
+            conditions.add("r.user.id = :userId");
+            parameters.put("userId", filter.getUserId());
+            leadingColumn = "r.user.id";
+        }
+        if (filter.getBookExternalId() != null) {
+            conditions.add("r.book.externalId = :bookExternalId");
+            parameters.put("bookExternalId", filter.getBookExternalId());
+            leadingColumn = leadingColumn != null ? leadingColumn : "r.book.externalId";
+        }
+        if (filter.getStatus() != null) {
+            conditions.add("r.status = :status");
+            parameters.put("status", filter.getStatus());
+            leadingColumn = leadingColumn != null ? leadingColumn : "r.status";
+        }
+        if (filter.getFrom() != null) {
+            conditions.add("r.createdAt >= :createdFrom");
+            parameters.put("createdFrom", filter.getFrom().atStartOfDay());
+        }
+        if (filter.getTo() != null) {
+            conditions.add("r.createdAt < :createdBefore");
+            parameters.put("createdBefore", filter.getTo().plusDays(1).atStartOfDay());
+        }
+        if (afterCreatedAt != null) {
+            // La primera condición acota el rango recorrido en el índice; la segunda desempata por id
+            conditions.add("r.createdAt <= :afterCreatedAt AND (r.createdAt < :afterCreatedAt OR r.id < :afterId)");
+            parameters.put("afterCreatedAt", afterCreatedAt);
+            parameters.put("afterId", afterId);
+        }
+        
+        // La subconsulta, sin joins, recorre el índice y corta en el límite; la consulta externa trae el usuario
+        // y el libro solo de esas reservas. Con JOIN FETCH en la misma consulta, r.user.id apuntaría a la
+        // tabla unida y no al índice de reservations
+        StringBuilder jpql = new StringBuilder(
+                "SELECT p FROM Reservation p LEFT JOIN FETCH p.user LEFT JOIN FETCH p.book WHERE p.id IN ("
+                        + "SELECT r.id FROM Reservation r");
+        if (!conditions.isEmpty()) {
+            jpql.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+        jpql.append(" ORDER BY ");
+        if (leadingColumn != null) {
+            jpql.append(leadingColumn).append(" DESC, ");
+        }
+        jpql.append("r.createdAt DESC, r.id DESC LIMIT ").append(limit)
+                .append(") ORDER BY p.createdAt DESC, p.id DESC");
+        
+        TypedQuery<Reservation> query = entityManager.createQuery(jpql.toString(), Reservation.class);
+        parameters.forEach(query::setParameter);
+        return query.getResultList();
+    }
+}
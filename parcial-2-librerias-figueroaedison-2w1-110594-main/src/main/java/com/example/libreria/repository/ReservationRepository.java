@@ -2,13 +2,16 @@ package com.example.libreria.repository;
 
 import com.example.libreria.model.Reservation;
 import com.example.libreria.model.Reservation.ReservationStatus;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * Repositorio para gestionar las reservas de libros
@@ -20,16 +23,37 @@ import java.util.List;
  * - Buscar reservas activas
  * - Buscar reservas vencidas (que pasaron la fecha de devolución)
  * - Buscar reservas por libro
+ *
+ * Las búsquedas que devuelven reservas traen el usuario y el libro en la misma consulta
+ * (EntityGraph): convertir cada reserva a DTO lee el nombre del usuario y el título del libro,
+ * y con las relaciones LAZY eso serían dos consultas más por reserva.
  */
 @Repository
 public interface ReservationRepository extends JpaRepository<Reservation, Long> {
 
+    /**
+     * Proyección con lo mínimo para armar el índice de vencimientos (OverdueTracker)
+     */
+    interface ReservationDueView {
+        Long getId();
+        LocalDate getExpectedReturnDate();
+    }
+
+    @Override
+    @EntityGraph(attributePaths = {"user", "book"})
+    List<Reservation> findAll();
+
+    @Override
+    @EntityGraph(attributePaths = {"user", "book"})
+    Optional<Reservation> findById(Long id);
+
     /**
      * Busca todas las reservas de un usuario específico
      *
      * @param userId ID del usuario
      * @return Lista de reservas del usuario
      */
+    @EntityGraph(attributePaths = {"user", "book"})
     List<Reservation> findByUserId(Long userId);
 
     /**
@@ -38,6 +62,7 @@ public interface ReservationRepository extends JpaRepository<Reservation, Long>
      * @param status Estado de la reserva (ACTIVE, RETURNED, OVERDUE)
      * @return Lista de reservas con ese estado
      */
+    @EntityGraph(attributePaths = {"user", "book"})
     List<Reservation> findByStatus(ReservationStatus status);
 
     /**
@@ -46,6 +71,7 @@ public interface ReservationRepository extends JpaRepository<Reservation, Long>
      *
      * @return Lista de reservas con estado ACTIVE
      */
+    @EntityGraph(attributePaths = {"user", "book"})
     @Query("SELECT r FROM Reservation r WHERE r.status = 'ACTIVE'")
     List<Reservation> findAllActiveReservations();
 
@@ -58,9 +84,29 @@ public interface ReservationRepository extends JpaRepository<Reservation, Long>
      * @param currentDate Fecha actual para comparar
      * @return Lista de reservas vencidas
      */
+    @EntityGraph(attributePaths = {"user", "book"})
     @Query("SELECT r FROM Reservation r WHERE r.status = 'ACTIVE' AND r.expectedReturnDate < :currentDate")
     List<Reservation> findOverdueReservations(@Param("currentDate") LocalDate currentDate);
 
+    /**
+     * Id y fecha esperada de devolución de todas las reservas activas, sin cargar las entidades
+     */
+    @Query("SELECT r.id AS id, r.expectedReturnDate AS expectedReturnDate FROM Reservation r " +
+           "WHERE r.status = 'ACTIVE'")
+    List<ReservationDueView> findActiveDueDates();
+
+    /**
+     * Busca por id las reservas que siguen activas (descarta las que se devolvieron mientras tanto).
+     * La lista de ids va completa en el IN: quien la llama la parte en lotes de tamaño fijo.
+     *
+     * @param ids IDs de las reservas
+     * @return Reservas activas con esos IDs, ordenadas por fecha de devolución esperada e id
+     */
+    @EntityGraph(attributePaths = {"user", "book"})
+    @Query("SELECT r FROM Reservation r WHERE r.id IN :ids AND r.status = 'ACTIVE' " +
+           "ORDER BY r.expectedReturnDate, r.id")
+    List<Reservation> findActiveByIdIn(@Param("ids") Collection<Long> ids);
+
     /**
      * Busca reservas activas de un libro específico (por su ID externo)
      * Útil para verificar cuántas copias de un libro están actualmente prestadas
@@ -68,6 +114,7 @@ public interface ReservationRepository extends JpaRepository<Reservation, Long>
      * @param bookExternalId ID externo del libro (de la API externa)
      * @return Lista de reservas activas de ese libro
      */
+    @EntityGraph(attributePaths = {"user", "book"})
     @Query("SELECT r FROM Reservation r WHERE r.book.externalId = :bookExternalId AND r.status = 'ACTIVE'")
     List<Reservation> findActiveReservationsByBookExternalId(@Param("bookExternalId") Long bookExternalId);
 
@@ -84,9 +131,10 @@ public interface ReservationRepository extends JpaRepository<Reservation, Long>
     /**
      * Busca todas las reservas de un libro específico (activas o no)
      *
-     * @param bookId ID interno del libro en la base de datos
+     * @param bookExternalId ID externo del libro (su clave primaria)
      * @return Lista de todas las reservas de ese libro
      */
-    List<Reservation> findByBookId(Long bookId);
+    @Query("SELECT r FROM Reservation r WHERE r.book.externalId = :bookExternalId")
+    List<Reservation> findByBookExternalId(@Param("bookExternalId") Long bookExternalId);
 }
 
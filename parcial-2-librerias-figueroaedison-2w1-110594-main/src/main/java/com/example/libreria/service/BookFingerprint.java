@@ -0,0 +1,51 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.ExternalBookDTO;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Huella (SHA-256) del contenido de un libro de la API externa.
+ * Si la huella coincide con la guardada en la base, el libro no cambió y la sincronización lo saltea.
+ */
+public final class BookFingerprint {
+    
+    private static final char SEPARATOR = '\u001F';
+    
+    private BookFingerprint() {
+    }
+    
+    public static String of(ExternalBookDTO dto) {
+        StringBuilder content = new StringBuilder()
+                .append(dto.getTitle()).append(SEPARATOR)
+                .append(authors(dto.getAuthorName())).append(SEPARATOR)
+                .append(dto.getFirstPublishYear()).append(SEPARATOR)
+                .append(dto.getEditionCount()).append(SEPARATOR)
+                .append(dto.getHasFulltext()).append(SEPARATOR)
+                .append(price(dto.getPrice()));
+        return sha256(content.toString());
+    }
+    
+    private static String authors(List<String> authorName) {
+        return authorName == null ? "null" : String.join(String.valueOf(SEPARATOR), authorName);
+    }
+    
+    // 15.9 y 15.90 son el mismo precio
+    private static String price(BigDecimal price) {
+        return price == null ? "null" : price.stripTrailingZeros().toPlainString();
+    }
+    
+    private static String sha256(String content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(content.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+}
@@ -1,15 +1,41 @@
 package com.example.libreria.service;
 
+import com.example.libreria.config.CacheConfig;
+import com.example.libreria.dto.BookPageResponseDTO;
 import com.example.libreria.dto.BookResponseDTO;
 import com.example.libreria.dto.ExternalBookDTO;
+import com.example.libreria.dto.SyncResultDTO;
 import com.example.libreria.model.Book;
+import com.example.libreria.model.BookCacheListener;
+import com.example.libreria.repository.BookBulkRepository;
 import com.example.libreria.repository.BookRepository;
+import com.example.libreria.repository.BookStagingRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.client.HttpClientErrorException;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Service
@@ -17,41 +43,372 @@ import java.util.stream.Collectors;
 @Slf4j
 public class BookService {
     
+    public static final int DEFAULT_PAGE_SIZE = 100;
+    // Si cambia, actualizar @BatchSize de Book.authorName para que una página siga cargando sus autores de una vez
+    public static final int MAX_PAGE_SIZE = 500;
+    public static final int DEFAULT_INITIAL_STOCK = 10; // Stock inicial por defecto
+    
     private final BookRepository bookRepository;
+    private final BookBulkRepository bookBulkRepository;
+    private final BookStagingRepository bookStagingRepository;
     private final ExternalBookService externalBookService;
+    private final BookCacheListener bookCacheListener;
     
-    @Transactional
-    public void syncBooksFromExternalApi() {
-        log.info("Synchronizing books from external API");
-        List<ExternalBookDTO> externalBooks = externalBookService.fetchAllBooks();
+    // Importaciones a demanda en curso: la llamada a la API y la escritura se hacen una vez por libro
+    private final SingleFlight<Long, Boolean> bookImports = new SingleFlight<>();
+    
+    /**
+     * Cómo se aplica el feed al catálogo
+     */
+    public enum SyncMode {
+        // Bloque por bloque: huellas contra las guardadas y upsert de los libros cambiados
+        INCREMENTAL,
+        // Todo el feed a una tabla de staging y después un MERGE sobre conjuntos (ver BookStagingRepository)
+        STAGED
+    }
+    
+    @Value("${libreria.sync.mode:incremental}")
+    private SyncMode syncMode = SyncMode.INCREMENTAL;
+    
+    // Bloques del feed que se sincronizan a la vez; con 1 se procesan en el hilo que lee el feed
+    @Value("${libreria.sync.parallelism:1}")
+    private int syncParallelism;
+    
+    // Hilos de la sincronización en paralelo: se crean con la primera y se reutilizan en las siguientes
+    private volatile ExecutorService syncExecutor;
+    
+    // La tabla de staging es compartida
+    private final ReentrantLock stagedSyncLock = new ReentrantLock();
+    
+    @PostConstruct
+    void checkSyncMode() {
+        if (syncMode == SyncMode.STAGED && !bookStagingRepository.isSupported()) {
+            throw new IllegalStateException("libreria.sync.mode: staged usa SQL de H2 y la base configurada no es H2");
+        }
+    }
+    
+    /**
+     * Sincroniza el catálogo con la API externa de forma incremental.
+     * El feed se lee en streaming y se procesa por bloques: para cada bloque se comparan las huellas
+     * de contenido con las guardadas, los libros sin cambios no se escriben y los nuevos o modificados
+     * se aplican con un upsert masivo por lotes. La memoria usada no depende del tamaño del feed.
+     * Los libros que ya no vienen en la API se informan como eliminados y, si todos los bloques se aplicaron,
+     * se retiran del catálogo: los ids del feed se ordenan y se recorren a la par de los del catálogo,
+     * sin una consulta por libro. Un libro retirado no se borra, así que sus reservas siguen siendo válidas.
+     * Si el feed no cambió desde la última sincronización completa (304), no se hace nada.
+     */
+    public SyncResultDTO syncBooksFromExternalApi() {
+        return syncBooksFromExternalApi(SyncProgressListener.NONE);
+    }
+    
+    /**
+     * Igual que {@link #syncBooksFromExternalApi()}, informando el avance de cada bloque.
+     * No hay una transacción que abarque toda la sincronización: la descarga ocurre fuera de
+     * transacción y cada bloque confirma por separado, así que un bloque fallido no deshace los anteriores.
+     */
+    public SyncResultDTO syncBooksFromExternalApi(SyncProgressListener listener) {
+        if (syncMode == SyncMode.STAGED) {
+            return syncStaged(listener);
+        }
+        log.info("Synchronizing books from external API (parallelism {})", Math.max(1, syncParallelism));
+        SyncResultDTO result = new SyncResultDTO(0, 0, 0, 0, false);
+        AtomicInteger failedChunks = new AtomicInteger();
+        FeedIds feedIds = new FeedIds();
+        
+        FeedFetchResult feed;
+        if (syncParallelism > 1) {
+            feed = syncChunksInParallel(feedIds, result, failedChunks, listener);
+        } else {
+            feed = externalBookService.fetchAllBooksInChunks(withIds(chunk -> {
+                feedIds.addAll(chunk);
+                applyChunk(chunk, result, failedChunks, listener);
+            }));
+        }
         
-        for (ExternalBookDTO externalBook : externalBooks) {
-            Book existingBook = bookRepository.findByExternalId(externalBook.getId())
-                    .orElse(null);
+        if (!feed.isModified()) {
+            log.info("Synchronization skipped: external feed not modified");
+            result.setNotModified(true);
+            return result;
+        }
+        
+        // Con bloques fallidos el próximo pedido debe volver a traer el feed completo, y no se retira nada:
+        // los libros de un bloque fallido faltarían en el catálogo aunque sigan en la API.
+        // Los eliminados en la API son los libros activos que se retiran ahora; los retirados en
+        // sincronizaciones anteriores no se vuelven a contar
+        if (failedChunks.get() == 0) {
+            int retired = bookBulkRepository.retireBooksNotIn(feedIds.sorted());
+            result.setDeleted(retired);
+            externalBookService.saveFeedValidators(feed);
+        }
+        
+        log.info("Synchronization completed: {} created, {} updated, {} unchanged, {} retired",
+                result.getCreated(), result.getUpdated(), result.getUnchanged(), result.getDeleted());
+        return result;
+    }
+    
+    /**
+     * Sincronización por etapas: el feed se lee en streaming y cada bloque se carga en staging con inserts
+     * en lotes; al terminar, el catálogo se actualiza con un MERGE y los libros que ya no vienen en la API
+     * (y seguían activos) se retiran con un anti-join, los dos en la misma transacción. Si algún bloque no pudo cargarse,
+     * se aplica lo cargado pero no se informan eliminados, no se retira nada ni se guardan los validadores del feed.
+     */
+    private SyncResultDTO syncStaged(SyncProgressListener listener) {
+        log.info("Synchronizing books from external API (staged)");
+        stagedSyncLock.lock();
+        try {
+            bookStagingRepository.clear();
+            SyncResultDTO result = new SyncResultDTO(0, 0, 0, 0, false);
+            AtomicInteger failedChunks = new AtomicInteger();
+            Set<Long> stagedIds = new HashSet<>();
+            FeedFetchResult feed = externalBookService.fetchAllBooksInChunks(
+                    withIds(chunk -> stageChunk(chunk, stagedIds, result, failedChunks, listener)));
+            
+            if (!feed.isModified()) {
+                log.info("Synchronization skipped: external feed not modified");
+                result.setNotModified(true);
+                return result;
+            }
             
-            if (existingBook == null) {
-                Book newBook = convertToBook(externalBook);
-                newBook.setStockQuantity(10); // Stock inicial por defecto
-                newBook.setAvailableQuantity(10);
-                bookRepository.save(newBook);
-                log.info("Created new book: {}", newBook.getTitle());
+            boolean complete = failedChunks.get() == 0;
+            SyncResultDTO merged = bookStagingRepository.mergeIntoCatalog(DEFAULT_INITIAL_STOCK, complete);
+            if (complete) {
+                externalBookService.saveFeedValidators(feed);
+            }
+            log.info("Synchronization completed: {} created, {} updated, {} unchanged, {} retired",
+                    merged.getCreated(), merged.getUpdated(), merged.getUnchanged(), merged.getDeleted());
+            return merged;
+        } finally {
+            bookStagingRepository.clear();
+            stagedSyncLock.unlock();
+        }
+    }
+    
+    private void stageChunk(List<ExternalBookDTO> chunk, Set<Long> stagedIds, SyncResultDTO result,
+                            AtomicInteger failedChunks, SyncProgressListener listener) {
+        List<ExternalBookDTO> books = new ArrayList<>(chunk.size());
+        Map<Long, String> fingerprints = new HashMap<>();
+        for (ExternalBookDTO externalBook : chunk) {
+            if (!stagedIds.add(externalBook.getId())) {
+                log.warn("Duplicated book in external API, ignoring: {}", externalBook.getId());
+            } else {
+                books.add(externalBook);
+                fingerprints.put(externalBook.getId(), BookFingerprint.of(externalBook));
+            }
+        }
+        try {
+            bookStagingRepository.stage(books, fingerprints);
+        } catch (RuntimeException e) {
+            log.error("Error staging chunk of {} books: {}", chunk.size(), e.getMessage(), e);
+            failedChunks.incrementAndGet();
+            listener.onChunkFailed(chunk, e);
+            return;
+        }
+        // Los totales se conocen recién al aplicar el staging; acá solo avanza la cantidad procesada
+        listener.onChunkCompleted(chunk, result);
+    }
+    
+    /**
+     * Carga el catálogo desde un feed guardado en la caché en disco, sin usar la red.
+     * Se aplica igual que una sincronización (mismas huellas y upsert por bloques) y, si todos los bloques
+     * se aplicaron, se guardan los validadores del feed: la próxima sincronización es condicional
+     * y la API responde 304 si el catálogo no cambió desde que se guardó la copia.
+     */
+    public SyncResultDTO restoreCatalogFromDiskCache(CatalogDiskCache.FeedSnapshot snapshot) {
+        log.info("Restoring catalog from disk cache snapshot of {} books stored at {}",
+                snapshot.books(), snapshot.storedAt());
+        SyncResultDTO result = new SyncResultDTO(0, 0, 0, 0, false);
+        AtomicInteger failedChunks = new AtomicInteger();
+        FeedFetchResult feed = externalBookService.readCachedFeedInChunks(snapshot,
+                withIds(chunk -> applyChunk(chunk, result, failedChunks, SyncProgressListener.NONE)));
+        if (failedChunks.get() == 0) {
+            externalBookService.saveFeedValidators(feed);
+        }
+        log.info("Catalog restored from disk cache: {} created, {} updated, {} unchanged",
+                result.getCreated(), result.getUpdated(), result.getUnchanged());
+        return result;
+    }
+    
+    /**
+     * El hilo que lee el feed reparte los bloques entre libreria.sync.parallelism hilos.
+     * Cuando todos están ocupados la lectura espera, así que en memoria nunca hay más que
+     * parallelism + 1 bloques. Si un bloque falla y el listener lo propaga, se deja de repartir
+     * y el error se relanza cuando terminan los bloques en curso. Los ids del feed se juntan en el hilo que lee.
+     * Un libro que ya está en un bloque en curso se saca del bloque nuevo antes de repartirlo, como cualquier
+     * repetido: dos upserts concurrentes del mismo libro harían fallar uno de ellos por la clave única.
+     */
+    private FeedFetchResult syncChunksInParallel(FeedIds feedIds, SyncResultDTO result, AtomicInteger failedChunks,
+                                                 SyncProgressListener listener) {
+        Semaphore slots = new Semaphore(syncParallelism);
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        Set<Long> inFlightIds = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = syncExecutor();
+        FeedFetchResult feed;
+        try {
+            feed = externalBookService.fetchAllBooksInChunks(withIds(chunk -> {
+                feedIds.addAll(chunk);
+                slots.acquireUninterruptibly();
+                if (failure.get() != null) {
+                    slots.release();
+                    throw failure.get();
+                }
+                List<ExternalBookDTO> books = new ArrayList<>(chunk.size());
+                for (ExternalBookDTO externalBook : chunk) {
+                    if (inFlightIds.add(externalBook.getId())) {
+                        books.add(externalBook);
+                    } else {
+                        log.warn("Duplicated book in external API, ignoring: {}", externalBook.getId());
+                    }
+                }
+                if (books.isEmpty()) {
+                    slots.release();
+                    return;
+                }
+                executor.execute(() -> {
+                    try {
+                        applyChunk(books, result, failedChunks, listener);
+                    } catch (RuntimeException e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        books.forEach(book -> inFlightIds.remove(book.getId()));
+                        slots.release();
+                    }
+                });
+            }));
+        } finally {
+            // Se espera a los bloques en curso aunque la descarga haya fallado
+            slots.acquireUninterruptibly(syncParallelism);
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        return feed;
+    }
+    
+    /**
+     * Un libro sin id no se puede comparar ni guardar: se descarta al recibir el bloque, antes de cualquiera
+     * de los caminos de la sincronización, para que el resto del bloque se aplique igual.
+     * Un bloque que queda vacío no se procesa.
+     */
+    private Consumer<List<ExternalBookDTO>> withIds(Consumer<List<ExternalBookDTO>> chunkConsumer) {
+        return chunk -> {
+            List<ExternalBookDTO> books = chunk;
+            if (chunk.stream().anyMatch(book -> book.getId() == null)) {
+                books = chunk.stream().filter(book -> book.getId() != null).toList();
+                log.warn("Ignoring {} books without id from external API", chunk.size() - books.size());
+            }
+            if (!books.isEmpty()) {
+                chunkConsumer.accept(books);
+            }
+        };
+    }
+    
+    private ExecutorService syncExecutor() {
+        ExecutorService executor = syncExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                if (syncExecutor == null) {
+                    AtomicInteger threadNumber = new AtomicInteger();
+                    syncExecutor = Executors.newFixedThreadPool(syncParallelism, runnable -> {
+                        Thread thread = new Thread(runnable, "book-sync-chunk-" + threadNumber.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                }
+                executor = syncExecutor;
+            }
+        }
+        return executor;
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        if (syncExecutor != null) {
+            syncExecutor.shutdownNow();
+        }
+    }
+    
+    private void applyChunk(List<ExternalBookDTO> chunk, SyncResultDTO result, AtomicInteger failedChunks,
+                            SyncProgressListener listener) {
+        SyncResultDTO chunkResult;
+        try {
+            chunkResult = syncChunk(chunk);
+        } catch (RuntimeException e) {
+            log.error("Error synchronizing chunk of {} books: {}", chunk.size(), e.getMessage(), e);
+            failedChunks.incrementAndGet();
+            listener.onChunkFailed(chunk, e);
+            return;
+        }
+        synchronized (result) {
+            result.setCreated(result.getCreated() + chunkResult.getCreated());
+            result.setUpdated(result.getUpdated() + chunkResult.getUpdated());
+            result.setUnchanged(result.getUnchanged() + chunkResult.getUnchanged());
+            listener.onChunkCompleted(chunk, result);
+        }
+    }
+    
+    private SyncResultDTO syncChunk(List<ExternalBookDTO> chunk) {
+        SyncResultDTO result = new SyncResultDTO(0, 0, 0, 0, false);
+        Map<Long, ExternalBookDTO> books = new LinkedHashMap<>();
+        Map<Long, String> fingerprints = new HashMap<>();
+        for (ExternalBookDTO externalBook : chunk) {
+            if (books.putIfAbsent(externalBook.getId(), externalBook) != null) {
+                log.warn("Duplicated book in external API, ignoring: {}", externalBook.getId());
             } else {
-                // Actualizar información del libro
-                updateBookFromExternal(existingBook, externalBook);
-                bookRepository.save(existingBook);
-                log.info("Updated book: {}", existingBook.getTitle());
+                fingerprints.put(externalBook.getId(), BookFingerprint.of(externalBook));
             }
         }
-        log.info("Synchronization completed");
+        
+        Map<Long, String> storedFingerprints = new HashMap<>();
+        for (BookRepository.BookFingerprintView view : bookRepository.findFingerprintsByExternalIdIn(books.keySet())) {
+            // Un libro retirado que vuelve a aparecer se reescribe aunque no haya cambiado, para reactivarlo
+            storedFingerprints.put(view.getExternalId(),
+                    Boolean.TRUE.equals(view.getRetired()) ? null : view.getContentHash());
+        }
+        
+        List<ExternalBookDTO> changedBooks = new ArrayList<>();
+        for (ExternalBookDTO externalBook : books.values()) {
+            Long externalId = externalBook.getId();
+            if (!storedFingerprints.containsKey(externalId)) {
+                changedBooks.add(externalBook);
+                result.setCreated(result.getCreated() + 1);
+            } else if (!fingerprints.get(externalId).equals(storedFingerprints.get(externalId))) {
+                changedBooks.add(externalBook);
+                result.setUpdated(result.getUpdated() + 1);
+            } else {
+                result.setUnchanged(result.getUnchanged() + 1);
+            }
+        }
+        
+        bookBulkRepository.upsertBooks(changedBooks, fingerprints, DEFAULT_INITIAL_STOCK);
+        return result;
     }
     
+    /**
+     * Obtiene una página del catálogo ordenada por externalId usando paginación por cursor (keyset).
+     * El cursor es el último externalId devuelto; con null se empieza desde el principio.
+     * El tamaño se ajusta al rango [1, MAX_PAGE_SIZE].
+     */
     @Transactional(readOnly = true)
-    public List<BookResponseDTO> getAllBooks() {
-        return bookRepository.findAll().stream()
+    public BookPageResponseDTO getBooksPage(Long afterExternalId, Integer size) {
+        int pageSize = normalizePageSize(size);
+        long cursor = afterExternalId != null ? afterExternalId : Long.MIN_VALUE;
+        
+        // Se pide un elemento extra para saber si existe una página siguiente
+        List<Book> books = bookRepository.findByExternalIdGreaterThanAndRetiredFalseOrderByExternalIdAsc(
+                cursor, Limit.of(pageSize + 1));
+        
+        boolean hasNext = books.size() > pageSize;
+        List<BookResponseDTO> content = books.stream()
+                .limit(pageSize)
                 .map(this::convertToDTO)
                 .collect(Collectors.toList());
+        Long nextCursor = hasNext ? content.get(content.size() - 1).getExternalId() : null;
+        
+        return new BookPageResponseDTO(content, content.size(), nextCursor, hasNext);
     }
     
+    // Lectura a través de caché; la entrada se invalida en BookCacheListener cuando el libro cambia
+    @Cacheable(cacheNames = CacheConfig.BOOKS_CACHE, key = "#externalId")
     @Transactional(readOnly = true)
     public BookResponseDTO getBookByExternalId(Long externalId) {
         Book book = bookRepository.findByExternalId(externalId)
@@ -59,6 +416,34 @@ public class BookService {
         return convertToDTO(book);
     }
     
+    /**
+     * Importa un único libro de la API externa cuando todavía no está en el catálogo (lectura a través).
+     * Los pedidos concurrentes del mismo id comparten la llamada a la API y la escritura.
+     * El libro se guarda con el stock inicial en su propia transacción, así que queda en el catálogo
+     * aunque falle la operación que lo pidió; si ya existía, solo se actualizan sus datos.
+     *
+     * @return true si el libro quedó guardado, false si la API externa no lo conoce
+     */
+    public boolean importBookFromExternalApi(Long externalId) {
+        return bookImports.execute(externalId, () -> {
+            ExternalBookDTO externalBook;
+            try {
+                externalBook = externalBookService.fetchBookById(externalId);
+            } catch (RuntimeException e) {
+                if (e.getCause() instanceof HttpClientErrorException.NotFound) {
+                    return false;
+                }
+                throw e;
+            }
+            if (externalBook == null || !externalId.equals(externalBook.getId())) {
+                return false;
+            }
+            bookBulkRepository.importBook(externalBook, BookFingerprint.of(externalBook), DEFAULT_INITIAL_STOCK);
+            log.info("Book {} imported on demand from external API", externalId);
+            return true;
+        });
+    }
+    
     @Transactional
     public BookResponseDTO updateStock(Long externalId, Integer stockQuantity) {
         Book book = bookRepository.findByExternalId(externalId)
@@ -78,49 +463,35 @@ public class BookService {
     
     @Transactional
     public void decreaseAvailableQuantity(Long externalId) {
-        Book book = bookRepository.findByExternalId(externalId)
-                .orElseThrow(() -> new RuntimeException("Libro no encontrado con ID externo: " + externalId));
-        
-        if (book.getAvailableQuantity() <= 0) {
+        // Update condicional: no hay lectura previa, así que dos reservas concurrentes no pueden pisarse
+        if (bookRepository.decrementAvailableQuantity(externalId) == 0) {
+            boolean retired = bookRepository.findRetiredByExternalId(externalId)
+                    .orElseThrow(() -> new RuntimeException("Libro no encontrado con ID externo: " + externalId));
+            if (retired) {
+                throw new RuntimeException("El libro ya no está en el catálogo de la API externa: " + externalId);
+            }
             throw new RuntimeException("No hay libros disponibles para reservar");
         }
-        
-        book.setAvailableQuantity(book.getAvailableQuantity() - 1);
-        bookRepository.save(book);
+        // El update masivo no pasa por BookCacheListener
+        bookCacheListener.evict(externalId);
     }
     
     @Transactional
     public void increaseAvailableQuantity(Long externalId) {
-        Book book = bookRepository.findByExternalId(externalId)
-                .orElseThrow(() -> new RuntimeException("Libro no encontrado con ID externo: " + externalId));
-        
-        if (book.getAvailableQuantity() >= book.getStockQuantity()) {
+        if (bookRepository.incrementAvailableQuantity(externalId) == 0) {
+            if (!bookRepository.existsByExternalId(externalId)) {
+                throw new RuntimeException("Libro no encontrado con ID externo: " + externalId);
+            }
             throw new RuntimeException("La cantidad disponible no puede exceder el stock");
         }
-        
-        book.setAvailableQuantity(book.getAvailableQuantity() + 1);
-        bookRepository.save(book);
+        bookCacheListener.evict(externalId);
     }
     
-    private Book convertToBook(ExternalBookDTO dto) {
-        Book book = new Book();
-        book.setExternalId(dto.getId());
-        book.setTitle(dto.getTitle());
-        book.setAuthorName(dto.getAuthorName());
-        book.setFirstPublishYear(dto.getFirstPublishYear());
-        book.setEditionCount(dto.getEditionCount());
-        book.setHasFulltext(dto.getHasFulltext());
-        book.setPrice(dto.getPrice());
-        return book;
-    }
-    
-    private void updateBookFromExternal(Book book, ExternalBookDTO dto) {
-        book.setTitle(dto.getTitle());
-        book.setAuthorName(dto.getAuthorName());
-        book.setFirstPublishYear(dto.getFirstPublishYear());
-        book.setEditionCount(dto.getEditionCount());
-        book.setHasFulltext(dto.getHasFulltext());
-        book.setPrice(dto.getPrice());
+    private int normalizePageSize(Integer size) {
+        if (size == null) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        return Math.max(1, Math.min(size, MAX_PAGE_SIZE));
     }
     
     private BookResponseDTO convertToDTO(Book book) {
@@ -134,6 +505,7 @@ public class BookService {
         dto.setPrice(book.getPrice());
         dto.setStockQuantity(book.getStockQuantity());
         dto.setAvailableQuantity(book.getAvailableQuantity());
+        dto.setRetired(book.getRetired());
         return dto;
     }
 }
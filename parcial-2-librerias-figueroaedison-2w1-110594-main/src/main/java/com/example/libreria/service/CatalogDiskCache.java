@@ -0,0 +1,480 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.ExternalBookDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Copia en disco de las respuestas de la API externa: el último feed completo y los libros pedidos por id.
+ * Permite reconstruir el catálogo al arrancar sin usar la red (la base H2 en memoria arranca vacía).
+ *
+ * El contenido se guarda direccionado por su SHA-256 en blobs/ab/abcd....json, así que una respuesta
+ * idéntica no se escribe dos veces. Las referencias (refs/feed.json, refs/books/{id}.json) apuntan al hash
+ * vigente y guardan cuándo se obtuvo, junto con el ETag y el Last-Modified del feed.
+ * Todas las escrituras van a un archivo temporal que se renombra al final: un corte a mitad de camino
+ * nunca deja una referencia a contenido incompleto.
+ *
+ * Frescura: una entrada más nueva que fresh-for está vigente; entre fresh-for y max-stale sirve
+ * pero conviene revalidarla con la API; pasado max-stale se ignora y se borra.
+ *
+ * Los libros por id tienen un frente en memoria: un acierto no lee el disco y las escrituras se hacen
+ * en un hilo propio, fuera del hilo del pedido. El blob del feed anterior se conserva una generación más,
+ * para que una lectura que ya resolvió la referencia anterior (por ejemplo, el arranque sin red) no se quede
+ * sin archivo; se borra con el commit siguiente o en {@link #purgeExpired()}.
+ */
+@Component
+@Slf4j
+public class CatalogDiskCache {
+
+    private static final String FEED_REF = "feed";
+    private static final HexFormat HEX = HexFormat.of();
+    private static final int MEMORY_MAX_BOOKS = 10_000;
+
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final Path blobs;
+    private final Path refs;
+    private final Duration freshFor;
+    private final Duration maxStale;
+    private final Clock clock;
+
+    // Frente en memoria de los libros por id, con el momento en que se obtuvieron de la API
+    private final Cache<Long, CachedBook> books = Caffeine.newBuilder()
+            .maximumSize(MEMORY_MAX_BOOKS)
+            .build();
+    // Escrituras de libros por id; null con la caché deshabilitada
+    private final ExecutorService bookWriter;
+
+    @Autowired
+    public CatalogDiskCache(ObjectMapper objectMapper,
+                            @Value("${libreria.disk-cache.enabled:false}") boolean enabled,
+                            @Value("${libreria.disk-cache.dir:${java.io.tmpdir}/libreria/catalog-cache}") Path directory,
+                            @Value("${libreria.disk-cache.fresh-for:1h}") Duration freshFor,
+                            @Value("${libreria.disk-cache.max-stale:7d}") Duration maxStale) {
+        this(objectMapper, enabled, directory, freshFor, maxStale, Clock.systemUTC());
+    }
+
+    CatalogDiskCache(ObjectMapper objectMapper, boolean enabled, Path directory,
+                     Duration freshFor, Duration maxStale, Clock clock) {
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.blobs = directory.resolve("blobs");
+        this.refs = directory.resolve("refs");
+        this.freshFor = freshFor;
+        this.maxStale = maxStale;
+        this.clock = clock;
+        this.bookWriter = enabled ? Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "catalog-disk-cache-writer");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+    }
+
+    /**
+     * Caché deshabilitada: no lee ni escribe nada. Para armar servicios a mano en tests y benchmarks.
+     */
+    public static CatalogDiskCache disabled() {
+        return new CatalogDiskCache(new ObjectMapper(), false, Path.of("."), Duration.ZERO, Duration.ZERO,
+                Clock.systemUTC());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Empieza a guardar un feed. El cuerpo de la respuesta se copia al disco a medida que se lee
+     * (ver {@link FeedSnapshotWriter#capture(InputStream)}) y solo reemplaza al feed anterior
+     * si se llama a commit; al cerrar el writer sin commit se descarta.
+     */
+    public FeedSnapshotWriter startFeedSnapshot(String url) {
+        if (!enabled) {
+            return new FeedSnapshotWriter(url, null);
+        }
+        try {
+            Files.createDirectories(blobs);
+            return new FeedSnapshotWriter(url, Files.createTempFile(blobs, "feed-", ".tmp"));
+        } catch (IOException e) {
+            log.warn("Could not start feed snapshot in {}: {}", blobs, e.getMessage());
+            return new FeedSnapshotWriter(url, null);
+        }
+    }
+
+    /**
+     * El último feed guardado para la URL indicada, si no pasó max-stale desde que se obtuvo.
+     */
+    public Optional<FeedSnapshot> feedSnapshot(String url) {
+        return readRef(FEED_REF)
+                .filter(ref -> url.equals(ref.url()) && !isExpired(ref.storedAt()))
+                .filter(ref -> Files.exists(blobPath(ref.hash())))
+                .map(ref -> new FeedSnapshot(blobPath(ref.hash()), ref.etag(), ref.lastModified(),
+                        ref.books() != null ? ref.books() : 0, Instant.ofEpochMilli(ref.storedAt()),
+                        isFresh(ref.storedAt())));
+    }
+
+    /**
+     * Guarda un libro obtenido por id. Queda visible en memoria enseguida; el disco se escribe en segundo plano.
+     */
+    public void putBook(ExternalBookDTO book) {
+        if (!enabled || book == null || book.getId() == null) {
+            return;
+        }
+        long storedAt = clock.millis();
+        byte[] content;
+        try {
+            content = objectMapper.writeValueAsBytes(book);
+        } catch (IOException e) {
+            log.warn("Could not serialize book {} for disk cache: {}", book.getId(), e.getMessage());
+            return;
+        }
+        books.put(book.getId(), new CachedBook(book, storedAt));
+        try {
+            bookWriter.execute(() -> writeBook(book.getId(), content, storedAt));
+        } catch (RejectedExecutionException e) {
+            log.debug("Disk cache writer stopped, book {} kept in memory only", book.getId());
+        }
+    }
+
+    /**
+     * El libro guardado si todavía está vigente (más nuevo que fresh-for).
+     */
+    public Optional<ExternalBookDTO> getFreshBook(Long id) {
+        return cachedBook(id).filter(cached -> isFresh(cached.storedAt())).map(CachedBook::book);
+    }
+
+    /**
+     * El libro guardado aunque esté vencido, mientras no haya pasado max-stale. Para cuando la API no responde.
+     */
+    public Optional<ExternalBookDTO> getBook(Long id) {
+        return cachedBook(id).filter(cached -> !isExpired(cached.storedAt())).map(CachedBook::book);
+    }
+
+    /**
+     * Espera a que terminen las escrituras de libros encoladas hasta ahora. Para tests.
+     */
+    void awaitPendingWrites() {
+        if (bookWriter != null) {
+            CompletableFuture.runAsync(() -> { }, bookWriter).join();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (bookWriter == null) {
+            return;
+        }
+        bookWriter.shutdown();
+        try {
+            // Las escrituras encoladas terminan antes de salir, para que la copia sirva en el próximo arranque
+            if (!bookWriter.awaitTermination(5, TimeUnit.SECONDS)) {
+                log.warn("Disk cache writer did not finish pending writes");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Borra las referencias que pasaron max-stale y los blobs que ya no tienen ninguna referencia.
+     */
+    public void purgeExpired() {
+        if (!enabled || !Files.isDirectory(refs)) {
+            return;
+        }
+        Set<String> referenced = new HashSet<>();
+        int removedRefs = 0;
+        int removedBlobs = 0;
+        try (Stream<Path> files = Files.walk(refs)) {
+            for (Path file : files.filter(f -> f.toString().endsWith(".json")).toList()) {
+                Optional<CacheRef> ref = readRefFile(file);
+                if (ref.isEmpty() || isExpired(ref.get().storedAt())) {
+                    Files.deleteIfExists(file);
+                    removedRefs++;
+                } else {
+                    referenced.add(ref.get().hash());
+                    if (ref.get().previousHash() != null) {
+                        referenced.add(ref.get().previousHash());
+                    }
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Could not purge disk cache refs in {}: {}", refs, e.getMessage());
+            return;
+        }
+        if (Files.isDirectory(blobs)) {
+            try (Stream<Path> files = Files.walk(blobs)) {
+                for (Path file : files.filter(Files::isRegularFile).toList()) {
+                    String name = file.getFileName().toString();
+                    // Los .tmp son escrituras en curso o abandonadas por un corte; las abandonadas se borran
+                    boolean stale = name.endsWith(".tmp")
+                            ? Files.getLastModifiedTime(file).toInstant().isBefore(clock.instant().minus(freshFor))
+                            : !referenced.contains(name.substring(0, name.length() - ".json".length()));
+                    if (stale) {
+                        Files.deleteIfExists(file);
+                        removedBlobs++;
+                    }
+                }
+            } catch (IOException e) {
+                log.warn("Could not purge disk cache blobs in {}: {}", blobs, e.getMessage());
+            }
+        }
+        log.info("Disk cache purge removed {} expired refs and {} unreferenced blobs", removedRefs, removedBlobs);
+    }
+
+    private boolean isFresh(long storedAt) {
+        return age(storedAt).compareTo(freshFor) < 0;
+    }
+
+    private boolean isExpired(long storedAt) {
+        return age(storedAt).compareTo(maxStale) >= 0;
+    }
+
+    private Duration age(long storedAt) {
+        return Duration.ofMillis(clock.millis() - storedAt);
+    }
+
+    // Un fallo de memoria lee la copia del disco (por ejemplo, la de una ejecución anterior) y la deja en memoria
+    private Optional<CachedBook> cachedBook(Long id) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(books.get(id, key -> readRef(bookRef(key))
+                .flatMap(ref -> readBook(ref).map(book -> new CachedBook(book, ref.storedAt())))
+                .orElse(null)));
+    }
+
+    private void writeBook(Long id, byte[] content, long storedAt) {
+        try {
+            String hash = writeBlob(content);
+            writeRef(bookRef(id), new CacheRef(hash, storedAt, null, null, null, null, null));
+        } catch (IOException e) {
+            log.warn("Could not store book {} in disk cache: {}", id, e.getMessage());
+        }
+    }
+
+    private Optional<ExternalBookDTO> readBook(CacheRef ref) {
+        try {
+            return Optional.of(objectMapper.readValue(blobPath(ref.hash()).toFile(), ExternalBookDTO.class));
+        } catch (IOException e) {
+            log.warn("Could not read cached book blob {}: {}", ref.hash(), e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private String bookRef(Long id) {
+        return "books/" + id;
+    }
+
+    private Path blobPath(String hash) {
+        return blobs.resolve(hash.substring(0, 2)).resolve(hash + ".json");
+    }
+
+    private String writeBlob(byte[] content) throws IOException {
+        String hash = HEX.formatHex(sha256().digest(content));
+        Path target = blobPath(hash);
+        if (!Files.exists(target)) {
+            Files.createDirectories(target.getParent());
+            Path temp = Files.createTempFile(target.getParent(), "blob-", ".tmp");
+            Files.write(temp, content);
+            moveAtomically(temp, target);
+        }
+        return hash;
+    }
+
+    private void writeRef(String name, CacheRef ref) throws IOException {
+        Path target = refs.resolve(name + ".json");
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), "ref-", ".tmp");
+        Files.write(temp, objectMapper.writeValueAsBytes(ref));
+        moveAtomically(temp, target);
+    }
+
+    private Optional<CacheRef> readRef(String name) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        return readRefFile(refs.resolve(name + ".json"));
+    }
+
+    private Optional<CacheRef> readRefFile(Path file) {
+        try {
+            return Optional.of(objectMapper.readValue(Files.readString(file, StandardCharsets.UTF_8), CacheRef.class));
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        } catch (IOException e) {
+            log.warn("Ignoring unreadable disk cache ref {}: {}", file, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private static void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Referencia guardada en refs/: hash del contenido y momento en que se obtuvo de la API (epoch millis).
+     * url, etag, lastModified, books y previousHash (el blob del feed anterior, que se conserva) solo se usan
+     * para el feed.
+     */
+    record CacheRef(String hash, long storedAt, String url, String etag, String lastModified, Integer books,
+                    String previousHash) {
+    }
+
+    private record CachedBook(ExternalBookDTO book, long storedAt) {
+    }
+
+    /**
+     * Un feed guardado en disco. fresh indica si todavía está dentro de fresh-for.
+     */
+    public record FeedSnapshot(Path path, String etag, String lastModified, int books, Instant storedAt,
+                               boolean fresh) {
+
+        public InputStream open() throws IOException {
+            return Files.newInputStream(path);
+        }
+    }
+
+    /**
+     * Copia al disco el cuerpo de una respuesta mientras se lee, calculando su hash al mismo tiempo.
+     */
+    public class FeedSnapshotWriter implements AutoCloseable {
+
+        private final String url;
+        private final Path temp;
+        private final MessageDigest digest = sha256();
+        private OutputStream out;
+        private boolean committed;
+
+        private FeedSnapshotWriter(String url, Path temp) {
+            this.url = url;
+            this.temp = temp;
+        }
+
+        /**
+         * Devuelve un stream que lee del cuerpo original y copia cada byte leído al archivo temporal.
+         * Si la caché está deshabilitada devuelve el cuerpo sin cambios.
+         */
+        public InputStream capture(InputStream body) throws IOException {
+            if (temp == null) {
+                return body;
+            }
+            out = new DigestOutputStream(Files.newOutputStream(temp), digest);
+            return new FilterInputStream(body) {
+
+                @Override
+                public int read() throws IOException {
+                    int b = super.read();
+                    if (b >= 0) {
+                        out.write(b);
+                    }
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) throws IOException {
+                    int read = super.read(buffer, offset, length);
+                    if (read > 0) {
+                        out.write(buffer, offset, read);
+                    }
+                    return read;
+                }
+            };
+        }
+
+        /**
+         * Guarda lo leído como el feed vigente. Debe llamarse después de parsear el feed completo.
+         */
+        public void commit(String etag, String lastModified, int books) {
+            if (temp == null || out == null) {
+                return;
+            }
+            try {
+                out.close();
+                String hash = HEX.formatHex(digest.digest());
+                Path target = blobPath(hash);
+                Files.createDirectories(target.getParent());
+                moveAtomically(temp, target);
+                Optional<CacheRef> previous = readRef(FEED_REF);
+                // El feed anterior se conserva una generación: alguien puede estar leyéndolo todavía.
+                // El de dos generaciones atrás ya no tiene referencias (los libros por id son blobs propios)
+                String previousHash = null;
+                String retiredHash = null;
+                if (previous.isPresent() && previous.get().hash().equals(hash)) {
+                    previousHash = previous.get().previousHash();
+                } else if (previous.isPresent()) {
+                    previousHash = previous.get().hash();
+                    retiredHash = previous.get().previousHash();
+                }
+                writeRef(FEED_REF, new CacheRef(hash, clock.millis(), url, etag, lastModified, books, previousHash));
+                committed = true;
+                if (retiredHash != null && !retiredHash.equals(hash)) {
+                    Files.deleteIfExists(blobPath(retiredHash));
+                }
+                log.info("Stored feed snapshot of {} books in disk cache ({})", books, hash);
+            } catch (IOException e) {
+                // Sin copia en disco el catálogo sigue funcionando; solo se pierde el arranque sin red
+                log.warn("Could not store feed snapshot in disk cache: {}", e.getMessage());
+            }
+        }
+
+        @Override
+        public void close() {
+            if (temp == null || committed) {
+                return;
+            }
+            try {
+                if (out != null) {
+                    out.close();
+                }
+                Files.deleteIfExists(temp);
+            } catch (IOException e) {
+                log.warn("Could not discard feed snapshot {}: {}", temp, e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.SyncResultDTO;
+import com.example.libreria.repository.BookRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Al arrancar con el catálogo vacío, lo reconstruye desde la caché en disco en lugar de esperar
+ * una sincronización completa con la API externa. Si la copia ya no está vigente (fresh-for),
+ * además lanza una sincronización en segundo plano, que será condicional y barata si nada cambió.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class CatalogWarmStart {
+    
+    private final CatalogDiskCache catalogDiskCache;
+    private final ExternalBookService externalBookService;
+    private final BookService bookService;
+    private final BookRepository bookRepository;
+    private final SyncJobService syncJobService;
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmStart() {
+        if (!catalogDiskCache.isEnabled()) {
+            return;
+        }
+        catalogDiskCache.purgeExpired();
+        if (bookRepository.count() > 0) {
+            return;
+        }
+        Optional<CatalogDiskCache.FeedSnapshot> snapshot = externalBookService.cachedFeed();
+        if (snapshot.isEmpty()) {
+            log.info("No usable feed in disk cache, catalog will be empty until the first sync");
+            return;
+        }
+        
+        long start = System.nanoTime();
+        try {
+            SyncResultDTO result = bookService.restoreCatalogFromDiskCache(snapshot.get());
+            log.info("Warm start loaded {} books from disk cache in {} ms (feed age {})",
+                    result.getCreated() + result.getUpdated() + result.getUnchanged(),
+                    (System.nanoTime() - start) / 1_000_000,
+                    Duration.between(snapshot.get().storedAt(), Instant.now()));
+        } catch (RuntimeException e) {
+            log.error("Warm start from disk cache failed: {}", e.getMessage(), e);
+            return;
+        }
+        if (!snapshot.get().fresh()) {
+            log.info("Disk cache feed is stale, scheduling a sync with the external API");
+            syncJobService.startSync();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.ExternalBookDTO;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Agrupa los pedidos individuales de libros por id que llegan dentro de una ventana corta
+ * y los envía como una única llamada multi-id a la API externa.
+ * Un lote se envía antes de que termine la ventana si alcanza el tamaño máximo.
+ * Cada llamador recibe su libro, o null si la API externa no lo conoce; si el lote falla,
+ * todos reciben el mismo error.
+ *
+ * No es un bean: lo crea {@link ExternalBookService} con la llamada multi-id que debe usar.
+ */
+@Slf4j
+public class ExternalBookBatchLoader {
+    
+    private final Function<List<Long>, List<ExternalBookDTO>> fetcher;
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService dispatcher;
+    
+    private final Object lock = new Object();
+    private Map<Long, CompletableFuture<ExternalBookDTO>> pending = new LinkedHashMap<>();
+    private ScheduledFuture<?> scheduledFlush;
+    
+    /**
+     * @param fetcher     pide los ids de un lote y devuelve los libros encontrados, en cualquier orden
+     * @param maxInFlight cuántos lotes pueden estar esperando a la API a la vez
+     */
+    public ExternalBookBatchLoader(Function<List<Long>, List<ExternalBookDTO>> fetcher, Duration window,
+                                   int maxBatchSize, int maxInFlight) {
+        if (maxBatchSize < 1 || maxInFlight < 1) {
+            throw new IllegalArgumentException("El tamaño de lote y los lotes en curso deben ser mayores a 0");
+        }
+        this.fetcher = fetcher;
+        this.windowNanos = window.toNanos();
+        this.maxBatchSize = maxBatchSize;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(daemon("external-books-batch-timer"));
+        this.dispatcher = Executors.newFixedThreadPool(maxInFlight, daemon("external-books-batch"));
+    }
+    
+    public ExternalBookDTO load(Long id) {
+        try {
+            return loadAsync(id).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+    
+    public CompletableFuture<ExternalBookDTO> loadAsync(Long id) {
+        Map<Long, CompletableFuture<ExternalBookDTO>> full = null;
+        CompletableFuture<ExternalBookDTO> future;
+        synchronized (lock) {
+            // Un mismo id pedido dos veces en la ventana comparte el resultado
+            future = pending.computeIfAbsent(id, key -> new CompletableFuture<>());
+            if (pending.size() >= maxBatchSize) {
+                full = takePending();
+            } else if (scheduledFlush == null) {
+                scheduledFlush = scheduler.schedule(this::flush, windowNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+        if (full != null) {
+            dispatch(full);
+        }
+        return future;
+    }
+    
+    private void flush() {
+        Map<Long, CompletableFuture<ExternalBookDTO>> batch;
+        synchronized (lock) {
+            batch = takePending();
+        }
+        if (!batch.isEmpty()) {
+            dispatch(batch);
+        }
+    }
+    
+    // Debe llamarse con el lock tomado
+    private Map<Long, CompletableFuture<ExternalBookDTO>> takePending() {
+        Map<Long, CompletableFuture<ExternalBookDTO>> batch = pending;
+        pending = new LinkedHashMap<>();
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        return batch;
+    }
+    
+    private void dispatch(Map<Long, CompletableFuture<ExternalBookDTO>> batch) {
+        dispatcher.execute(() -> {
+            try {
+                List<ExternalBookDTO> books = fetcher.apply(new ArrayList<>(batch.keySet()));
+                Map<Long, ExternalBookDTO> byId = books.stream()
+                        .collect(Collectors.toMap(ExternalBookDTO::getId, Function.identity(), (a, b) -> a));
+                log.debug("Batch of {} ids resolved {} books", batch.size(), byId.size());
+                batch.forEach((id, future) -> future.complete(byId.get(id)));
+            } catch (Throwable e) {
+                // Cualquier error, no solo los de la API: si no, los que esperan el lote no terminan nunca
+                batch.values().forEach(future -> future.completeExceptionally(e));
+            }
+        });
+    }
+    
+    public void shutdown() {
+        flush();
+        scheduler.shutdown();
+        dispatcher.shutdown();
+    }
+    
+    private static ThreadFactory daemon(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
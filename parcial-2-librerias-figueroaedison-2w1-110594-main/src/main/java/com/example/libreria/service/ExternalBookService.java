@@ -1,140 +1,653 @@
 package com.example.libreria.service;
 
 import com.example.libreria.dto.ExternalBookDTO;
-import com.example.libreria.model.Book;
-import com.example.libreria.repository.BookRepository;
+import com.example.libreria.model.FeedValidator;
+import com.example.libreria.repository.FeedValidatorRepository;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.retry.Retry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
-import org.springframework.http.ResponseEntity;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
 
-import java.math.BigDecimal;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
-public class ExternalBookService {
+public class ExternalBookService implements MeterBinder {
+
+    private static final long LAST_KNOWN_BOOKS_MAX_SIZE = 10_000;
+    private static final int LATENCY_WINDOW_SIZE = 1_000;
 
     private final RestTemplate restTemplate;
-    private final BookRepository bookRepository;
+    private final FeedValidatorRepository feedValidatorRepository;
+    private final ObjectMapper objectMapper;
+    private final CircuitBreaker externalBooksCircuitBreaker;
+    private final Bulkhead externalBooksBulkhead;
+    private final Retry externalBooksRetry;
+    private final CatalogDiskCache catalogDiskCache;
 
     @Value("${external.api.books.url}")
     private String externalApiUrl;
 
-    @Transactional
-    public List<Book> syncBooksFromExternalApi() {
-        log.info("Iniciando sincronización de libros desde API externa: {}", externalApiUrl);
+    @Value("${external.api.books.chunk-size:500}")
+    private int chunkSize;
 
-        try {
-            ResponseEntity<List<ExternalBookDTO>> response = restTemplate.exchange(
-                    externalApiUrl,
-                    HttpMethod.GET,
-                    null,
-                    new ParameterizedTypeReference<List<ExternalBookDTO>>() {}
-            );
+    // Con un valor mayor a 0 el feed se pide por páginas (?_page=N&_limit=page-size)
+    @Value("${external.api.books.page-size:0}")
+    private int pageSize;
+
+    // Tope de páginas por descarga, por si la API nunca devuelve una página incompleta; 0: sin tope
+    @Value("${external.api.books.max-pages:10000}")
+    private int maxPages;
+
+    // Micro-lotes: los pedidos por id de una ventana corta viajan juntos en un GET {url}?id=1&id=2...
+    @Value("${external.api.books.batch.enabled:false}")
+    private boolean batchEnabled;
+
+    @Value("${external.api.books.batch.window:5ms}")
+    private Duration batchWindow;
+
+    @Value("${external.api.books.batch.max-size:50}")
+    private int batchMaxSize;
+
+    @Value("${external.api.books.batch.max-in-flight:4}")
+    private int batchMaxInFlight;
+
+    // Pedido de cobertura: si la respuesta tarda más que el percentil indicado, se lanza un segundo pedido
+    @Value("${external.api.books.hedge.enabled:false}")
+    private boolean hedgeEnabled;
+
+    @Value("${external.api.books.hedge.percentile:0.95}")
+    private double hedgePercentile;
+
+    @Value("${external.api.books.hedge.min-delay:20ms}")
+    private Duration hedgeMinDelay;
+
+    // Hasta juntar estas muestras no se cubre ningún pedido
+    @Value("${external.api.books.hedge.min-samples:20}")
+    private int hedgeMinSamples;
+
+    // Hilos para los intentos cubiertos y sus coberturas; sin uno libre, el pedido se hace sin cubrir
+    @Value("${external.api.books.hedge.max-threads:20}")
+    private int hedgeMaxThreads = 20;
 
-            List<ExternalBookDTO> externalBooks = response.getBody();
+    private final SingleFlight<Long, ExternalBookDTO> bookRequests = new SingleFlight<>();
+    private volatile ExternalBookBatchLoader batchLoader;
 
-            if (externalBooks == null || externalBooks.isEmpty()) {
-                log.warn("No se obtuvieron libros de la API externa");
-                return new ArrayList<>();
+    private final LatencyWindow bookLatencies = new LatencyWindow(LATENCY_WINDOW_SIZE);
+    private volatile ExecutorService hedgeExecutor;
+
+    // Medidores de cada intento y de los hedges ganados, creados una vez por registro (ver bindTo)
+    private volatile Map<String, Timer> attemptTimers = attemptTimers(new CompositeMeterRegistry());
+    private volatile Map<String, Counter> hedgeWinners = hedgeWinners(new CompositeMeterRegistry());
+
+    // Última copia buena de cada libro obtenido por id; se usa mientras el circuito está abierto
+    private final Cache<Long, ExternalBookDTO> lastKnownBooks = Caffeine.newBuilder()
+            .maximumSize(LAST_KNOWN_BOOKS_MAX_SIZE)
+            .build();
+    private final AtomicLong rejectedByCircuitBreaker = new AtomicLong();
+    private final AtomicLong rejectedByBulkhead = new AtomicLong();
+    private final AtomicLong staleResponses = new AtomicLong();
+
+    /**
+     * Obtiene un libro de la API externa. Los pedidos concurrentes del mismo id comparten
+     * una única llamada en curso (single-flight) y reciben el mismo resultado o el mismo error.
+     * Las fallas de la API se reintentan con backoff exponencial y jitter; con el hedge habilitado,
+     * si un intento tarda más que el percentil configurado se lanza un segundo pedido y gana el primero que responde.
+     * Con external.api.books.batch.enabled, cada intento se suma al lote multi-id en curso
+     * (ver {@link ExternalBookBatchLoader}) en lugar de hacer su propia llamada; un id desconocido devuelve null.
+     * Cada llamada pasa por el circuit breaker y el bulkhead de la API externa; si alguno la rechaza
+     * se devuelve la última copia buena del libro (en memoria o en la caché en disco), o un error si nunca se obtuvo.
+     * Con la caché en disco habilitada, un libro guardado hace menos de fresh-for se devuelve sin llamar a la API.
+     */
+    public ExternalBookDTO fetchBookById(Long id) {
+        return bookRequests.execute(id, () -> guardedRequestBookById(id));
+    }
+
+    private ExternalBookDTO guardedRequestBookById(Long id) {
+        Optional<ExternalBookDTO> cached = catalogDiskCache.getFreshBook(id);
+        if (cached.isPresent()) {
+            log.debug("Serving book {} from disk cache", id);
+            return cached.get();
+        }
+        AtomicInteger attempts = new AtomicInteger();
+        try {
+            ExternalBookDTO book = externalBooksRetry.executeSupplier(
+                    () -> hedgedRequestBookById(id, attempts.getAndIncrement() == 0 ? "first" : "retry"));
+            if (book != null) {
+                lastKnownBooks.put(id, book);
+                catalogDiskCache.putBook(book);
+            }
+            return book;
+        } catch (CallNotPermittedException | BulkheadFullException e) {
+            ExternalBookDTO stale = lastKnownBooks.getIfPresent(id);
+            if (stale == null) {
+                stale = catalogDiskCache.getBook(id).orElse(null);
+            }
+            if (stale == null) {
+                throw new RuntimeException("La API externa no está disponible y no hay una copia del libro " + id, e);
             }
+            log.warn("External API call for book {} rejected ({}), serving last known copy", id, e.getMessage());
+            staleResponses.incrementAndGet();
+            return stale;
+        }
+    }
 
-            log.info("Se obtuvieron {} libros de la API externa", externalBooks.size());
+    private ExternalBookDTO hedgedRequestBookById(Long id, String attempt) {
+        Duration delay = hedgeDelay();
+        if (delay == null) {
+            return timedRequestBookById(id, attempt);
+        }
+        CompletableFuture<ExternalBookDTO> primary = submitAttempt(id, attempt);
+        if (primary == null) {
+            log.debug("No hedge threads available, requesting book {} without hedging", id);
+            return timedRequestBookById(id, attempt);
+        }
+        try {
+            return primary.get(delay.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            log.debug("Book {} took longer than {} ms, sending hedged request", id, delay.toMillis());
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        } catch (InterruptedException e) {
+            primary.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrumpido esperando la API externa", e);
+        }
+        CompletableFuture<ExternalBookDTO> hedge = submitAttempt(id, "hedge");
+        if (hedge == null) {
+            hedge = new CompletableFuture<>();
+            hedge.completeExceptionally(new RejectedExecutionException("Sin hilos libres para el hedge"));
+        }
+        return firstSuccessful(primary, hedge);
+    }
 
-            List<Book> syncedBooks = new ArrayList<>();
+    /**
+     * Lanza un intento en el pool de hedge, o devuelve null si no hay hilos libres.
+     * Si el futuro se cancela antes de que el intento empiece, el intento no se hace. Un pedido HTTP
+     * ya enviado no se interrumpe (interrumpir el hilo descarta la conexión del pool y cuenta como falla
+     * para el circuit breaker): termina, su resultado se descarta y se mide con outcome=cancelled.
+     */
+    private CompletableFuture<ExternalBookDTO> submitAttempt(Long id, String attempt) {
+        CompletableFuture<ExternalBookDTO> result = new CompletableFuture<>();
+        try {
+            hedgeExecutor().execute(() -> {
+                if (result.isCancelled()) {
+                    return;
+                }
+                try {
+                    result.complete(timedRequestBookById(id, attempt, result::isCancelled));
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            return null;
+        }
+        return result;
+    }
 
-            for (ExternalBookDTO externalBook : externalBooks) {
-                Book book = syncBook(externalBook);
-                syncedBooks.add(book);
+    // Acotado: sin cola, así que un pedido nunca espera a que se libere un hilo de hedge
+    private ExecutorService hedgeExecutor() {
+        ExecutorService executor = hedgeExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                if (hedgeExecutor == null) {
+                    hedgeExecutor = new ThreadPoolExecutor(0, hedgeMaxThreads, 60, TimeUnit.SECONDS,
+                            new SynchronousQueue<>(), hedgeThreadFactory());
+                }
+                executor = hedgeExecutor;
             }
+        }
+        return executor;
+    }
+
+    // El p95 (o el percentil configurado) de las respuestas recientes, o null si no corresponde cubrir
+    private Duration hedgeDelay() {
+        if (!hedgeEnabled || bookLatencies.count() < Math.max(1, hedgeMinSamples)) {
+            return null;
+        }
+        Duration percentile = bookLatencies.percentile(hedgePercentile);
+        return percentile.compareTo(hedgeMinDelay) > 0 ? percentile : hedgeMinDelay;
+    }
 
-            log.info("Sincronización completada. {} libros procesados", syncedBooks.size());
-            return syncedBooks;
+    // Gana la primera respuesta exitosa y se cancela la otra; si los dos pedidos fallan se propaga el último error
+    private ExternalBookDTO firstSuccessful(CompletableFuture<ExternalBookDTO> primary,
+                                           CompletableFuture<ExternalBookDTO> hedge) {
+        CompletableFuture<ExternalBookDTO> winner = new CompletableFuture<>();
+        AtomicBoolean decided = new AtomicBoolean();
+        AtomicInteger pending = new AtomicInteger(2);
+        primary.whenComplete((book, error) -> complete(winner, decided, pending, book, error, "primary", hedge));
+        hedge.whenComplete((book, error) -> complete(winner, decided, pending, book, error, "hedge", primary));
+        try {
+            return winner.join();
+        } catch (CompletionException e) {
+            throw unwrap(e.getCause());
+        }
+    }
 
-        } catch (Exception e) {
-            log.error("Error al sincronizar libros desde la API externa", e);
-            throw new RuntimeException("Error al sincronizar libros: " + e.getMessage(), e);
+    private void complete(CompletableFuture<ExternalBookDTO> winner, AtomicBoolean decided, AtomicInteger pending,
+                          ExternalBookDTO book, Throwable error, String request,
+                          CompletableFuture<ExternalBookDTO> other) {
+        if (error == null) {
+            if (decided.compareAndSet(false, true)) {
+                hedgeWinners.get(request).increment();
+                // Antes de entregar el resultado: el que llama ya no depende del otro pedido
+                other.cancel(false);
+                winner.complete(book);
+            }
+        } else if (pending.decrementAndGet() == 0) {
+            winner.completeExceptionally(error instanceof CompletionException ? error.getCause() : error);
         }
     }
 
-    private Book syncBook(ExternalBookDTO externalBook) {
-        Book book = bookRepository.findByExternalId(externalBook.getId())
-                .orElse(new Book());
+    private RuntimeException unwrap(Throwable error) {
+        return error instanceof RuntimeException runtime ? runtime : new RuntimeException(error);
+    }
 
-        book.setExternalId(externalBook.getId());
-        book.setTitle(externalBook.getTitle());
+    // Un intento contra la API, medido en external.books.request.attempts{attempt, outcome}.
+    // En lote, el guard se aplica a la llamada multi-id y la medición incluye la espera de la ventana
+    private ExternalBookDTO timedRequestBookById(Long id, String attempt) {
+        return timedRequestBookById(id, attempt, () -> false);
+    }
 
-        if (externalBook.getAuthorName() != null && !externalBook.getAuthorName().isEmpty()) {
-            book.setAuthor(String.join(", ", externalBook.getAuthorName()));
-        } else {
-            book.setAuthor("Desconocido");
+    private ExternalBookDTO timedRequestBookById(Long id, String attempt, BooleanSupplier cancelled) {
+        if (batchEnabled) {
+            return timed(attempt, cancelled, () -> batchLoader().load(id));
         }
+        return guard(() -> timed(attempt, cancelled, () -> requestBookById(id)));
+    }
 
-        if (externalBook.getDescription() != null && !externalBook.getDescription().isEmpty()) {
-            book.setDescription(externalBook.getDescription());
-        } else {
-            StringBuilder desc = new StringBuilder();
-            desc.append("Libro: ").append(externalBook.getTitle());
-            desc.append(" | Autor: ").append(book.getAuthor());
+    private ExternalBookDTO timed(String attempt, BooleanSupplier cancelled, Supplier<ExternalBookDTO> request) {
+        long start = System.nanoTime();
+        String outcome = "error";
+        try {
+            ExternalBookDTO book = request.get();
+            outcome = "success";
+            return book;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            if ("success".equals(outcome)) {
+                bookLatencies.record(elapsed);
+            }
+            if (cancelled.getAsBoolean()) {
+                outcome = "cancelled";
+            }
+            attemptTimers.get(attempt + ":" + outcome).record(elapsed, TimeUnit.NANOSECONDS);
+        }
+    }
 
-            if (externalBook.getFirstPublishYear() != null) {
-                desc.append(" | Año: ").append(externalBook.getFirstPublishYear());
+    private static Map<String, Timer> attemptTimers(MeterRegistry registry) {
+        Map<String, Timer> timers = new HashMap<>();
+        for (String attempt : List.of("first", "retry", "hedge")) {
+            for (String outcome : List.of("success", "error", "cancelled")) {
+                timers.put(attempt + ":" + outcome, Timer.builder("external.books.request.attempts")
+                        .description("Intentos de obtener un libro por id de la API externa")
+                        .tag("attempt", attempt)
+                        .tag("outcome", outcome)
+                        .register(registry));
             }
-            if (externalBook.getEditionCount() != null) {
-                desc.append(" | Ediciones: ").append(externalBook.getEditionCount());
+        }
+        return timers;
+    }
+
+    private static Map<String, Counter> hedgeWinners(MeterRegistry registry) {
+        Map<String, Counter> counters = new HashMap<>();
+        for (String request : List.of("primary", "hedge")) {
+            counters.put(request, Counter.builder("external.books.hedges")
+                    .description("Pedidos cubiertos, según cuál de los dos respondió primero")
+                    .tag("winner", request)
+                    .register(registry));
+        }
+        return counters;
+    }
+
+    // Se crea con el primer pedido en lote, con la configuración ya inyectada
+    private ExternalBookBatchLoader batchLoader() {
+        ExternalBookBatchLoader loader = batchLoader;
+        if (loader == null) {
+            synchronized (this) {
+                if (batchLoader == null) {
+                    batchLoader = new ExternalBookBatchLoader(this::requestBooksByIds, batchWindow,
+                            batchMaxSize, batchMaxInFlight);
+                }
+                loader = batchLoader;
             }
+        }
+        return loader;
+    }
 
-            book.setDescription(desc.toString());
+    @PreDestroy
+    public void shutdown() {
+        if (batchLoader != null) {
+            batchLoader.shutdown();
         }
+        if (hedgeExecutor != null) {
+            hedgeExecutor.shutdownNow();
+        }
+    }
+
+    private static ThreadFactory hedgeThreadFactory() {
+        AtomicInteger threads = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "external-book-request-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
 
-        if (externalBook.getPrice() != null && externalBook.getPrice().compareTo(BigDecimal.ZERO) > 0) {
-            book.setPrice(externalBook.getPrice());
-        } else {
-            book.setPrice(BigDecimal.valueOf(10.00));
+    // CircuitBreaker(Bulkhead(llamada)): los rechazos del bulkhead no cuentan como fallas de la API
+    private <T> T guard(Supplier<T> call) {
+        try {
+            return externalBooksCircuitBreaker.executeSupplier(
+                    Bulkhead.decorateSupplier(externalBooksBulkhead, call));
+        } catch (CallNotPermittedException e) {
+            rejectedByCircuitBreaker.incrementAndGet();
+            throw e;
+        } catch (BulkheadFullException e) {
+            rejectedByBulkhead.incrementAndGet();
+            throw e;
         }
+    }
 
-        if (book.getId() == null) {
-            book.setStockQuantity(10);
-            book.setAvailableQuantity(10);
-            log.info("Creando nuevo libro: '{}' (ID externo: {})", book.getTitle(), book.getExternalId());
-        } else {
-            log.info("Actualizando libro existente: '{}' (ID externo: {})", book.getTitle(), book.getExternalId());
+    private ExternalBookDTO requestBookById(Long id) {
+        try {
+            log.info("Fetching book with id {} from external API", id);
+            String url = externalApiUrl + "/" + id;
+            ExternalBookDTO book = restTemplate.getForObject(url, ExternalBookDTO.class);
+            log.info("Successfully fetched book: {}", book != null ? book.getTitle() : "null");
+            return book;
+        } catch (RestClientException e) {
+            log.error("Error fetching book {} from external API: {}", id, e.getMessage(), e);
+            throw new RuntimeException("Error al obtener el libro de la API externa: " + e.getMessage(), e);
         }
+    }
 
-        return bookRepository.save(book);
+    // Un lote en una sola llamada: GET {url}?id=1&id=2...; los ids que la API no conoce no aparecen.
+    // Los rechazos del guard llegan sin envolver a cada pedido del lote, que sirve su copia conocida
+    private List<ExternalBookDTO> requestBooksByIds(List<Long> ids) {
+        String url = UriComponentsBuilder.fromUriString(externalApiUrl)
+                .queryParam("id", ids.toArray())
+                .toUriString();
+        return guard(() -> {
+            try {
+                log.debug("Fetching {} books by id from external API", ids.size());
+                ExternalBookDTO[] books = restTemplate.getForObject(url, ExternalBookDTO[].class);
+                return books != null ? Arrays.asList(books) : Collections.<ExternalBookDTO>emptyList();
+            } catch (RestClientException e) {
+                log.error("Error fetching {} books from external API: {}", ids.size(), e.getMessage(), e);
+                throw new RuntimeException("Error al obtener libros de la API externa: " + e.getMessage(), e);
+            }
+        });
     }
 
-    @Transactional(readOnly = true)
-    public List<Book> getAllBooks() {
-        return bookRepository.findAll();
+    // Publica external.books.requests.executed, .coalesced, .rejected (por motivo) y .stale;
+    // más los intentos (external.books.request.attempts) y los hedges ganados (external.books.hedges)
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        attemptTimers = attemptTimers(registry);
+        hedgeWinners = hedgeWinners(registry);
+        FunctionCounter.builder("external.books.requests.rejected", rejectedByCircuitBreaker, AtomicLong::get)
+                .description("Pedidos a la API externa rechazados sin llamarla")
+                .tag("reason", "circuit_open")
+                .register(registry);
+        FunctionCounter.builder("external.books.requests.rejected", rejectedByBulkhead, AtomicLong::get)
+                .description("Pedidos a la API externa rechazados sin llamarla")
+                .tag("reason", "bulkhead_full")
+                .register(registry);
+        FunctionCounter.builder("external.books.requests.stale", staleResponses, AtomicLong::get)
+                .description("Pedidos por id respondidos con la última copia conocida del libro")
+                .register(registry);
+        FunctionCounter.builder("external.books.requests.executed", bookRequests, SingleFlight::executionCount)
+                .description("Llamadas a la API externa por id que se ejecutaron")
+                .register(registry);
+        FunctionCounter.builder("external.books.requests.coalesced", bookRequests, SingleFlight::coalescedCount)
+                .description("Pedidos por id que esperaron una llamada ya en curso en lugar de repetirla")
+                .register(registry);
     }
 
-    @Transactional(readOnly = true)
-    public Book getBookByExternalId(Long externalId) {
-        return bookRepository.findByExternalId(externalId)
-                .orElseThrow(() -> new RuntimeException("Libro no encontrado con ID externo: " + externalId));
+    /**
+     * Descarga el catálogo en modo streaming: el arreglo JSON se parsea de a un libro
+     * y se entrega al consumidor en bloques de tamaño fijo (external.api.books.chunk-size).
+     * La memoria usada depende del tamaño del bloque y no del tamaño del catálogo.
+     *
+     * El pedido es condicional: se envían el ETag y el Last-Modified guardados del último feed
+     * sincronizado y, si la API responde 304, no se lee ni se entrega nada.
+     * Los validadores nuevos no se guardan acá; ver {@link #saveFeedValidators(FeedFetchResult)}.
+     *
+     * Con external.api.books.page-size mayor a 0 el feed se pide por páginas (ver fetchAllBooksInPages).
+     * Si no, el cuerpo de la respuesta se guarda además en la caché en disco (ver {@link CatalogDiskCache}).
+     *
+     * @param chunkConsumer recibe cada bloque; el bloque no se reutiliza después de entregarlo
+     */
+    public FeedFetchResult fetchAllBooksInChunks(Consumer<List<ExternalBookDTO>> chunkConsumer) {
+        if (pageSize > 0) {
+            return fetchAllBooksInPages(chunkConsumer);
+        }
+        Optional<FeedValidator> stored = feedValidatorRepository.findById(externalApiUrl);
+        try {
+            log.info("Streaming books from external API: {}", externalApiUrl);
+            FeedFetchResult result = restTemplate.execute(externalApiUrl, HttpMethod.GET,
+                    request -> stored.ifPresent(validator -> addConditionalHeaders(request.getHeaders(), validator)),
+                    response -> {
+                        if (response.getStatusCode().value() == HttpStatus.NOT_MODIFIED.value()) {
+                            return FeedFetchResult.notModified();
+                        }
+                        try (CatalogDiskCache.FeedSnapshotWriter snapshot = catalogDiskCache.startFeedSnapshot(externalApiUrl)) {
+                            int total = readBooksInChunks(snapshot.capture(response.getBody()), chunkSize, chunkConsumer);
+                            String etag = response.getHeaders().getETag();
+                            String lastModified = response.getHeaders().getFirst(HttpHeaders.LAST_MODIFIED);
+                            snapshot.commit(etag, lastModified, total);
+                            return FeedFetchResult.modified(total, etag, lastModified);
+                        }
+                    });
+            if (result == null || !result.isModified()) {
+                log.info("External API feed not modified since the last sync");
+                return FeedFetchResult.notModified();
+            }
+            log.info("Successfully streamed {} books from external API", result.getTotal());
+            return result;
+        } catch (RestClientException e) {
+            log.error("Error streaming books from external API: {}", e.getMessage(), e);
+            throw new RuntimeException("Error al obtener libros de la API externa: " + e.getMessage(), e);
+        }
     }
 
-    @Transactional
-    public Book updateBookStock(Long externalId, Integer newStock) {
-        Book book = getBookByExternalId(externalId);
+    /**
+     * Pide el feed de a una página (parámetros _page y _limit, como json-server) y la entrega en bloques.
+     * La página siguiente se pide recién cuando el consumidor terminó con la anterior, así que una
+     * escritura lenta frena la descarga en lugar de acumular libros en memoria.
+     * La lectura termina con la primera página incompleta (o vacía). No se usan pedidos condicionales:
+     * un ETag por página no dice si cambió el catálogo completo.
+     *
+     * Si la API no respeta la paginación la lectura no sigue para siempre: una primera página con más libros
+     * que _limit se toma como el feed completo, y una página que empieza con el mismo libro que la anterior,
+     * o pasar de external.api.books.max-pages, es un error. En esos dos casos el feed quedaría incompleto,
+     * así que la sincronización falla en lugar de retirar los libros que faltan.
+     */
+    private FeedFetchResult fetchAllBooksInPages(Consumer<List<ExternalBookDTO>> chunkConsumer) {
+        int total = 0;
+        int page = 1;
+        Long previousFirstId = null;
+        try {
+            log.info("Fetching books from external API in pages of {}: {}", pageSize, externalApiUrl);
+            while (true) {
+                if (maxPages > 0 && page > maxPages) {
+                    throw new RuntimeException("La API externa devolvió más de " + maxPages
+                            + " páginas completas; el feed se descarta");
+                }
+                String url = UriComponentsBuilder.fromUriString(externalApiUrl)
+                        .queryParam("_page", page)
+                        .queryParam("_limit", pageSize)
+                        .toUriString();
+                AtomicReference<Long> firstId = new AtomicReference<>();
+                Consumer<List<ExternalBookDTO>> pageConsumer = pageConsumer(page, previousFirstId, firstId, chunkConsumer);
+                Integer read = restTemplate.execute(url, HttpMethod.GET, null,
+                        response -> readBooksInChunks(response.getBody(), Math.min(chunkSize, pageSize), pageConsumer));
+                int count = read != null ? read : 0;
+                total += count;
+                log.debug("Page {} of external API returned {} books", page, count);
+                if (count < pageSize) {
+                    break;
+                }
+                if (page == 1 && count > pageSize) {
+                    log.warn("External API ignored _limit and returned {} books in the first page, using it as the whole feed",
+                            count);
+                    break;
+                }
+                previousFirstId = firstId.get();
+                page++;
+            }
+            log.info("Successfully fetched {} books from external API in {} pages", total, page);
+            return FeedFetchResult.modified(total, null, null);
+        } catch (RestClientException e) {
+            log.error("Error fetching page {} from external API: {}", page, e.getMessage(), e);
+            throw new RuntimeException("Error al obtener libros de la API externa: " + e.getMessage(), e);
+        }
+    }
 
-        int difference = newStock - book.getStockQuantity();
-        book.setStockQuantity(newStock);
-        book.setAvailableQuantity(book.getAvailableQuantity() + difference);
+    // Entrega los bloques de una página, salvo que repita la anterior: corta la lectura antes de entregar nada
+    private Consumer<List<ExternalBookDTO>> pageConsumer(int page, Long previousFirstId, AtomicReference<Long> firstId,
+                                                         Consumer<List<ExternalBookDTO>> chunkConsumer) {
+        return chunk -> {
+            if (firstId.get() == null) {
+                Long id = chunk.get(0).getId();
+                if (previousFirstId != null && previousFirstId.equals(id)) {
+                    throw new RuntimeException("La página " + page + " de la API externa repite la anterior "
+                            + "(empieza con el libro " + id + "); la API no respeta _page");
+                }
+                firstId.set(id);
+            }
+            chunkConsumer.accept(chunk);
+        };
+    }
 
-        log.info("Stock actualizado para '{}': {} unidades (Disponibles: {})",
-                book.getTitle(), newStock, book.getAvailableQuantity());
+    /**
+     * El último feed guardado en la caché en disco para la URL configurada, si no está vencido.
+     */
+    public Optional<CatalogDiskCache.FeedSnapshot> cachedFeed() {
+        return catalogDiskCache.feedSnapshot(externalApiUrl);
+    }
 
-        return bookRepository.save(book);
+    /**
+     * Lee un feed guardado en disco y lo entrega en bloques, igual que {@link #fetchAllBooksInChunks(Consumer)}
+     * pero sin usar la red. El resultado lleva los validadores con los que se había descargado.
+     */
+    public FeedFetchResult readCachedFeedInChunks(CatalogDiskCache.FeedSnapshot snapshot,
+                                                  Consumer<List<ExternalBookDTO>> chunkConsumer) {
+        try (InputStream in = snapshot.open()) {
+            int total = readBooksInChunks(in, chunkSize, chunkConsumer);
+            return FeedFetchResult.modified(total, snapshot.etag(), snapshot.lastModified());
+        } catch (IOException e) {
+            throw new RuntimeException("Error al leer el feed de la caché en disco: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Guarda los validadores de un feed descargado. Debe llamarse solo cuando el feed
+     * se aplicó por completo; si no, un 304 posterior dejaría el catálogo incompleto.
+     */
+    @Transactional
+    public void saveFeedValidators(FeedFetchResult result) {
+        if (!result.isModified()) {
+            return;
+        }
+        if (result.getEtag() == null && result.getLastModified() == null) {
+            feedValidatorRepository.deleteById(externalApiUrl);
+            return;
+        }
+        feedValidatorRepository.save(new FeedValidator(externalApiUrl, result.getEtag(),
+                result.getLastModified(), LocalDateTime.now()));
+    }
+
+    private void addConditionalHeaders(HttpHeaders headers, FeedValidator validator) {
+        if (validator.getEtag() != null) {
+            headers.set(HttpHeaders.IF_NONE_MATCH, validator.getEtag());
+        }
+        if (validator.getLastModified() != null) {
+            headers.set(HttpHeaders.IF_MODIFIED_SINCE, validator.getLastModified());
+        }
     }
-}
 
+    int readBooksInChunks(InputStream body, int size, Consumer<List<ExternalBookDTO>> chunkConsumer) throws IOException {
+        ObjectReader reader = objectMapper.readerFor(ExternalBookDTO.class);
+        int total = 0;
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("Se esperaba un arreglo JSON de libros");
+            }
+            List<ExternalBookDTO> chunk = new ArrayList<>(size);
+            JsonToken token;
+            while ((token = parser.nextToken()) == JsonToken.START_OBJECT) {
+                chunk.add(reader.readValue(parser));
+                total++;
+                if (chunk.size() == size) {
+                    chunkConsumer.accept(chunk);
+                    chunk = new ArrayList<>(size);
+                }
+            }
+            // Un elemento que no es un libro (null, un número, otro arreglo) o un cuerpo cortado no es el fin
+            // del feed: tomarlo como tal retiraría todos los libros que venían después
+            if (token != JsonToken.END_ARRAY) {
+                throw new IOException("Se esperaba un libro o el fin del arreglo en el libro " + (total + 1)
+                        + " del feed y se encontró " + token);
+            }
+            if (!chunk.isEmpty()) {
+                chunkConsumer.accept(chunk);
+            }
+        }
+        return total;
+    }
+}
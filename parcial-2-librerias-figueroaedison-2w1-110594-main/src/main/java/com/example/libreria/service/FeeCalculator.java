@@ -0,0 +1,95 @@
+package com.example.libreria.service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Tarifas y multas de las reservas calculadas en centavos (long), sin los BigDecimal intermedios
+ * de cada multiplicación. El resultado es idéntico (mismo valor y escala 2) al de la cuenta con
+ * BigDecimal redondeada con HALF_UP:
+ * - Tarifa base: precio × días. Con el precio en centavos la cuenta es exacta, no hay redondeo.
+ * - Multa: precio × tasa × días, con la tasa como entero y su escala (0.15 = 15 / 10^2).
+ *   El producto queda en 10^-(2 + escala) y se lleva a centavos dividiendo con HALF_UP:
+ *   las mitades se alejan del cero.
+ * Si el precio tiene más de 2 decimales significativos o alguna cuenta no entra en un long,
+ * se usa la cuenta con BigDecimal, que da el mismo resultado.
+ */
+final class FeeCalculator {
+    
+    private final BigDecimal lateFeeRate;
+    private final long lateFeeRateUnscaled;
+    private final long lateFeeRateDivisor;
+    
+    /**
+     * @param lateFeeRate fracción del precio que se cobra por día de demora (0.15 = 15%)
+     */
+    FeeCalculator(BigDecimal lateFeeRate) {
+        BigDecimal rate = lateFeeRate.scale() < 0 ? lateFeeRate.setScale(0) : lateFeeRate;
+        this.lateFeeRate = lateFeeRate;
+        this.lateFeeRateUnscaled = rate.unscaledValue().longValueExact();
+        this.lateFeeRateDivisor = BigDecimal.ONE.movePointRight(rate.scale()).longValueExact();
+    }
+    
+    BigDecimal baseFee(BigDecimal dailyRate, int rentalDays) {
+        try {
+            return toAmount(Math.multiplyExact(toCents(dailyRate), rentalDays));
+        } catch (ArithmeticException e) {
+            return exactBaseFee(dailyRate, rentalDays);
+        }
+    }
+    
+    BigDecimal lateFee(BigDecimal dailyRate, long daysLate) {
+        try {
+            long product = Math.multiplyExact(Math.multiplyExact(toCents(dailyRate), lateFeeRateUnscaled), daysLate);
+            return toAmount(divideHalfUp(product, lateFeeRateDivisor));
+        } catch (ArithmeticException e) {
+            return exactLateFee(dailyRate, daysLate);
+        }
+    }
+    
+    /**
+     * Cuenta de referencia con BigDecimal (la de siempre): se usa cuando los centavos no alcanzan
+     */
+    BigDecimal exactBaseFee(BigDecimal dailyRate, int rentalDays) {
+        return dailyRate
+                .multiply(new BigDecimal(rentalDays))
+                .setScale(2, RoundingMode.HALF_UP);
+    }
+    
+    BigDecimal exactLateFee(BigDecimal dailyRate, long daysLate) {
+        return dailyRate
+                .multiply(lateFeeRate)
+                .multiply(new BigDecimal(daysLate))
+                .setScale(2, RoundingMode.HALF_UP);
+    }
+    
+    /**
+     * Centavos de un importe; ArithmeticException si tiene más de 2 decimales distintos de cero
+     * o no entra en un long
+     */
+    static long toCents(BigDecimal amount) {
+        // Los importes se guardan con escala 2 (precio del libro y tarifa diaria): el valor sin escala
+        // ya son los centavos y no hace falta crear otro BigDecimal
+        if (amount.scale() == 2) {
+            return amount.unscaledValue().longValueExact();
+        }
+        return amount.setScale(2, RoundingMode.UNNECESSARY).movePointRight(2).longValueExact();
+    }
+    
+    static BigDecimal toAmount(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+    
+    /**
+     * División entera redondeada como RoundingMode.HALF_UP (divisor positivo)
+     */
+    static long divideHalfUp(long dividend, long divisor) {
+        long quotient = dividend / divisor;
+        long remainder = dividend % divisor;
+        // 2·|resto| >= divisor, escrito sin multiplicar para no desbordar
+        if (Math.abs(remainder) >= divisor - Math.abs(remainder)) {
+            quotient += Long.signum(dividend);
+        }
+        return quotient;
+    }
+}
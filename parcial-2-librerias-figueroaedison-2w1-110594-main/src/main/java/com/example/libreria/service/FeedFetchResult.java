@@ -0,0 +1,26 @@
+package com.example.libreria.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Resultado de descargar el feed de la API externa.
+ * Si la API respondió 304, modified es false y no se leyó ningún libro.
+ */
+@Data
+@AllArgsConstructor
+public class FeedFetchResult {
+    
+    private boolean modified;
+    private int total;
+    private String etag;
+    private String lastModified;
+    
+    public static FeedFetchResult notModified() {
+        return new FeedFetchResult(false, 0, null, null);
+    }
+    
+    public static FeedFetchResult modified(int total, String etag, String lastModified) {
+        return new FeedFetchResult(true, total, etag, lastModified);
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.ExternalBookDTO;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Ids de los libros vistos en el feed durante una sincronización, en un long[] que crece a demanda:
+ * 8 bytes por libro, sin un Long ni una entrada de HashSet por cada uno.
+ * Al terminar se ordenan para compararlos con el catálogo en un solo recorrido.
+ * Se llena desde el hilo que lee el feed, así que no es thread-safe.
+ * Los libros sin id ya se descartaron al recibir el bloque (ver BookService).
+ */
+class FeedIds {
+    
+    private long[] ids = new long[1024];
+    private int size;
+    
+    void addAll(List<ExternalBookDTO> chunk) {
+        if (size + chunk.size() > ids.length) {
+            ids = Arrays.copyOf(ids, Math.max(ids.length * 2, size + chunk.size()));
+        }
+        for (ExternalBookDTO book : chunk) {
+            ids[size++] = book.getId();
+        }
+    }
+    
+    /**
+     * Ids ordenados de menor a mayor y sin repetidos
+     */
+    long[] sorted() {
+        long[] sorted = Arrays.copyOf(ids, size);
+        Arrays.sort(sorted);
+        int distinct = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (distinct == 0 || sorted[i] != sorted[distinct - 1]) {
+                sorted[distinct++] = sorted[i];
+            }
+        }
+        return Arrays.copyOf(sorted, distinct);
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.libreria.service;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Guarda las últimas N latencias observadas y calcula percentiles sobre ellas.
+ * Sirve para decidir cuánto esperar antes de lanzar un pedido de cobertura (hedge):
+ * con una ventana acotada el percentil sigue los cambios recientes de la API externa.
+ * <p>
+ * El percentil se consulta en cada pedido, así que no se ordena la ventana cada vez: se guarda el último
+ * calculado y se recalcula cada {@code recomputeEvery} muestras nuevas (antes, mientras la ventana se llena).
+ */
+public class LatencyWindow {
+
+    private final long[] samples;
+    private final int recomputeEvery;
+    private int next;
+    private int count;
+    private long recorded;
+    private volatile Estimate estimate;
+
+    private record Estimate(double percentile, Duration value, long recordedAt) {
+    }
+
+    public LatencyWindow(int size) {
+        this(size, Math.max(1, size / 20));
+    }
+
+    public LatencyWindow(int size, int recomputeEvery) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("El tamaño de la ventana debe ser mayor a 0");
+        }
+        if (recomputeEvery <= 0) {
+            throw new IllegalArgumentException("La cantidad de muestras entre recálculos debe ser mayor a 0");
+        }
+        this.samples = new long[size];
+        this.recomputeEvery = recomputeEvery;
+    }
+
+    public synchronized void record(long nanos) {
+        samples[next] = nanos;
+        next = (next + 1) % samples.length;
+        if (count < samples.length) {
+            count++;
+        }
+        recorded++;
+    }
+
+    public synchronized int count() {
+        return count;
+    }
+
+    /**
+     * Percentil (entre 0 y 1) de las latencias de la ventana, o null si todavía no hay muestras.
+     * Puede no incluir las últimas muestras, hasta {@code recomputeEvery}.
+     */
+    public Duration percentile(double percentile) {
+        Estimate current = estimate;
+        long[] sorted;
+        long recordedAt;
+        synchronized (this) {
+            if (count == 0) {
+                return null;
+            }
+            if (current != null && current.percentile() == percentile && !isStale(current)) {
+                return current.value();
+            }
+            sorted = Arrays.copyOf(samples, count);
+            recordedAt = recorded;
+        }
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        Duration value = Duration.ofNanos(sorted[Math.max(0, Math.min(index, sorted.length - 1))]);
+        estimate = new Estimate(percentile, value, recordedAt);
+        return value;
+    }
+
+    // Mientras hay pocas muestras cada una pesa más, así que se recalcula antes de llegar a recomputeEvery
+    private boolean isStale(Estimate current) {
+        long sinceEstimate = recorded - current.recordedAt();
+        return sinceEstimate >= Math.min(recomputeEvery, current.recordedAt());
+    }
+}
@@ -0,0 +1,176 @@
+package com.example.libreria.service;
+
+import com.example.libreria.repository.ReservationRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Índice en memoria de las reservas activas agrupadas por día de devolución esperada, para
+ * no recorrer todas las activas cada vez que se piden las vencidas.
+ *
+ * Las reservas que todavía no vencieron esperan en su día en pending. Cuando cambia el día,
+ * solo los días que quedaron atrás pasan a overdue (se recorren esos días y nada más), así que
+ * leer las vencidas cuesta lo que el resultado. Se arma con las reservas activas al arrancar
+ * y se mantiene con cada reserva y devolución, después del commit.
+ *
+ * Cuando reservas pasan a overdue se publica un {@link ReservationsOverdueEvent}. El cambio de día se
+ * aplica con la primera consulta del día, así que el evento sale entonces y no a medianoche.
+ *
+ * Es local a la instancia: cambios hechos en la base por fuera del servicio se ven recién con reload().
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class OverdueTracker {
+    
+    private final ReservationRepository reservationRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    
+    // Día de devolución esperada -> ids de reservas activas, ordenados. pending: no vencidas; overdue: vencidas
+    private final NavigableMap<LocalDate, Set<Long>> pending = new TreeMap<>();
+    private final NavigableMap<LocalDate, Set<Long>> overdue = new TreeMap<>();
+    
+    // Día de la última consulta: las reservas con devolución anterior a este día están en overdue
+    private LocalDate today;
+    private boolean loaded;
+    
+    /**
+     * Vuelve a armar el índice con las reservas activas de la base
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void reload() {
+        pending.clear();
+        overdue.clear();
+        today = null;
+        reservationRepository.findActiveDueDates()
+                .forEach(reservation -> add(pending, reservation.getExpectedReturnDate(), reservation.getId()));
+        loaded = true;
+        log.info("Overdue tracker loaded {} active reservations", count(pending));
+    }
+    
+    /**
+     * Ids de las reservas activas cuya devolución esperada es anterior a currentDate,
+     * ordenadas por fecha de devolución y después por id
+     */
+    public List<Long> overdueIds(LocalDate currentDate) {
+        List<Long> ids = new ArrayList<>();
+        ReservationsOverdueEvent event;
+        synchronized (this) {
+            ensureLoaded();
+            event = advanceTo(currentDate);
+            overdue.values().forEach(ids::addAll);
+        }
+        // Fuera del lock: los listeners corren en este hilo y no deben frenar al resto de las consultas
+        if (event != null) {
+            eventPublisher.publishEvent(event);
+        }
+        return ids;
+    }
+    
+    /**
+     * Registra una reserva nueva (al confirmarse la transacción, si hay una)
+     */
+    public void track(Long reservationId, LocalDate expectedReturnDate) {
+        afterCommit(() -> {
+            synchronized (this) {
+                // Sin índice armado no hay nada que mantener: al armarlo se lee la reserva de la base
+                if (!loaded) {
+                    return;
+                }
+                boolean due = today != null && expectedReturnDate.isBefore(today);
+                add(due ? overdue : pending, expectedReturnDate, reservationId);
+            }
+        });
+    }
+    
+    /**
+     * Quita una reserva devuelta (al confirmarse la transacción, si hay una)
+     */
+    public void untrack(Long reservationId, LocalDate expectedReturnDate) {
+        afterCommit(() -> {
+            synchronized (this) {
+                remove(pending, expectedReturnDate, reservationId);
+                remove(overdue, expectedReturnDate, reservationId);
+            }
+        });
+    }
+    
+    // Devuelve el evento a publicar si alguna reserva pasó a overdue, o null
+    private ReservationsOverdueEvent advanceTo(LocalDate currentDate) {
+        if (today != null && !currentDate.isAfter(today)) {
+            if (currentDate.isBefore(today)) {
+                // El reloj volvió atrás: las que ya no están vencidas vuelven a esperar su día
+                moveAll(overdue.tailMap(currentDate, true), pending);
+                today = currentDate;
+            }
+            return null;
+        }
+        Map<LocalDate, Set<Long>> rolledOver = pending.headMap(currentDate, false);
+        List<Long> becameOverdue = new ArrayList<>();
+        rolledOver.values().forEach(becameOverdue::addAll);
+        moveAll(rolledOver, overdue);
+        today = currentDate;
+        if (becameOverdue.isEmpty()) {
+            return null;
+        }
+        log.info("{} reservations became overdue as of {}", becameOverdue.size(), currentDate);
+        return new ReservationsOverdueEvent(currentDate, List.copyOf(becameOverdue));
+    }
+    
+    private void ensureLoaded() {
+        if (!loaded) {
+            reload();
+        }
+    }
+    
+    private static void moveAll(Map<LocalDate, Set<Long>> from, NavigableMap<LocalDate, Set<Long>> to) {
+        from.forEach((day, ids) -> to.merge(day, ids, (current, added) -> {
+            current.addAll(added);
+            return current;
+        }));
+        from.clear();
+    }
+    
+    private static void add(NavigableMap<LocalDate, Set<Long>> buckets, LocalDate day, Long reservationId) {
+        buckets.computeIfAbsent(day, key -> new TreeSet<>()).add(reservationId);
+    }
+    
+    private static void remove(NavigableMap<LocalDate, Set<Long>> buckets, LocalDate day, Long reservationId) {
+        Set<Long> ids = buckets.get(day);
+        if (ids != null && ids.remove(reservationId) && ids.isEmpty()) {
+            buckets.remove(day);
+        }
+    }
+    
+    private static int count(Map<LocalDate, Set<Long>> buckets) {
+        return buckets.values().stream().mapToInt(Set::size).sum();
+    }
+    
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
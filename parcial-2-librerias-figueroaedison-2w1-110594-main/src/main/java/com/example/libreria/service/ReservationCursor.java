@@ -0,0 +1,34 @@
+package com.example.libreria.service;
+
+import com.example.libreria.model.Reservation;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Posición en el listado paginado de reservas: createdAt e id de la última reserva devuelta.
+ * Viaja al cliente como un texto opaco (Base64 URL) para poder cambiar el formato sin romperlo.
+ */
+record ReservationCursor(LocalDateTime createdAt, Long id) {
+    
+    static ReservationCursor of(Reservation reservation) {
+        return new ReservationCursor(reservation.getCreatedAt(), reservation.getId());
+    }
+    
+    String encode() {
+        String value = createdAt + "_" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    static ReservationCursor decode(String token) {
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = value.lastIndexOf('_');
+            return new ReservationCursor(LocalDateTime.parse(value.substring(0, separator)),
+                    Long.valueOf(value.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Cursor de paginación inválido: " + token);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.ReservationRequestDTO;
+import com.example.libreria.dto.ReservationResponseDTO;
+import com.example.libreria.repository.BookRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Entrada para crear reservas de libros que pueden no estar sincronizados todavía.
+ * Sin transacción propia: con libreria.reservations.import-missing-books, un libro que no está en el
+ * catálogo se importa de la API externa (con sus reintentos y hedge) antes de abrir la transacción de
+ * la reserva, así que la llamada HTTP no retiene una conexión del pool. La importación confirma en su
+ * propia transacción corta y después ReservationService.createReservation trabaja como con cualquier libro.
+ */
+@Service
+@RequiredArgsConstructor
+public class ReservationFacade {
+
+    private final ReservationService reservationService;
+    private final BookService bookService;
+    private final BookRepository bookRepository;
+
+    // Un libro que todavía no se sincronizó se importa de la API externa al reservarlo
+    @Value("${libreria.reservations.import-missing-books:false}")
+    private boolean importMissingBooks;
+
+    /**
+     * Igual que {@link ReservationService#createReservation}, importando antes el libro si falta.
+     * Si la API externa no lo conoce, la reserva falla como con cualquier libro inexistente.
+     */
+    public ReservationResponseDTO createReservation(ReservationRequestDTO requestDTO) {
+        Long bookExternalId = requestDTO.getBookExternalId();
+        if (importMissingBooks && !bookRepository.existsByExternalId(bookExternalId)) {
+            bookService.importBookFromExternalApi(bookExternalId);
+        }
+        return reservationService.createReservation(requestDTO);
+    }
+}
@@ -1,14 +1,18 @@
 package com.example.libreria.service;
 
+import com.example.libreria.dto.ReservationFilterDTO;
+import com.example.libreria.dto.ReservationPageResponseDTO;
 import com.example.libreria.dto.ReservationRequestDTO;
 import com.example.libreria.dto.ReservationResponseDTO;
 import com.example.libreria.dto.ReturnBookRequestDTO;
 import com.example.libreria.exception.InsufficientStockException;
 import com.example.libreria.exception.ResourceNotFoundException;
 import com.example.libreria.model.Book;
+import com.example.libreria.model.BookCacheListener;
 import com.example.libreria.model.Reservation;
 import com.example.libreria.model.User;
 import com.example.libreria.repository.BookRepository;
+import com.example.libreria.repository.ReservationPageRepository;
 import com.example.libreria.repository.ReservationRepository;
 import com.example.libreria.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
@@ -17,9 +21,9 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -40,17 +44,29 @@ import java.util.stream.Collectors;
 public class ReservationService {
 
     private static final BigDecimal LATE_FEE_PERCENTAGE = new BigDecimal("0.15"); // 15% por día
+    private static final FeeCalculator FEE_CALCULATOR = new FeeCalculator(LATE_FEE_PERCENTAGE);
+
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 500;
+
+    // Ids por consulta al leer las reservas vencidas: el IN no crece con la cantidad de vencidas
+    static final int OVERDUE_BATCH_SIZE = 500;
 
     private final ReservationRepository reservationRepository;
+    private final ReservationPageRepository reservationPageRepository;
     private final BookRepository bookRepository;
     private final UserRepository userRepository;
+    private final OverdueTracker overdueTracker;
+    private final BookCacheListener bookCacheListener;
 
     /**
      * Crea una nueva reserva de libro
      *
      * Validaciones:
      * - El usuario debe existir
-     * - El libro debe existir
+     * - El libro debe existir (ReservationFacade importa antes los que faltan en el catálogo,
+     *   fuera de esta transacción)
+     * - El libro no debe estar retirado del catálogo
      * - Debe haber stock disponible
      *
      * Acciones:
@@ -70,11 +86,16 @@ public class ReservationService {
         User user = userRepository.findById(requestDTO.getUserId())
                 .orElseThrow(() -> new ResourceNotFoundException("Usuario no encontrado con ID: " + requestDTO.getUserId()));
 
-        // 2. Validar que el libro existe
-        Book book = bookRepository.findByExternalId(requestDTO.getBookExternalId())
+        // 2. Validar que el libro existe (findById no carga los autores, que la reserva no usa)
+        Book book = bookRepository.findById(requestDTO.getBookExternalId())
                 .orElseThrow(() -> new ResourceNotFoundException("Libro no encontrado con ID externo: " + requestDTO.getBookExternalId()));
 
-        // 3. Validar que hay stock disponible
+        // Un libro retirado porque ya no viene en la API se conserva por sus reservas, pero no admite nuevas
+        if (Boolean.TRUE.equals(book.getRetired())) {
+            throw new ResourceNotFoundException("El libro ya no está en el catálogo de la API externa: " + book.getExternalId());
+        }
+
+        // 3. Validar que hay stock disponible (chequeo rápido; la garantía la da el update del paso 8)
         if (book.getAvailableQuantity() <= 0) {
             throw new InsufficientStockException("No hay stock disponible para el libro: " + book.getTitle());
         }
@@ -91,6 +112,7 @@ public class ReservationService {
         reservation.setExpectedReturnDate(expectedReturnDate);
 
         // 6. Calcular tarifa base (precio del libro × días de alquiler)
+        reservation.setDailyRate(book.getPrice());
         BigDecimal baseFee = calculateTotalFee(book.getPrice(), requestDTO.getRentalDays());
         reservation.setBaseFee(baseFee);
         reservation.setTotalFee(baseFee); // Inicialmente sin multa
@@ -99,15 +121,24 @@ public class ReservationService {
         // 7. Establecer estado activo
         reservation.setStatus(Reservation.ReservationStatus.ACTIVE);
 
-        // 8. Reducir la cantidad disponible del libro
-        book.setAvailableQuantity(book.getAvailableQuantity() - 1);
-        bookRepository.save(book);
+        // 8. Reducir la cantidad disponible del libro con un update condicional (atómico)
+        //    Si otra reserva concurrente se llevó la última unidad, o una sincronización retiró el libro
+        //    después del paso 2, no se actualiza ninguna fila
+        if (bookRepository.decrementAvailableQuantity(book.getExternalId()) == 0) {
+            if (bookRepository.findRetiredByExternalId(book.getExternalId()).orElse(true)) {
+                throw new ResourceNotFoundException("El libro ya no está en el catálogo de la API externa: " + book.getExternalId());
+            }
+            throw new InsufficientStockException("No hay stock disponible para el libro: " + book.getTitle());
+        }
+        // El update masivo no pasa por BookCacheListener: se invalida la caché después del commit
+        bookCacheListener.evict(book.getExternalId());
 
         // 9. Guardar la reserva
         Reservation savedReservation = reservationRepository.save(reservation);
+        overdueTracker.track(savedReservation.getId(), savedReservation.getExpectedReturnDate());
 
-        log.info("Reserva creada exitosamente con ID: {}. Stock disponible del libro '{}': {}",
-                savedReservation.getId(), book.getTitle(), book.getAvailableQuantity());
+        log.info("Reserva creada exitosamente con ID: {} para el libro '{}'",
+                savedReservation.getId(), book.getTitle());
 
         return convertToDTO(savedReservation);
     }
@@ -121,7 +152,7 @@ public class ReservationService {
      *
      * Acciones:
      * - Registra la fecha de devolución
-     * - Calcula multa si hay demora (15% del precio del libro por día)
+     * - Calcula multa si hay demora (15% de la tarifa diaria de la reserva por día)
      * - Actualiza el total fee
      * - Cambia el estado de la reserva (RETURNED u OVERDUE)
      * - Incrementa la cantidad disponible del libro en 1
@@ -152,9 +183,10 @@ public class ReservationService {
         // 4. Calcular días de demora
         long daysLate = ChronoUnit.DAYS.between(reservation.getExpectedReturnDate(), returnDate);
 
-        // 5. Calcular multa si hay demora
+        // 5. Calcular multa si hay demora, con la tarifa diaria de la reserva: si el precio del libro
+        // cambió desde que se reservó, la multa sigue la tarifa pactada
         if (daysLate > 0) {
-            BigDecimal lateFee = calculateLateFee(reservation.getBook().getPrice(), daysLate);
+            BigDecimal lateFee = calculateLateFee(reservation.getDailyRate(), daysLate);
             reservation.setLateFee(lateFee);
 
             // Actualizar total fee (tarifa base + multa)
@@ -173,13 +205,17 @@ public class ReservationService {
             log.info("Libro devuelto a tiempo. Sin multas.");
         }
 
-        // 6. Aumentar la cantidad disponible del libro
+        // 6. Aumentar la cantidad disponible del libro (update condicional, sin superar el stock)
         Book book = reservation.getBook();
-        book.setAvailableQuantity(book.getAvailableQuantity() + 1);
-        bookRepository.save(book);
+        if (bookRepository.incrementAvailableQuantity(book.getExternalId()) == 0) {
+            log.warn("La cantidad disponible del libro '{}' ya estaba completa", book.getTitle());
+        } else {
+            bookCacheListener.evict(book.getExternalId());
+        }
 
         // 7. Guardar cambios en la reserva
         Reservation updatedReservation = reservationRepository.save(reservation);
+        overdueTracker.untrack(updatedReservation.getId(), updatedReservation.getExpectedReturnDate());
 
         log.info("Devolución procesada exitosamente. Total a pagar: ${}", updatedReservation.getTotalFee());
 
@@ -228,12 +264,46 @@ public class ReservationService {
 
     /**
      * Obtiene todas las reservas vencidas (que pasaron la fecha de devolución)
+     * Los ids salen del índice en memoria de OverdueTracker: solo se leen de la base las vencidas,
+     * en lotes de OVERDUE_BATCH_SIZE. El índice los da ordenados por (fecha de devolución, id), igual que
+     * cada lote, así que el resultado queda ordenado
      */
     @Transactional(readOnly = true)
     public List<ReservationResponseDTO> getOverdueReservations() {
-        return reservationRepository.findOverdueReservations(LocalDate.now()).stream()
+        List<Long> overdueIds = overdueTracker.overdueIds(LocalDate.now());
+        List<ReservationResponseDTO> overdue = new ArrayList<>(overdueIds.size());
+        for (int from = 0; from < overdueIds.size(); from += OVERDUE_BATCH_SIZE) {
+            List<Long> batch = overdueIds.subList(from, Math.min(from + OVERDUE_BATCH_SIZE, overdueIds.size()));
+            reservationRepository.findActiveByIdIn(batch).forEach(reservation -> overdue.add(convertToDTO(reservation)));
+        }
+        return overdue;
+    }
+
+    /**
+     * Obtiene una página de reservas, de la más nueva a la más vieja, con paginación por cursor
+     * sobre (createdAt, id). El cursor es el nextCursor de la página anterior; con null se empieza
+     * desde la más nueva. El tamaño se ajusta al rango [1, MAX_PAGE_SIZE].
+     *
+     * @param filter filtros opcionales por usuario, libro, estado y rango de fechas de creación
+     * @throws IllegalArgumentException si el cursor no es válido
+     */
+    @Transactional(readOnly = true)
+    public ReservationPageResponseDTO getReservationsPage(ReservationFilterDTO filter, String after, Integer size) {
+        int pageSize = size == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        ReservationCursor cursor = after != null ? ReservationCursor.decode(after) : null;
+
+        // Se pide un elemento extra para saber si existe una página siguiente
+        List<Reservation> reservations = reservationPageRepository.findPage(filter,
+                cursor != null ? cursor.createdAt() : null, cursor != null ? cursor.id() : null, pageSize + 1);
+
+        boolean hasNext = reservations.size() > pageSize;
+        List<Reservation> page = hasNext ? reservations.subList(0, pageSize) : reservations;
+        String nextCursor = hasNext ? ReservationCursor.of(page.get(page.size() - 1)).encode() : null;
+
+        List<ReservationResponseDTO> content = page.stream()
                 .map(this::convertToDTO)
                 .collect(Collectors.toList());
+        return new ReservationPageResponseDTO(content, content.size(), nextCursor, hasNext);
     }
 
     /**
@@ -250,29 +320,24 @@ public class ReservationService {
      * @return Tarifa total redondeada a 2 decimales
      */
     private BigDecimal calculateTotalFee(BigDecimal bookPrice, Integer rentalDays) {
-        return bookPrice
-                .multiply(new BigDecimal(rentalDays))
-                .setScale(2, RoundingMode.HALF_UP);
+        return FEE_CALCULATOR.baseFee(bookPrice, rentalDays);
     }
 
     /**
      * Calcula la multa por demora en la devolución
-     * Fórmula: 15% del precio del libro × días de demora
+     * Fórmula: 15% de la tarifa diaria × días de demora
      *
      * Ejemplo:
-     * - Libro: $15.99
+     * - Tarifa diaria: $15.99
      * - Días de demora: 3
      * - Multa: $15.99 × 0.15 × 3 = $7.20
      *
-     * @param bookPrice Precio del libro
+     * @param dailyRate Tarifa diaria de la reserva (el precio del libro al reservar)
      * @param daysLate Cantidad de días de demora
      * @return Multa total redondeada a 2 decimales
      */
-    private BigDecimal calculateLateFee(BigDecimal bookPrice, long daysLate) {
-        return bookPrice
-                .multiply(LATE_FEE_PERCENTAGE)
-                .multiply(new BigDecimal(daysLate))
-                .setScale(2, RoundingMode.HALF_UP);
+    private BigDecimal calculateLateFee(BigDecimal dailyRate, long daysLate) {
+        return FEE_CALCULATOR.lateFee(dailyRate, daysLate);
     }
 
     /**
@@ -286,14 +351,12 @@ public class ReservationService {
         dto.setId(reservation.getId());
         dto.setUserId(reservation.getUser().getId());
         dto.setUserName(reservation.getUser().getName());
-        dto.setBookId(reservation.getBook().getId());
         dto.setBookExternalId(reservation.getBook().getExternalId());
         dto.setBookTitle(reservation.getBook().getTitle());
         dto.setRentalDays(reservation.getRentalDays());
         dto.setStartDate(reservation.getStartDate());
         dto.setExpectedReturnDate(reservation.getExpectedReturnDate());
         dto.setActualReturnDate(reservation.getActualReturnDate());
-        dto.setBaseFee(reservation.getBaseFee());
         dto.setTotalFee(reservation.getTotalFee());
         dto.setLateFee(reservation.getLateFee());
         dto.setStatus(reservation.getStatus());
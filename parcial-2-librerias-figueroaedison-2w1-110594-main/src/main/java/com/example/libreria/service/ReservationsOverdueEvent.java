@@ -0,0 +1,13 @@
+package com.example.libreria.service;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Publicado por OverdueTracker cuando reservas activas pasan a estar vencidas al cambiar el día.
+ *
+ * @param date día a partir del cual están vencidas
+ * @param reservationIds ids de las reservas que vencieron, ordenados por fecha de devolución e id
+ */
+public record ReservationsOverdueEvent(LocalDate date, List<Long> reservationIds) {
+}
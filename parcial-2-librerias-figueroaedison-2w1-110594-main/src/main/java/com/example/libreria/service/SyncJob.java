@@ -0,0 +1,112 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.ExternalBookDTO;
+import com.example.libreria.dto.SyncJobDTO;
+import com.example.libreria.dto.SyncResultDTO;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Estado de una sincronización que corre en segundo plano.
+ * Lo escribe el hilo de la sincronización y lo leen los pedidos de estado, por eso los accesos están sincronizados.
+ */
+public class SyncJob implements SyncProgressListener {
+    
+    static final int MAX_ERRORS = 100;
+    
+    public enum Status {
+        PENDING,
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+    
+    private final String id = UUID.randomUUID().toString();
+    private final List<String> errors = new ArrayList<>();
+    private Status status = Status.PENDING;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private long startNanos;
+    private long endNanos;
+    private long processed;
+    private long failed;
+    private int chunks;
+    private SyncResultDTO result = new SyncResultDTO(0, 0, 0, 0, false);
+    
+    public String getId() {
+        return id;
+    }
+    
+    public synchronized Status getStatus() {
+        return status;
+    }
+    
+    public synchronized boolean isActive() {
+        return status == Status.PENDING || status == Status.RUNNING;
+    }
+    
+    synchronized void start() {
+        status = Status.RUNNING;
+        startedAt = LocalDateTime.now();
+        startNanos = System.nanoTime();
+    }
+    
+    synchronized void complete(SyncResultDTO finalResult) {
+        result = copy(finalResult);
+        finish(Status.COMPLETED);
+    }
+    
+    synchronized void fail(RuntimeException error) {
+        addError(error.getMessage());
+        finish(Status.FAILED);
+    }
+    
+    @Override
+    public synchronized void onChunkCompleted(List<ExternalBookDTO> chunk, SyncResultDTO totals) {
+        processed += chunk.size();
+        chunks++;
+        result = copy(totals);
+    }
+    
+    @Override
+    public synchronized void onChunkFailed(List<ExternalBookDTO> chunk, RuntimeException error) {
+        failed += chunk.size();
+        chunks++;
+        addError("Bloque de " + chunk.size() + " libros (desde el ID externo " + chunk.get(0).getId()
+                + "): " + error.getMessage());
+    }
+    
+    public synchronized SyncJobDTO toDTO() {
+        return new SyncJobDTO(id, status.name(), startedAt, finishedAt, processed, failed, chunks,
+                rowsPerSecond(), copy(result), List.copyOf(errors));
+    }
+    
+    private double rowsPerSecond() {
+        if (startedAt == null) {
+            return 0.0;
+        }
+        long elapsed = (finishedAt != null ? endNanos : System.nanoTime()) - startNanos;
+        return elapsed > 0 ? (processed + failed) * 1_000_000_000.0 / elapsed : 0.0;
+    }
+    
+    private void finish(Status finalStatus) {
+        status = finalStatus;
+        finishedAt = LocalDateTime.now();
+        endNanos = System.nanoTime();
+    }
+    
+    // Se guardan las primeras MAX_ERRORS para no crecer sin límite si fallan todos los bloques
+    private void addError(String message) {
+        if (errors.size() < MAX_ERRORS) {
+            errors.add(message);
+        }
+    }
+    
+    private static SyncResultDTO copy(SyncResultDTO source) {
+        return new SyncResultDTO(source.getCreated(), source.getUpdated(), source.getUnchanged(), source.getDeleted(),
+                source.getNotModified());
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.libreria.service;
+
+import com.example.libreria.exception.ResourceNotFoundException;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Ejecuta las sincronizaciones del catálogo en segundo plano, de a una por vez.
+ * Si se pide una sincronización mientras otra está en curso, se devuelve la que ya corre.
+ * Se conservan las últimas MAX_JOBS tareas para consultar su estado.
+ */
+@Service
+@Slf4j
+public class SyncJobService {
+    
+    static final int MAX_JOBS = 20;
+    
+    private final BookService bookService;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "book-sync");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    private final Map<String, SyncJob> jobs = new LinkedHashMap<>();
+    private SyncJob currentJob;
+    
+    public SyncJobService(BookService bookService) {
+        this.bookService = bookService;
+    }
+    
+    public synchronized SyncJob startSync() {
+        if (currentJob != null && currentJob.isActive()) {
+            log.info("Synchronization {} already running", currentJob.getId());
+            return currentJob;
+        }
+        
+        SyncJob job = new SyncJob();
+        register(job);
+        currentJob = job;
+        executor.execute(() -> run(job));
+        log.info("Synchronization {} scheduled", job.getId());
+        return job;
+    }
+    
+    public synchronized SyncJob getJob(String jobId) {
+        SyncJob job = jobs.get(jobId);
+        if (job == null) {
+            throw new ResourceNotFoundException("Sincronización no encontrada con ID: " + jobId);
+        }
+        return job;
+    }
+    
+    private void run(SyncJob job) {
+        job.start();
+        try {
+            job.complete(bookService.syncBooksFromExternalApi(job));
+        } catch (RuntimeException e) {
+            log.error("Synchronization {} failed: {}", job.getId(), e.getMessage(), e);
+            job.fail(e);
+        }
+    }
+    
+    private void register(SyncJob job) {
+        jobs.put(job.getId(), job);
+        Iterator<SyncJob> oldest = jobs.values().iterator();
+        while (jobs.size() > MAX_JOBS && oldest.hasNext()) {
+            if (!oldest.next().isActive()) {
+                oldest.remove();
+            }
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
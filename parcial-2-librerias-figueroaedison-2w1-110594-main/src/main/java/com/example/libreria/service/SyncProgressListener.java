@@ -0,0 +1,30 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.ExternalBookDTO;
+import com.example.libreria.dto.SyncResultDTO;
+
+import java.util.List;
+
+/**
+ * Recibe el avance de una sincronización del catálogo, bloque por bloque.
+ */
+public interface SyncProgressListener {
+    
+    // Sin seguimiento: un bloque fallido aborta la sincronización
+    SyncProgressListener NONE = new SyncProgressListener() { };
+    
+    /**
+     * @param chunk bloque recién confirmado
+     * @param totals totales acumulados de la sincronización hasta este bloque
+     */
+    default void onChunkCompleted(List<ExternalBookDTO> chunk, SyncResultDTO totals) {
+    }
+    
+    /**
+     * Se llama cuando un bloque no pudo aplicarse; su transacción ya fue revertida.
+     * Si no lanza una excepción, la sincronización continúa con el bloque siguiente.
+     */
+    default void onChunkFailed(List<ExternalBookDTO> chunk, RuntimeException error) {
+        throw error;
+    }
+}
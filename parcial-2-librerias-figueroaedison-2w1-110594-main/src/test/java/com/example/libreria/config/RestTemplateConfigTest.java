@@ -0,0 +1,38 @@
+package com.example.libreria.config;
+
+import org.apache.hc.client5.http.ConnectionKeepAliveStrategy;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.message.BasicClassicHttpResponse;
+import org.apache.hc.core5.util.TimeValue;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RestTemplateConfigTest {
+    
+    private final ConnectionKeepAliveStrategy keepAlive = RestTemplateConfig.cappedKeepAlive(TimeValue.ofSeconds(30));
+    
+    @Test
+    void testKeepAlive_ServerTimeoutShorterThanCap() {
+        assertEquals(TimeValue.ofSeconds(5), keepAliveFor("timeout=5, max=100"));
+    }
+    
+    @Test
+    void testKeepAlive_ServerTimeoutLongerThanCap() {
+        assertEquals(TimeValue.ofSeconds(30), keepAliveFor("timeout=120"));
+    }
+    
+    @Test
+    void testKeepAlive_NoHeaderUsesCap() {
+        assertEquals(TimeValue.ofSeconds(30), keepAliveFor(null));
+    }
+    
+    private TimeValue keepAliveFor(String header) {
+        BasicClassicHttpResponse response = new BasicClassicHttpResponse(HttpStatus.SC_OK);
+        if (header != null) {
+            response.addHeader("Keep-Alive", header);
+        }
+        return keepAlive.getKeepAliveDuration(response, HttpClientContext.create());
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.libreria.service;
+
+import com.example.libreria.config.CacheConfig;
+import com.example.libreria.dto.BookResponseDTO;
+import com.example.libreria.model.Book;
+import com.example.libreria.model.BookCacheListener;
+import com.example.libreria.repository.BookBulkRepository;
+import com.example.libreria.repository.BookStagingRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifica que listar una página del catálogo no dispare una consulta extra por libro
+ * para cargar los autores (book_authors).
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Import({BookService.class, BookBulkRepository.class, BookStagingRepository.class, CacheConfig.class,
+        BookCacheListener.class})
+class BookServiceQueryCountTest {
+    
+    @Autowired
+    private BookService bookService;
+    
+    @Autowired
+    private TestEntityManager entityManager;
+    
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    
+    @MockitoBean
+    private ExternalBookService externalBookService;
+    
+    private Statistics statistics;
+    
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+    
+    @Test
+    void testGetBooksPage_StatementCountDoesNotGrowWithPageSize() {
+        // Catálogo más grande que una página, para que la página máxima quede completa
+        persistBooks(1, BookService.MAX_PAGE_SIZE + 50);
+        long statementsForSmallPage = countStatementsForGetBooksPage(5);
+        long statementsForFullPage = countStatementsForGetBooksPage(BookService.MAX_PAGE_SIZE);
+        
+        // Una consulta para la página y otra para los autores de todos sus libros (@BatchSize)
+        assertEquals(2, statementsForSmallPage);
+        assertEquals(statementsForSmallPage, statementsForFullPage);
+    }
+    
+    @Test
+    void testGetBookByExternalId_LoadsAuthorsInSameStatement() {
+        persistBooks(1, 1);
+        entityManager.clear();
+        statistics.clear();
+        
+        BookResponseDTO book = bookService.getBookByExternalId(1L);
+        
+        assertEquals(List.of("Author 1"), book.getAuthorName());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+    
+    private long countStatementsForGetBooksPage(int pageSize) {
+        entityManager.clear();
+        statistics.clear();
+        
+        List<BookResponseDTO> books = bookService.getBooksPage(null, pageSize).getContent();
+        
+        assertEquals(pageSize, books.size());
+        books.forEach(book -> assertEquals(1, book.getAuthorName().size()));
+        return statistics.getPrepareStatementCount();
+    }
+    
+    private void persistBooks(int fromId, int toId) {
+        for (long id = fromId; id <= toId; id++) {
+            Book book = new Book();
+            book.setExternalId(id);
+            book.setTitle("Book " + id);
+            book.setAuthorName(List.of("Author " + id));
+            book.setPrice(new BigDecimal("10.00"));
+            book.setStockQuantity(10);
+            book.setAvailableQuantity(10);
+            entityManager.persist(book);
+        }
+        entityManager.flush();
+    }
+}
@@ -1,23 +1,43 @@
 package com.example.libreria.service;
 
+import com.example.libreria.dto.BookPageResponseDTO;
 import com.example.libreria.dto.BookResponseDTO;
 import com.example.libreria.dto.ExternalBookDTO;
+import com.example.libreria.dto.SyncResultDTO;
 import com.example.libreria.model.Book;
+import com.example.libreria.model.BookCacheListener;
+import com.example.libreria.repository.BookBulkRepository;
 import com.example.libreria.repository.BookRepository;
+import com.example.libreria.repository.BookStagingRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.LongStream;
 
+import static com.example.libreria.support.TestBooks.book;
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.AdditionalMatchers.aryEq;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -26,9 +46,18 @@ class BookServiceTest {
     @Mock
     private BookRepository bookRepository;
     
+    @Mock
+    private BookBulkRepository bookBulkRepository;
+    
+    @Mock
+    private BookStagingRepository bookStagingRepository;
+    
     @Mock
     private ExternalBookService externalBookService;
     
+    @Mock
+    private BookCacheListener bookCacheListener;
+    
     @InjectMocks
     private BookService bookService;
     
@@ -44,46 +73,265 @@ class BookServiceTest {
         testBook.setStockQuantity(10);
         testBook.setAvailableQuantity(5);
         
-        externalBookDTO = new ExternalBookDTO();
-        externalBookDTO.setId(258027L);
-        externalBookDTO.setTitle("The Lord of the Rings");
-        externalBookDTO.setPrice(new BigDecimal("15.99"));
+        externalBookDTO = book(258027L, "The Lord of the Rings", "15.99", "J. R. R. Tolkien");
     }
     
     @Test
     void testSyncBooksFromExternalApi_NewBook() {
-        when(externalBookService.fetchAllBooks()).thenReturn(Arrays.asList(externalBookDTO));
-        when(bookRepository.findByExternalId(258027L)).thenReturn(Optional.empty());
-        when(bookRepository.save(any(Book.class))).thenReturn(testBook);
+        mockExternalFeed(externalBookDTO);
+        when(bookRepository.findFingerprintsByExternalIdIn(any())).thenReturn(List.of());
         
-        bookService.syncBooksFromExternalApi();
+        SyncResultDTO result = bookService.syncBooksFromExternalApi();
         
-        verify(bookRepository, times(1)).save(any(Book.class));
+        assertEquals(1, result.getCreated());
+        assertEquals(0, result.getUpdated());
+        verify(bookBulkRepository, times(1)).upsertBooks(eq(List.of(externalBookDTO)), anyMap(), eq(10));
+        verify(externalBookService).saveFeedValidators(FeedFetchResult.modified(1, "\"v1\"", null));
+    }
+    
+    @Test
+    void testSyncBooksFromExternalApi_FeedNotModified() {
+        when(externalBookService.fetchAllBooksInChunks(any())).thenReturn(FeedFetchResult.notModified());
+        
+        SyncResultDTO result = bookService.syncBooksFromExternalApi();
+        
+        assertEquals(new SyncResultDTO(0, 0, 0, 0, true), result);
+        verify(bookBulkRepository, never()).upsertBooks(any(), anyMap(), anyInt());
+        verify(externalBookService, never()).saveFeedValidators(any());
     }
     
     @Test
     void testSyncBooksFromExternalApi_ExistingBook() {
-        when(externalBookService.fetchAllBooks()).thenReturn(Arrays.asList(externalBookDTO));
-        when(bookRepository.findByExternalId(258027L)).thenReturn(Optional.of(testBook));
-        when(bookRepository.save(any(Book.class))).thenReturn(testBook);
+        mockExternalFeed(externalBookDTO);
+        when(bookRepository.findFingerprintsByExternalIdIn(any()))
+                .thenReturn(List.of(fingerprint(258027L, "stale-hash")));
         
-        bookService.syncBooksFromExternalApi();
+        SyncResultDTO result = bookService.syncBooksFromExternalApi();
         
-        verify(bookRepository, times(1)).save(any(Book.class));
+        assertEquals(0, result.getCreated());
+        assertEquals(1, result.getUpdated());
+        verify(bookBulkRepository, times(1)).upsertBooks(eq(List.of(externalBookDTO)), anyMap(), anyInt());
+    }
+    
+    @Test
+    void testSyncBooksFromExternalApi_UnchangedAndDeletedBooks() {
+        mockExternalFeed(externalBookDTO);
+        when(bookRepository.findFingerprintsByExternalIdIn(any()))
+                .thenReturn(List.of(fingerprint(258027L, BookFingerprint.of(externalBookDTO))));
+        when(bookBulkRepository.retireBooksNotIn(any())).thenReturn(1);
+        
+        SyncResultDTO result = bookService.syncBooksFromExternalApi();
+        
+        assertEquals(new SyncResultDTO(0, 0, 1, 1, false), result);
+        verify(bookBulkRepository).upsertBooks(eq(List.of()), anyMap(), anyInt());
+        verify(bookBulkRepository).retireBooksNotIn(aryEq(new long[]{258027L}));
+        verify(bookRepository, never()).save(any(Book.class));
+    }
+    
+    @Test
+    void testSyncBooksFromExternalApi_RetiredBookReappearsIsRewritten() {
+        mockExternalFeed(externalBookDTO);
+        when(bookRepository.findFingerprintsByExternalIdIn(any()))
+                .thenReturn(List.of(fingerprint(258027L, BookFingerprint.of(externalBookDTO), true)));
+        
+        SyncResultDTO result = bookService.syncBooksFromExternalApi();
+        
+        assertEquals(new SyncResultDTO(0, 1, 0, 0, false), result);
+        verify(bookBulkRepository).upsertBooks(eq(List.of(externalBookDTO)), anyMap(), anyInt());
+    }
+    
+    @Test
+    void testSyncBooksFromExternalApi_BookWithoutIdIsIgnored() {
+        mockExternalFeed(externalBookDTO, book(null));
+        when(bookRepository.findFingerprintsByExternalIdIn(any())).thenReturn(List.of());
+        
+        SyncResultDTO result = bookService.syncBooksFromExternalApi();
+        
+        assertEquals(new SyncResultDTO(1, 0, 0, 0, false), result);
+        verify(bookBulkRepository).upsertBooks(eq(List.of(externalBookDTO)), anyMap(), anyInt());
+        verify(bookBulkRepository).retireBooksNotIn(aryEq(new long[] {258027L}));
+        verify(externalBookService).saveFeedValidators(any());
+    }
+    
+    @Test
+    void testSyncBooksFromExternalApi_StagedBookWithoutIdIsIgnored() {
+        ReflectionTestUtils.setField(bookService, "syncMode", BookService.SyncMode.STAGED);
+        mockExternalFeed(externalBookDTO, book(null));
+        when(bookStagingRepository.mergeIntoCatalog(anyInt(), eq(true))).thenReturn(new SyncResultDTO(1, 0, 0, 0, false));
+        
+        SyncResultDTO result = bookService.syncBooksFromExternalApi();
+        
+        assertEquals(new SyncResultDTO(1, 0, 0, 0, false), result);
+        verify(bookStagingRepository).stage(eq(List.of(externalBookDTO)), anyMap());
+        verify(externalBookService).saveFeedValidators(any());
+        verifyNoInteractions(bookBulkRepository);
+    }
+    
+    @Test
+    void testCheckSyncMode_StagedRequiresH2() {
+        ReflectionTestUtils.setField(bookService, "syncMode", BookService.SyncMode.STAGED);
+        when(bookStagingRepository.isSupported()).thenReturn(false);
+        
+        assertThrows(IllegalStateException.class, () -> bookService.checkSyncMode());
+    }
+    
+    @Test
+    void testCheckSyncMode_StagedOnH2AndIncremental() {
+        bookService.checkSyncMode();
+        verifyNoInteractions(bookStagingRepository);
+        
+        ReflectionTestUtils.setField(bookService, "syncMode", BookService.SyncMode.STAGED);
+        when(bookStagingRepository.isSupported()).thenReturn(true);
+        
+        assertDoesNotThrow(() -> bookService.checkSyncMode());
+    }
+    
+    @Test
+    void testSyncBooksFromExternalApi_ParallelBookWithoutIdIsIgnored() {
+        ReflectionTestUtils.setField(bookService, "syncParallelism", 2);
+        mockExternalFeed(externalBookDTO, book(null));
+        when(bookRepository.findFingerprintsByExternalIdIn(any())).thenReturn(List.of());
+        
+        SyncResultDTO result = bookService.syncBooksFromExternalApi();
+        
+        assertEquals(new SyncResultDTO(1, 0, 0, 0, false), result);
+        verify(bookBulkRepository).upsertBooks(eq(List.of(externalBookDTO)), anyMap(), anyInt());
+        verify(bookBulkRepository).retireBooksNotIn(aryEq(new long[] {258027L}));
+    }
+    
+    @Test
+    void testSyncBooksFromExternalApi_FailedChunkIsReportedAndSyncContinues() {
+        ExternalBookDTO secondBook = book(140081L, "The Hitchhiker's Guide to the Galaxy", "20.99", "Douglas Adams");
+        when(externalBookService.fetchAllBooksInChunks(any())).thenAnswer(invocation -> {
+            Consumer<List<ExternalBookDTO>> consumer = invocation.getArgument(0);
+            consumer.accept(List.of(externalBookDTO));
+            consumer.accept(List.of(secondBook));
+            return FeedFetchResult.modified(2, null, null);
+        });
+        when(bookRepository.findFingerprintsByExternalIdIn(any())).thenReturn(List.of());
+        doThrow(new RuntimeException("Deadlock")).when(bookBulkRepository)
+                .upsertBooks(eq(List.of(externalBookDTO)), anyMap(), anyInt());
+        SyncJob job = new SyncJob();
+        
+        SyncResultDTO result = bookService.syncBooksFromExternalApi(job);
+        
+        assertEquals(new SyncResultDTO(1, 0, 0, 0, false), result);
+        assertEquals(1L, job.toDTO().getProcessed());
+        assertEquals(1L, job.toDTO().getFailed());
+        assertEquals(2, job.toDTO().getChunks());
+        assertTrue(job.toDTO().getErrors().get(0).contains("Deadlock"));
+        verify(bookBulkRepository).upsertBooks(eq(List.of(secondBook)), anyMap(), anyInt());
+        verify(externalBookService, never()).saveFeedValidators(any());
+        verify(bookBulkRepository, never()).retireBooksNotIn(any());
     }
     
     @Test
-    void testGetAllBooks() {
+    void testSyncBooksFromExternalApi_FailedChunkAbortsWithoutListener() {
+        mockExternalFeed(externalBookDTO);
+        when(bookRepository.findFingerprintsByExternalIdIn(any())).thenReturn(List.of());
+        doThrow(new RuntimeException("Deadlock")).when(bookBulkRepository)
+                .upsertBooks(any(), anyMap(), anyInt());
+        
+        assertThrows(RuntimeException.class, () -> bookService.syncBooksFromExternalApi());
+    }
+    
+    @Test
+    void testSyncBooksFromExternalApi_ParallelChunks() {
+        ReflectionTestUtils.setField(bookService, "syncParallelism", 3);
+        when(externalBookService.fetchAllBooksInChunks(any())).thenAnswer(invocation -> {
+            Consumer<List<ExternalBookDTO>> consumer = invocation.getArgument(0);
+            for (long id = 1; id <= 10; id++) {
+                consumer.accept(List.of(book(id)));
+            }
+            return FeedFetchResult.modified(10, null, null);
+        });
+        when(bookRepository.findFingerprintsByExternalIdIn(any())).thenReturn(List.of());
+        when(bookBulkRepository.retireBooksNotIn(any())).thenReturn(2);
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        doAnswer(invocation -> threads.add(Thread.currentThread().getName()))
+                .when(bookBulkRepository).upsertBooks(any(), anyMap(), anyInt());
+        SyncJob job = new SyncJob();
+        
+        SyncResultDTO result = bookService.syncBooksFromExternalApi(job);
+        
+        assertEquals(new SyncResultDTO(10, 0, 0, 2, false), result);
+        assertEquals(10, job.toDTO().getChunks());
+        assertTrue(threads.stream().allMatch(name -> name.startsWith("book-sync-chunk-")));
+        verify(bookBulkRepository, times(10)).upsertBooks(any(), anyMap(), anyInt());
+        verify(bookBulkRepository).retireBooksNotIn(aryEq(LongStream.rangeClosed(1, 10).toArray()));
+    }
+    
+    @Test
+    void testSyncBooksFromExternalApi_ParallelChunkFailureAborts() {
+        ReflectionTestUtils.setField(bookService, "syncParallelism", 2);
+        mockExternalFeed(externalBookDTO);
+        when(bookRepository.findFingerprintsByExternalIdIn(any())).thenReturn(List.of());
+        doThrow(new RuntimeException("Deadlock")).when(bookBulkRepository)
+                .upsertBooks(any(), anyMap(), anyInt());
+        
+        RuntimeException exception = assertThrows(RuntimeException.class,
+                () -> bookService.syncBooksFromExternalApi());
+        assertEquals("Deadlock", exception.getMessage());
+    }
+    
+    @Test
+    void testSyncBooksFromExternalApi_ParallelChunksSkipIdsAlreadyInFlight() {
+        ReflectionTestUtils.setField(bookService, "syncParallelism", 2);
+        CountDownLatch secondChunkDispatched = new CountDownLatch(1);
+        when(externalBookService.fetchAllBooksInChunks(any())).thenAnswer(invocation -> {
+            Consumer<List<ExternalBookDTO>> consumer = invocation.getArgument(0);
+            consumer.accept(List.of(book(1L), book(2L)));
+            // El id 2 se repite mientras el primer bloque sigue escribiendo
+            consumer.accept(List.of(book(2L), book(3L)));
+            secondChunkDispatched.countDown();
+            return FeedFetchResult.modified(4, null, null);
+        });
+        when(bookRepository.findFingerprintsByExternalIdIn(any())).thenReturn(List.of());
+        List<Long> upsertedIds = Collections.synchronizedList(new ArrayList<>());
+        doAnswer(invocation -> {
+            List<ExternalBookDTO> books = invocation.getArgument(0);
+            if (books.get(0).getId() == 1L) {
+                assertTrue(secondChunkDispatched.await(5, TimeUnit.SECONDS));
+            }
+            books.forEach(book -> upsertedIds.add(book.getId()));
+            return null;
+        }).when(bookBulkRepository).upsertBooks(any(), anyMap(), anyInt());
+        
+        SyncResultDTO result = bookService.syncBooksFromExternalApi();
+        
+        assertEquals(new SyncResultDTO(3, 0, 0, 0, false), result);
+        assertEquals(List.of(1L, 2L, 3L), upsertedIds.stream().sorted().toList());
+        verify(bookBulkRepository).retireBooksNotIn(aryEq(new long[] {1L, 2L, 3L}));
+    }
+    
+    @Test
+    void testGetBooksPage_HasNext() {
         Book book2 = new Book();
-        book2.setExternalId(140081L);
+        book2.setExternalId(300000L);
         book2.setTitle("The Hitchhiker's Guide to the Galaxy");
         
-        when(bookRepository.findAll()).thenReturn(Arrays.asList(testBook, book2));
+        when(bookRepository.findByExternalIdGreaterThanAndRetiredFalseOrderByExternalIdAsc(
+                eq(100L), eq(Limit.of(2))))
+                .thenReturn(Arrays.asList(testBook, book2));
         
-        List<BookResponseDTO> result = bookService.getAllBooks();
+        BookPageResponseDTO result = bookService.getBooksPage(100L, 1);
         
-        assertNotNull(result);
-        assertEquals(2, result.size());
+        assertEquals(1, result.getContent().size());
+        assertTrue(result.getHasNext());
+        assertEquals(258027L, result.getNextCursor());
+    }
+    
+    @Test
+    void testGetBooksPage_LastPageAndSizeLimit() {
+        when(bookRepository.findByExternalIdGreaterThanAndRetiredFalseOrderByExternalIdAsc(
+                eq(Long.MIN_VALUE), eq(Limit.of(BookService.MAX_PAGE_SIZE + 1))))
+                .thenReturn(Arrays.asList(testBook));
+        
+        BookPageResponseDTO result = bookService.getBooksPage(null, 10_000);
+        
+        assertEquals(1, result.getContent().size());
+        assertFalse(result.getHasNext());
+        assertNull(result.getNextCursor());
     }
     
     @Test
@@ -131,23 +379,88 @@ class BookServiceTest {
     
     @Test
     void testDecreaseAvailableQuantity_Success() {
-        when(bookRepository.findByExternalId(258027L)).thenReturn(Optional.of(testBook));
-        when(bookRepository.save(any(Book.class))).thenReturn(testBook);
+        when(bookRepository.decrementAvailableQuantity(258027L)).thenReturn(1);
         
         bookService.decreaseAvailableQuantity(258027L);
         
-        verify(bookRepository, times(1)).save(any(Book.class));
+        verify(bookRepository, times(1)).decrementAvailableQuantity(258027L);
+        verify(bookRepository, never()).save(any(Book.class));
+        verify(bookCacheListener).evict(258027L);
     }
     
     @Test
     void testDecreaseAvailableQuantity_NoStock() {
-        testBook.setAvailableQuantity(0);
+        when(bookRepository.decrementAvailableQuantity(258027L)).thenReturn(0);
+        when(bookRepository.findRetiredByExternalId(258027L)).thenReturn(Optional.of(false));
         
-        when(bookRepository.findByExternalId(258027L)).thenReturn(Optional.of(testBook));
+        RuntimeException exception = assertThrows(RuntimeException.class, () -> {
+            bookService.decreaseAvailableQuantity(258027L);
+        });
+        assertEquals("No hay libros disponibles para reservar", exception.getMessage());
+        verify(bookCacheListener, never()).evict(any());
+    }
+    
+    @Test
+    void testDecreaseAvailableQuantity_NotFound() {
+        when(bookRepository.decrementAvailableQuantity(258027L)).thenReturn(0);
+        when(bookRepository.findRetiredByExternalId(258027L)).thenReturn(Optional.empty());
         
-        assertThrows(RuntimeException.class, () -> {
+        RuntimeException exception = assertThrows(RuntimeException.class, () -> {
+            bookService.decreaseAvailableQuantity(258027L);
+        });
+        assertTrue(exception.getMessage().startsWith("Libro no encontrado"));
+    }
+    
+    @Test
+    void testDecreaseAvailableQuantity_Retired() {
+        when(bookRepository.decrementAvailableQuantity(258027L)).thenReturn(0);
+        when(bookRepository.findRetiredByExternalId(258027L)).thenReturn(Optional.of(true));
+        
+        RuntimeException exception = assertThrows(RuntimeException.class, () -> {
             bookService.decreaseAvailableQuantity(258027L);
         });
+        assertTrue(exception.getMessage().startsWith("El libro ya no está en el catálogo"));
+        verify(bookCacheListener, never()).evict(any());
+    }
+    
+    @Test
+    void testIncreaseAvailableQuantity_FullStock() {
+        when(bookRepository.incrementAvailableQuantity(258027L)).thenReturn(0);
+        when(bookRepository.existsByExternalId(258027L)).thenReturn(true);
+        
+        assertThrows(RuntimeException.class, () -> {
+            bookService.increaseAvailableQuantity(258027L);
+        });
+    }
+    
+    private void mockExternalFeed(ExternalBookDTO... books) {
+        when(externalBookService.fetchAllBooksInChunks(any())).thenAnswer(invocation -> {
+            Consumer<List<ExternalBookDTO>> consumer = invocation.getArgument(0);
+            consumer.accept(Arrays.asList(books));
+            return FeedFetchResult.modified(books.length, "\"v1\"", null);
+        });
+    }
+    
+    private BookRepository.BookFingerprintView fingerprint(Long externalId, String contentHash) {
+        return fingerprint(externalId, contentHash, false);
+    }
+    
+    private BookRepository.BookFingerprintView fingerprint(Long externalId, String contentHash, boolean retired) {
+        return new BookRepository.BookFingerprintView() {
+            @Override
+            public Long getExternalId() {
+                return externalId;
+            }
+            
+            @Override
+            public String getContentHash() {
+                return contentHash;
+            }
+            
+            @Override
+            public Boolean getRetired() {
+                return retired;
+            }
+        };
     }
 }
-
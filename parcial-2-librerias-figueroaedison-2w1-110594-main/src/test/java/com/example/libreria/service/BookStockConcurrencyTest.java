@@ -0,0 +1,263 @@
+package com.example.libreria.service;
+
+import com.example.libreria.config.CacheConfig;
+import com.example.libreria.dto.BookResponseDTO;
+import com.example.libreria.model.Book;
+import com.example.libreria.model.BookCacheListener;
+import com.example.libreria.repository.BookBulkRepository;
+import com.example.libreria.repository.BookRepository;
+import com.example.libreria.repository.BookStagingRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test de estrés: muchas reservas concurrentes sobre el mismo libro.
+ * Con el update condicional nunca se reservan más unidades de las que hay en stock, y con el mismo
+ * intercalado la implementación anterior (leer, restar y guardar) pierde descuentos.
+ * El benchmark (-Pbenchmark) compara las reservas por segundo de las dos con la misma carga.
+ * La caché del libro se invalida recién después del commit del update.
+ */
+@Slf4j
+@DataJpaTest
+@Import({BookService.class, BookBulkRepository.class, BookStagingRepository.class, CacheConfig.class,
+        BookCacheListener.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class BookStockConcurrencyTest {
+    
+    private static final long BOOK_ID = 258027L;
+    private static final int STOCK = 200;
+    private static final int THREADS = 8;
+    private static final int ATTEMPTS_PER_THREAD = 50;
+    
+    @Autowired
+    private BookService bookService;
+    
+    @Autowired
+    private BookRepository bookRepository;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Autowired
+    private CacheManager cacheManager;
+    
+    @MockitoBean
+    private ExternalBookService externalBookService;
+    
+    @BeforeEach
+    void setUp() {
+        Book book = new Book();
+        book.setExternalId(BOOK_ID);
+        book.setTitle("The Lord of the Rings");
+        book.setAuthorName(List.of("J. R. R. Tolkien"));
+        book.setPrice(new BigDecimal("15.99"));
+        book.setStockQuantity(STOCK);
+        book.setAvailableQuantity(STOCK);
+        bookRepository.save(book);
+    }
+    
+    @AfterEach
+    void tearDown() {
+        bookRepository.deleteAll();
+        cacheManager.getCache(CacheConfig.BOOKS_CACHE).clear();
+    }
+    
+    @Test
+    void testConcurrentDecrease_NeverOversells() throws Exception {
+        AtomicInteger successes = new AtomicInteger();
+        
+        runConcurrently(ATTEMPTS_PER_THREAD, () -> {
+            try {
+                bookService.decreaseAvailableQuantity(BOOK_ID);
+                successes.incrementAndGet();
+            } catch (RuntimeException e) {
+                // Sin stock: es el resultado esperado cuando se agotan las unidades
+            }
+        });
+        
+        assertEquals(STOCK, successes.get());
+        assertEquals(0, available());
+    }
+    
+    @Test
+    void testDecrease_RetiredBookIsNotReserved() {
+        transactionTemplate.executeWithoutResult(status -> bookRepository.findById(BOOK_ID).orElseThrow().setRetired(true));
+        
+        RuntimeException exception = assertThrows(RuntimeException.class,
+                () -> bookService.decreaseAvailableQuantity(BOOK_ID));
+        
+        assertTrue(exception.getMessage().startsWith("El libro ya no está en el catálogo"));
+        assertEquals(STOCK, available());
+    }
+    
+    @Test
+    void testConcurrentDecrease_ReadModifyWriteLosesDecrements() throws Exception {
+        CyclicBarrier afterRead = new CyclicBarrier(THREADS);
+        AtomicInteger successes = new AtomicInteger();
+        
+        // Implementación anterior: leer, restar en Java y guardar.
+        // Todas las transacciones leen el stock antes de que alguna escriba, así que todas guardan STOCK - 1
+        runConcurrently(1, () -> transactionTemplate.executeWithoutResult(status -> {
+            Book book = bookRepository.findById(BOOK_ID).orElseThrow();
+            await(afterRead);
+            if (book.getAvailableQuantity() > 0) {
+                book.setAvailableQuantity(book.getAvailableQuantity() - 1);
+                successes.incrementAndGet();
+            }
+        }));
+        
+        // Se aceptaron THREADS reservas pero se descontó una sola unidad
+        assertEquals(THREADS, successes.get());
+        assertEquals(STOCK - 1, available());
+    }
+    
+    @Test
+    void testConcurrentDecrease_ConditionalUpdateKeepsEveryDecrement() throws Exception {
+        CyclicBarrier afterRead = new CyclicBarrier(THREADS);
+        AtomicInteger successes = new AtomicInteger();
+        
+        // Mismo intercalado que el caso anterior, pero el descuento lo hace el update condicional
+        runConcurrently(1, () -> transactionTemplate.executeWithoutResult(status -> {
+            bookRepository.findById(BOOK_ID).orElseThrow();
+            await(afterRead);
+            bookService.decreaseAvailableQuantity(BOOK_ID);
+            successes.incrementAndGet();
+        }));
+        
+        assertEquals(THREADS, successes.get());
+        assertEquals(STOCK - THREADS, available());
+    }
+    
+    /**
+     * Misma carga para las dos implementaciones: THREADS hilos con ATTEMPTS_PER_THREAD reservas cada uno,
+     * con stock suficiente para todas. Informa las reservas por segundo de cada una.
+     */
+    @Test
+    @Tag("benchmark")
+    void benchmarkConcurrentDecrease_ConditionalUpdateVersusReadModifyWrite() throws Exception {
+        int attempts = THREADS * ATTEMPTS_PER_THREAD;
+        AtomicInteger accepted = new AtomicInteger();
+        Runnable readModifyWrite = () -> transactionTemplate.executeWithoutResult(status -> {
+            Book book = bookRepository.findById(BOOK_ID).orElseThrow();
+            if (book.getAvailableQuantity() > 0) {
+                book.setAvailableQuantity(book.getAvailableQuantity() - 1);
+                accepted.incrementAndGet();
+            }
+        });
+        Runnable conditionalUpdate = () -> bookService.decreaseAvailableQuantity(BOOK_ID);
+        
+        // Calentamiento de las dos implementaciones
+        resetStock(attempts);
+        runConcurrently(ATTEMPTS_PER_THREAD / 5, readModifyWrite);
+        resetStock(attempts);
+        runConcurrently(ATTEMPTS_PER_THREAD / 5, conditionalUpdate);
+        
+        resetStock(attempts);
+        accepted.set(0);
+        long readModifyWriteNanos = runConcurrently(ATTEMPTS_PER_THREAD, readModifyWrite);
+        int readModifyWriteDecremented = attempts - available();
+        
+        resetStock(attempts);
+        long conditionalNanos = runConcurrently(ATTEMPTS_PER_THREAD, conditionalUpdate);
+        int conditionalDecremented = attempts - available();
+        
+        log.info("Lectura-modificación-escritura: {} ops/s ({} ms), {} reservas aceptadas, {} unidades descontadas",
+                opsPerSecond(readModifyWriteNanos), readModifyWriteNanos / 1_000_000, accepted.get(),
+                readModifyWriteDecremented);
+        log.info("Update condicional: {} ops/s ({} ms), {} unidades descontadas",
+                opsPerSecond(conditionalNanos), conditionalNanos / 1_000_000, conditionalDecremented);
+        
+        assertEquals(attempts, conditionalDecremented);
+        assertEquals(attempts, accepted.get());
+    }
+    
+    @Test
+    void testDecrease_EvictsCachedBookAfterCommit() {
+        transactionTemplate.executeWithoutResult(status -> {
+            bookService.decreaseAvailableQuantity(BOOK_ID);
+            
+            // Una lectura concurrente antes del commit todavía ve la fila anterior y la cachea
+            BookResponseDTO concurrentRead = CompletableFuture
+                    .supplyAsync(() -> bookService.getBookByExternalId(BOOK_ID)).join();
+            assertEquals(STOCK, concurrentRead.getAvailableQuantity());
+        });
+        
+        assertEquals(STOCK - 1, bookService.getBookByExternalId(BOOK_ID).getAvailableQuantity());
+    }
+    
+    // Devuelve el tiempo total; una excepción de cualquier intento hace fallar el test
+    private long runConcurrently(int attemptsPerThread, Runnable attempt) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Object>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int j = 0; j < attemptsPerThread; j++) {
+                    attempt.run();
+                }
+                return null;
+            }));
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(60, TimeUnit.SECONDS));
+        long elapsedNanos = System.nanoTime() - begin;
+        for (Future<Object> future : futures) {
+            future.get();
+        }
+        return elapsedNanos;
+    }
+    
+    private int available() {
+        return bookRepository.findByExternalId(BOOK_ID).orElseThrow().getAvailableQuantity();
+    }
+    
+    private void resetStock(int quantity) {
+        transactionTemplate.executeWithoutResult(status -> {
+            Book book = bookRepository.findById(BOOK_ID).orElseThrow();
+            book.setStockQuantity(quantity);
+            book.setAvailableQuantity(quantity);
+        });
+    }
+    
+    private void await(CyclicBarrier barrier) {
+        try {
+            barrier.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException | BrokenBarrierException | TimeoutException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    private long opsPerSecond(long elapsedNanos) {
+        return (long) THREADS * ATTEMPTS_PER_THREAD * 1_000_000_000L / Math.max(1, elapsedNanos);
+    }
+}
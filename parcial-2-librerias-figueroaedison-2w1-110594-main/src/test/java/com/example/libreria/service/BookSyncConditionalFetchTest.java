@@ -0,0 +1,137 @@
+package com.example.libreria.service;
+
+import com.example.libreria.config.CacheConfig;
+import com.example.libreria.config.ResilienceConfig;
+import com.example.libreria.dto.SyncResultDTO;
+import com.example.libreria.model.BookCacheListener;
+import com.example.libreria.model.FeedValidator;
+import com.example.libreria.repository.BookBulkRepository;
+import com.example.libreria.repository.BookRepository;
+import com.example.libreria.repository.BookStagingRepository;
+import com.example.libreria.repository.FeedValidatorRepository;
+import com.example.libreria.support.StubBooksApiServer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Sincronización con pedidos condicionales contra un servidor local que devuelve ETag y Last-Modified.
+ */
+@DataJpaTest(properties = {"libreria.sync.parallelism=1", "external.api.books.url=http://127.0.0.1/books",
+        "libreria.disk-cache.enabled=false"})
+@Import({BookService.class, BookBulkRepository.class, BookStagingRepository.class, ExternalBookService.class,
+        CacheConfig.class, BookCacheListener.class, ResilienceConfig.class, CatalogDiskCache.class,
+        BookSyncConditionalFetchTest.HttpConfig.class})
+class BookSyncConditionalFetchTest {
+    
+    private StubBooksApiServer server;
+    
+    @Autowired
+    private BookService bookService;
+    
+    @Autowired
+    private ExternalBookService externalBookService;
+    
+    @Autowired
+    private BookRepository bookRepository;
+    
+    @Autowired
+    private FeedValidatorRepository feedValidatorRepository;
+    
+    @TestConfiguration
+    static class HttpConfig {
+        
+        @Bean
+        RestTemplate restTemplate() {
+            return new RestTemplate();
+        }
+        
+        @Bean
+        ObjectMapper objectMapper() {
+            return new ObjectMapper();
+        }
+    }
+    
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new StubBooksApiServer()
+                .withBook(258027L, "The Lord of the Rings", "J. R. R. Tolkien", 15.99)
+                .withBook(140081L, "The Hitchhiker's Guide to the Galaxy", "Douglas Adams", 20.99);
+        ReflectionTestUtils.setField(externalBookService, "externalApiUrl", server.booksUrl());
+    }
+    
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+    
+    @Test
+    void testSync_NotModifiedFeedIsSkipped() {
+        SyncResultDTO first = bookService.syncBooksFromExternalApi();
+        assertEquals(new SyncResultDTO(2, 0, 0, 0, false), first);
+        
+        FeedValidator validator = feedValidatorRepository.findById(server.booksUrl()).orElseThrow();
+        assertEquals("\"catalog-v2\"", validator.getEtag());
+        assertNotNull(validator.getLastModified());
+        
+        SyncResultDTO second = bookService.syncBooksFromExternalApi();
+        assertEquals(new SyncResultDTO(0, 0, 0, 0, true), second);
+        assertEquals(1, server.notModifiedCount());
+        assertEquals(2, bookRepository.count());
+    }
+    
+    @Test
+    void testSync_ChangedFeedIsDownloadedAgain() {
+        bookService.syncBooksFromExternalApi();
+        
+        server.withBook(258027L, "The Lord of the Rings", "J. R. R. Tolkien", 17.50);
+        SyncResultDTO result = bookService.syncBooksFromExternalApi();
+        
+        assertEquals(new SyncResultDTO(0, 1, 1, 0, false), result);
+        assertEquals(0, server.notModifiedCount());
+        assertEquals("\"catalog-v3\"", feedValidatorRepository.findById(server.booksUrl()).orElseThrow().getEtag());
+        
+        assertTrue(bookService.syncBooksFromExternalApi().getNotModified());
+    }
+    
+    @Test
+    void testSync_FeedWithAnElementThatIsNotABookFailsWithoutRetiring() {
+        bookService.syncBooksFromExternalApi();
+        String storedEtag = feedValidatorRepository.findById(server.booksUrl()).orElseThrow().getEtag();
+        
+        // [{258027...}, null, {140081...}]: lo que sigue al null no se pierde en silencio
+        server.withNullEntryAt(1);
+        assertThrows(RuntimeException.class, () -> bookService.syncBooksFromExternalApi());
+        
+        assertEquals(2, bookRepository.count());
+        assertTrue(bookRepository.findAll().stream().noneMatch(book -> book.getRetired()));
+        assertEquals(storedEtag, feedValidatorRepository.findById(server.booksUrl()).orElseThrow().getEtag());
+    }
+    
+    @Test
+    void testSync_LastModifiedOnly() {
+        server.withoutEtag();
+        bookService.syncBooksFromExternalApi();
+        
+        FeedValidator validator = feedValidatorRepository.findById(server.booksUrl()).orElseThrow();
+        assertNull(validator.getEtag());
+        assertNotNull(validator.getLastModified());
+        
+        assertTrue(bookService.syncBooksFromExternalApi().getNotModified());
+        
+        server.withBook(90150L, "One Hundred Years of Solitude", "Gabriel García Márquez", 22.99);
+        assertEquals(new SyncResultDTO(1, 0, 2, 0, false), bookService.syncBooksFromExternalApi());
+    }
+}
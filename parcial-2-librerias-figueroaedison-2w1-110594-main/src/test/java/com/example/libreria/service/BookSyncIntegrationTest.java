@@ -0,0 +1,99 @@
+package com.example.libreria.service;
+
+import com.example.libreria.config.CacheConfig;
+import com.example.libreria.dto.BookResponseDTO;
+import com.example.libreria.dto.ExternalBookDTO;
+import com.example.libreria.dto.SyncResultDTO;
+import com.example.libreria.model.Book;
+import com.example.libreria.model.BookCacheListener;
+import com.example.libreria.repository.BookBulkRepository;
+import com.example.libreria.repository.BookRepository;
+import com.example.libreria.repository.BookStagingRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static com.example.libreria.support.TestBooks.book;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+/**
+ * Sincronización incremental contra una base H2 real (upsert masivo y huellas de contenido)
+ */
+@DataJpaTest(properties = {"libreria.sync.mode=incremental", "libreria.sync.parallelism=1"})
+@Import({BookService.class, BookBulkRepository.class, BookStagingRepository.class, CacheConfig.class,
+        BookCacheListener.class})
+class BookSyncIntegrationTest {
+    
+    @Autowired
+    private BookService bookService;
+    
+    @Autowired
+    private BookRepository bookRepository;
+    
+    @Autowired
+    private TestEntityManager entityManager;
+    
+    @MockitoBean
+    private ExternalBookService externalBookService;
+    
+    @Test
+    void testSync_OnlyWritesChangedBooks() {
+        List<ExternalBookDTO> feed = new ArrayList<>(List.of(
+                book(258027L, "The Lord of the Rings", "15.99", "J. R. R. Tolkien"),
+                book(140081L, "The Hitchhiker's Guide to the Galaxy", "20.99", "Douglas Adams")));
+        when(externalBookService.fetchAllBooksInChunks(any())).thenAnswer(invocation -> {
+            Consumer<List<ExternalBookDTO>> consumer = invocation.getArgument(0);
+            consumer.accept(List.copyOf(feed));
+            return FeedFetchResult.modified(feed.size(), null, null);
+        });
+        
+        assertEquals(new SyncResultDTO(2, 0, 0, 0, false), bookService.syncBooksFromExternalApi());
+        assertEquals(new SyncResultDTO(0, 0, 2, 0, false), bookService.syncBooksFromExternalApi());
+        
+        // Cambia el precio de un libro y se reserva una unidad del otro
+        feed.set(0, book(258027L, "The Lord of the Rings", "17.50", "J. R. R. Tolkien", "Christopher Tolkien"));
+        bookRepository.decrementAvailableQuantity(140081L);
+        
+        assertEquals(new SyncResultDTO(0, 1, 1, 0, false), bookService.syncBooksFromExternalApi());
+        entityManager.clear();
+        
+        Book updated = bookRepository.findByExternalId(258027L).orElseThrow();
+        assertEquals(new BigDecimal("17.50"), updated.getPrice());
+        assertEquals(List.of("J. R. R. Tolkien", "Christopher Tolkien"), updated.getAuthorName());
+        assertEquals(10, updated.getStockQuantity());
+        
+        // El upsert no debe pisar el stock de los libros existentes
+        Book untouched = bookRepository.findByExternalId(140081L).orElseThrow();
+        assertEquals(9, untouched.getAvailableQuantity());
+        
+        // El libro que ya no viene en la API se retira sin borrarlo: sus reservas siguen apuntando a él
+        feed.remove(1);
+        assertEquals(new SyncResultDTO(0, 0, 1, 1, false), bookService.syncBooksFromExternalApi());
+        entityManager.clear();
+        
+        Book retired = bookRepository.findByExternalId(140081L).orElseThrow();
+        assertTrue(retired.getRetired());
+        assertEquals(9, retired.getAvailableQuantity());
+        assertEquals(List.of(258027L),
+                bookService.getBooksPage(null, null).getContent().stream().map(BookResponseDTO::getExternalId).toList());
+        
+        // Ya retirado: no se vuelve a informar como eliminado ni a retirar
+        assertEquals(new SyncResultDTO(0, 0, 1, 0, false), bookService.syncBooksFromExternalApi());
+        
+        // Si vuelve a aparecer se reactiva, aunque su contenido no haya cambiado
+        feed.add(book(140081L, "The Hitchhiker's Guide to the Galaxy", "20.99", "Douglas Adams"));
+        assertEquals(new SyncResultDTO(0, 1, 1, 0, false), bookService.syncBooksFromExternalApi());
+        entityManager.clear();
+        assertFalse(bookRepository.findByExternalId(140081L).orElseThrow().getRetired());
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.libreria.service;
+
+import com.example.libreria.config.CacheConfig;
+import com.example.libreria.dto.ExternalBookDTO;
+import com.example.libreria.dto.SyncResultDTO;
+import com.example.libreria.model.BookCacheListener;
+import com.example.libreria.repository.BookBulkRepository;
+import com.example.libreria.repository.BookRepository;
+import com.example.libreria.repository.BookStagingRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static com.example.libreria.support.TestBooks.synthetic;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+/**
+ * Escalado de la sincronización por bloques en paralelo sobre un feed generado:
+ * se sincroniza el feed completo (todos los libros nuevos) con parallelism 1, 2, 4... hasta la cantidad de núcleos.
+ *
+ * Ejecutar con: ./mvnw test -Pbenchmark -Dtest=BookSyncParallelBenchmarkTest
+ *   [-Dbenchmark.feed.size=200000] [-Dbenchmark.sync.parallelism=1,2,4,8]
+ */
+@Slf4j
+@Tag("benchmark")
+@DataJpaTest(properties = {"libreria.sync.mode=incremental",
+        "spring.datasource.hikari.maximum-pool-size=32"})
+@Import({BookService.class, BookBulkRepository.class, BookStagingRepository.class, CacheConfig.class,
+        BookCacheListener.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class BookSyncParallelBenchmarkTest {
+    
+    private static final int FEED_SIZE = Integer.getInteger("benchmark.feed.size", 200_000);
+    private static final int CHUNK_SIZE = 500;
+    
+    @Autowired
+    private BookService bookService;
+    
+    @Autowired
+    private BookRepository bookRepository;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @MockitoBean
+    private ExternalBookService externalBookService;
+    
+    @Test
+    void benchmarkParallelismScaling() {
+        when(externalBookService.fetchAllBooksInChunks(any())).thenAnswer(invocation -> {
+            Consumer<List<ExternalBookDTO>> consumer = invocation.getArgument(0);
+            List<ExternalBookDTO> chunk = new ArrayList<>(CHUNK_SIZE);
+            for (long id = 1; id <= FEED_SIZE; id++) {
+                chunk.add(synthetic(id));
+                if (chunk.size() == CHUNK_SIZE) {
+                    consumer.accept(chunk);
+                    chunk = new ArrayList<>(CHUNK_SIZE);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                consumer.accept(chunk);
+            }
+            return FeedFetchResult.modified(FEED_SIZE, null, null);
+        });
+        
+        // Calentamiento
+        runSync(1);
+        
+        log.info("Núcleos disponibles: {}, feed de {} libros", Runtime.getRuntime().availableProcessors(), FEED_SIZE);
+        long baseline = 0;
+        for (int parallelism : parallelismLevels()) {
+            long millis = runSync(parallelism);
+            if (baseline == 0) {
+                baseline = millis;
+            }
+            log.info("parallelism {}: {} ms, {} libros/s, speedup x{}", parallelism, millis,
+                    FEED_SIZE * 1000L / Math.max(1, millis), String.format("%.2f", (double) baseline / millis));
+        }
+    }
+    
+    private long runSync(int parallelism) {
+        jdbcTemplate.update("DELETE FROM book_authors");
+        jdbcTemplate.update("DELETE FROM books");
+        ReflectionTestUtils.setField(bookService, "syncParallelism", parallelism);
+        
+        long start = System.nanoTime();
+        SyncResultDTO result = bookService.syncBooksFromExternalApi();
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        
+        assertEquals(FEED_SIZE, result.getCreated());
+        assertEquals(FEED_SIZE, bookRepository.count());
+        return millis;
+    }
+    
+    private List<Integer> parallelismLevels() {
+        String configured = System.getProperty("benchmark.sync.parallelism");
+        List<Integer> levels = new ArrayList<>();
+        if (configured != null) {
+            for (String level : configured.split(",")) {
+                levels.add(Integer.parseInt(level.trim()));
+            }
+            return levels;
+        }
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int level = 1; level < cores; level *= 2) {
+            levels.add(level);
+        }
+        levels.add(cores);
+        return levels;
+    }
+}
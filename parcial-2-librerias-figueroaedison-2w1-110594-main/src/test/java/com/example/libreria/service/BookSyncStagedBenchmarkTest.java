@@ -0,0 +1,127 @@
+package com.example.libreria.service;
+
+import com.example.libreria.config.CacheConfig;
+import com.example.libreria.dto.ExternalBookDTO;
+import com.example.libreria.dto.SyncResultDTO;
+import com.example.libreria.model.BookCacheListener;
+import com.example.libreria.repository.BookBulkRepository;
+import com.example.libreria.repository.BookRepository;
+import com.example.libreria.repository.BookStagingRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static com.example.libreria.support.TestBooks.revised;
+import static com.example.libreria.support.TestBooks.synthetic;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+/**
+ * Sincronización incremental (bloque por bloque) contra la sincronización por etapas (staging + MERGE)
+ * sobre un feed generado: carga inicial, re-sincronización con el 10% modificado y el 1% eliminado,
+ * y re-sincronización sin cambios.
+ *
+ * Ejecutar con: ./mvnw test -Pbenchmark -Dtest=BookSyncStagedBenchmarkTest [-Dbenchmark.feed.size=200000]
+ */
+@Slf4j
+@Tag("benchmark")
+@DataJpaTest(properties = "libreria.sync.parallelism=1")
+@Import({BookService.class, BookBulkRepository.class, BookStagingRepository.class, CacheConfig.class,
+        BookCacheListener.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class BookSyncStagedBenchmarkTest {
+    
+    private static final int FEED_SIZE = Integer.getInteger("benchmark.feed.size", 100_000);
+    private static final int CHUNK_SIZE = 500;
+    
+    @Autowired
+    private BookService bookService;
+    
+    @Autowired
+    private BookRepository bookRepository;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @MockitoBean
+    private ExternalBookService externalBookService;
+    
+    // Versión del feed: 0 es el catálogo original; 1 modifica el 10% y quita el 1%
+    private int feedVersion;
+    
+    @Test
+    void benchmarkStagedMerge() {
+        when(externalBookService.fetchAllBooksInChunks(any())).thenAnswer(invocation -> {
+            Consumer<List<ExternalBookDTO>> consumer = invocation.getArgument(0);
+            List<ExternalBookDTO> chunk = new ArrayList<>(CHUNK_SIZE);
+            int total = 0;
+            for (long id = 1; id <= FEED_SIZE; id++) {
+                if (feedVersion == 1 && id % 100 == 0) {
+                    continue;
+                }
+                chunk.add(feedVersion == 1 && id % 10 == 1 ? revised(id) : synthetic(id));
+                total++;
+                if (chunk.size() == CHUNK_SIZE) {
+                    consumer.accept(chunk);
+                    chunk = new ArrayList<>(CHUNK_SIZE);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                consumer.accept(chunk);
+            }
+            return FeedFetchResult.modified(total, null, null);
+        });
+        
+        // Calentamiento
+        run(BookService.SyncMode.INCREMENTAL);
+        run(BookService.SyncMode.STAGED);
+        
+        log.info("Feed de {} libros", FEED_SIZE);
+        for (BookService.SyncMode mode : BookService.SyncMode.values()) {
+            long[] millis = run(mode);
+            log.info("{}: carga inicial {} ms ({} libros/s), 10% modificado y 1% eliminado {} ms, sin cambios {} ms",
+                    mode, millis[0], FEED_SIZE * 1000L / Math.max(1, millis[0]), millis[1], millis[2]);
+        }
+    }
+    
+    private long[] run(BookService.SyncMode mode) {
+        jdbcTemplate.update("DELETE FROM book_authors");
+        jdbcTemplate.update("DELETE FROM books");
+        ReflectionTestUtils.setField(bookService, "syncMode", mode);
+        
+        feedVersion = 0;
+        long initial = time(new SyncResultDTO(FEED_SIZE, 0, 0, 0, false));
+        
+        feedVersion = 1;
+        int removed = FEED_SIZE / 100;
+        int updated = (FEED_SIZE + 9) / 10;
+        long changed = time(new SyncResultDTO(0, updated, FEED_SIZE - removed - updated, removed, false));
+        
+        // Los libros eliminados en la API ya quedaron retirados en la sincronización anterior: no se vuelven a contar
+        long unchanged = time(new SyncResultDTO(0, 0, FEED_SIZE - removed, 0, false));
+        
+        assertEquals(FEED_SIZE, bookRepository.count());
+        return new long[]{initial, changed, unchanged};
+    }
+    
+    private long time(SyncResultDTO expected) {
+        long start = System.nanoTime();
+        SyncResultDTO result = bookService.syncBooksFromExternalApi();
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        assertEquals(expected, result);
+        return millis;
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.libreria.service;
+
+import com.example.libreria.config.CacheConfig;
+import com.example.libreria.dto.BookResponseDTO;
+import com.example.libreria.dto.ExternalBookDTO;
+import com.example.libreria.dto.SyncResultDTO;
+import com.example.libreria.model.Book;
+import com.example.libreria.model.BookCacheListener;
+import com.example.libreria.repository.BookBulkRepository;
+import com.example.libreria.repository.BookRepository;
+import com.example.libreria.repository.BookStagingRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static com.example.libreria.support.TestBooks.book;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Sincronización por etapas contra una base H2 real: staging, MERGE sobre conjuntos y anti-join
+ */
+@DataJpaTest(properties = "libreria.sync.mode=staged")
+@Import({BookService.class, BookBulkRepository.class, BookStagingRepository.class, CacheConfig.class,
+        BookCacheListener.class})
+class BookSyncStagedTest {
+    
+    @Autowired
+    private BookService bookService;
+    
+    @Autowired
+    private BookRepository bookRepository;
+    
+    @Autowired
+    private TestEntityManager entityManager;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @MockitoBean
+    private ExternalBookService externalBookService;
+    
+    @Test
+    void testSync_MergesOnlyChangedBooksAndCountsDeletions() {
+        List<ExternalBookDTO> feed = new ArrayList<>(List.of(
+                book(258027L, "The Lord of the Rings", "15.99", "J. R. R. Tolkien"),
+                book(140081L, "The Hitchhiker's Guide to the Galaxy", "20.99", "Douglas Adams")));
+        serveFeed(feed);
+        
+        assertEquals(new SyncResultDTO(2, 0, 0, 0, false), bookService.syncBooksFromExternalApi());
+        assertEquals(new SyncResultDTO(0, 0, 2, 0, false), bookService.syncBooksFromExternalApi());
+        
+        // Cambia el precio y los autores de un libro y se reserva una unidad del otro
+        feed.set(0, book(258027L, "The Lord of the Rings", "17.50", "J. R. R. Tolkien", "Christopher Tolkien"));
+        bookRepository.decrementAvailableQuantity(140081L);
+        
+        assertEquals(new SyncResultDTO(0, 1, 1, 0, false), bookService.syncBooksFromExternalApi());
+        entityManager.clear();
+        
+        Book updated = bookRepository.findByExternalId(258027L).orElseThrow();
+        assertEquals(new BigDecimal("17.50"), updated.getPrice());
+        assertEquals(List.of("J. R. R. Tolkien", "Christopher Tolkien"), updated.getAuthorName());
+        assertEquals(10, updated.getStockQuantity());
+        assertEquals(9, bookRepository.findByExternalId(140081L).orElseThrow().getAvailableQuantity());
+        
+        // El libro que ya no viene en la API se retira sin borrarlo: sus reservas siguen apuntando a él
+        feed.remove(1);
+        assertEquals(new SyncResultDTO(0, 0, 1, 1, false), bookService.syncBooksFromExternalApi());
+        entityManager.clear();
+        
+        Book retired = bookRepository.findByExternalId(140081L).orElseThrow();
+        assertTrue(retired.getRetired());
+        assertEquals(9, retired.getAvailableQuantity());
+        assertEquals(List.of(258027L),
+                bookService.getBooksPage(null, null).getContent().stream().map(BookResponseDTO::getExternalId).toList());
+        
+        // Ya retirado: no se vuelve a informar como eliminado ni a retirar
+        assertEquals(new SyncResultDTO(0, 0, 1, 0, false), bookService.syncBooksFromExternalApi());
+        
+        // Si vuelve a aparecer se reactiva, aunque su contenido no haya cambiado
+        feed.add(book(140081L, "The Hitchhiker's Guide to the Galaxy", "20.99", "Douglas Adams"));
+        assertEquals(new SyncResultDTO(0, 1, 1, 0, false), bookService.syncBooksFromExternalApi());
+        entityManager.clear();
+        assertFalse(bookRepository.findByExternalId(140081L).orElseThrow().getRetired());
+        
+        // Las tablas de staging quedan vacías al terminar
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM book_sync_staging", Integer.class));
+        verify(externalBookService, times(6)).saveFeedValidators(any());
+    }
+    
+    @Test
+    void testSync_DuplicatedBookAcrossChunksIsIgnored() {
+        when(externalBookService.fetchAllBooksInChunks(any())).thenAnswer(invocation -> {
+            Consumer<List<ExternalBookDTO>> consumer = invocation.getArgument(0);
+            consumer.accept(List.of(book(1L, "Primero", "10.00", "Autor")));
+            consumer.accept(List.of(book(1L, "Repetido", "11.00", "Otro"),
+                    book(2L, "Segundo", "12.00", "Autor")));
+            return FeedFetchResult.modified(3, null, null);
+        });
+        
+        assertEquals(new SyncResultDTO(2, 0, 0, 0, false), bookService.syncBooksFromExternalApi());
+        assertEquals("Primero", bookRepository.findByExternalId(1L).orElseThrow().getTitle());
+    }
+    
+    @Test
+    void testSync_FailedChunkSkipsDeletionCountAndValidators() {
+        serveFeed(List.of(book(1L, "Uno", "10.00", "Autor"), book(2L, "Dos", "10.00", "Autor")));
+        bookService.syncBooksFromExternalApi();
+        
+        // Un bloque con un libro sin título no puede cargarse en staging
+        doAnswer(invocation -> {
+            Consumer<List<ExternalBookDTO>> consumer = invocation.getArgument(0);
+            consumer.accept(List.of(book(1L, "Uno", "10.00", "Autor")));
+            consumer.accept(List.of(book(2L, null, "10.00", "Autor")));
+            return FeedFetchResult.modified(2, "\"v2\"", null);
+        }).when(externalBookService).fetchAllBooksInChunks(any());
+        
+        SyncResultDTO result = bookService.syncBooksFromExternalApi(new SyncProgressListener() {
+            @Override
+            public void onChunkFailed(List<ExternalBookDTO> chunk, RuntimeException error) {
+            }
+        });
+        
+        assertEquals(new SyncResultDTO(0, 0, 1, 0, false), result);
+        assertEquals(2, bookRepository.count());
+        verify(externalBookService, times(1)).saveFeedValidators(any());
+    }
+    
+    @Test
+    void testSync_NotModifiedFeedLeavesCatalogUntouched() {
+        when(externalBookService.fetchAllBooksInChunks(any())).thenReturn(FeedFetchResult.notModified());
+        
+        SyncResultDTO result = bookService.syncBooksFromExternalApi();
+        
+        assertTrue(result.getNotModified());
+        assertEquals(0, bookRepository.count());
+        verify(externalBookService, never()).saveFeedValidators(any());
+    }
+    
+    private void serveFeed(List<ExternalBookDTO> feed) {
+        when(externalBookService.fetchAllBooksInChunks(any())).thenAnswer(invocation -> {
+            Consumer<List<ExternalBookDTO>> consumer = invocation.getArgument(0);
+            consumer.accept(List.copyOf(feed));
+            return FeedFetchResult.modified(feed.size(), null, null);
+        });
+    }
+}
@@ -0,0 +1,197 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.ExternalBookDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static com.example.libreria.support.TestBooks.book;
+import static org.junit.jupiter.api.Assertions.*;
+
+class CatalogDiskCacheTest {
+    
+    private static final String URL = "http://127.0.0.1/books";
+    private static final String FEED = "[{\"id\":258027,\"title\":\"The Lord of the Rings\"},{\"id\":140081,\"title\":\"Dune\"}]";
+    private static final Instant NOW = Instant.parse("2025-01-01T10:00:00Z");
+    
+    @TempDir
+    private Path directory;
+    
+    @Test
+    void testPutBook_FreshThenStaleThenExpired() {
+        put(cacheAt(NOW), book(258027L, "The Lord of the Rings", "15.99"));
+        
+        CatalogDiskCache fresh = cacheAt(NOW.plus(Duration.ofMinutes(30)));
+        assertEquals("The Lord of the Rings", fresh.getFreshBook(258027L).orElseThrow().getTitle());
+        assertEquals(new BigDecimal("15.99"), fresh.getBook(258027L).orElseThrow().getPrice());
+        
+        CatalogDiskCache stale = cacheAt(NOW.plus(Duration.ofHours(2)));
+        assertTrue(stale.getFreshBook(258027L).isEmpty());
+        assertTrue(stale.getBook(258027L).isPresent());
+        
+        CatalogDiskCache expired = cacheAt(NOW.plus(Duration.ofDays(8)));
+        assertTrue(expired.getBook(258027L).isEmpty());
+        assertTrue(cacheAt(NOW).getBook(99L).isEmpty());
+    }
+    
+    @Test
+    void testPutBook_SameContentIsStoredOnce() throws IOException {
+        CatalogDiskCache cache = cacheAt(NOW);
+        cache.putBook(book(258027L, "The Lord of the Rings", "15.99"));
+        put(cache, book(258027L, "The Lord of the Rings", "15.99"));
+        assertEquals(1, blobs().size());
+        
+        put(cache, book(258027L, "The Fellowship of the Ring", "15.99"));
+        assertEquals(2, blobs().size());
+        assertEquals("The Fellowship of the Ring", cache.getBook(258027L).orElseThrow().getTitle());
+    }
+    
+    @Test
+    void testGetBook_ServedFromMemoryWithoutReadingDisk() throws IOException {
+        CatalogDiskCache cache = cacheAt(NOW);
+        put(cache, book(258027L, "The Lord of the Rings", "15.99"));
+        
+        deleteRecursively(directory.resolve("refs"));
+        
+        assertEquals("The Lord of the Rings", cache.getFreshBook(258027L).orElseThrow().getTitle());
+        assertTrue(cacheAt(NOW).getFreshBook(258027L).isEmpty());
+    }
+    
+    @Test
+    void testFeedSnapshot_CommittedFeedCanBeReadBack() throws IOException {
+        CatalogDiskCache cache = cacheAt(NOW);
+        store(cache, FEED, "\"v1\"");
+        
+        CatalogDiskCache.FeedSnapshot snapshot = cacheAt(NOW.plus(Duration.ofHours(2))).feedSnapshot(URL).orElseThrow();
+        assertEquals("\"v1\"", snapshot.etag());
+        assertEquals("Wed, 01 Jan 2025 09:00:00 GMT", snapshot.lastModified());
+        assertEquals(2, snapshot.books());
+        assertEquals(NOW, snapshot.storedAt());
+        assertFalse(snapshot.fresh());
+        try (InputStream in = snapshot.open()) {
+            assertEquals(FEED, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        
+        assertTrue(cache.feedSnapshot("http://otro-host/books").isEmpty());
+        assertTrue(cacheAt(NOW.plus(Duration.ofDays(8))).feedSnapshot(URL).isEmpty());
+    }
+    
+    @Test
+    void testFeedSnapshot_UncommittedFeedIsDiscarded() throws IOException {
+        CatalogDiskCache cache = cacheAt(NOW);
+        store(cache, FEED, "\"v1\"");
+        
+        try (CatalogDiskCache.FeedSnapshotWriter writer = cache.startFeedSnapshot(URL)) {
+            writer.capture(stream("[{\"id\":1")).readAllBytes();
+        }
+        
+        assertEquals("\"v1\"", cache.feedSnapshot(URL).orElseThrow().etag());
+        assertEquals(1, blobs().size());
+    }
+    
+    @Test
+    void testFeedSnapshot_PreviousBlobIsKeptForOneGeneration() throws IOException {
+        CatalogDiskCache cache = cacheAt(NOW);
+        store(cache, FEED, "\"v1\"");
+        CatalogDiskCache.FeedSnapshot first = cache.feedSnapshot(URL).orElseThrow();
+        
+        // Quien ya resolvió la referencia anterior puede seguir leyendo después del commit siguiente
+        store(cache, "[{\"id\":1,\"title\":\"Otro\"}]", "\"v2\"");
+        assertEquals("\"v2\"", cache.feedSnapshot(URL).orElseThrow().etag());
+        try (InputStream in = first.open()) {
+            assertEquals(FEED, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        cache.purgeExpired();
+        assertEquals(2, blobs().size());
+        
+        store(cache, "[{\"id\":2,\"title\":\"Tercero\"}]", "\"v3\"");
+        assertFalse(Files.exists(first.path()));
+        assertEquals(2, blobs().size());
+        
+        // Guardar otra vez el mismo feed no descarta el anterior
+        store(cache, "[{\"id\":2,\"title\":\"Tercero\"}]", "\"v3\"");
+        assertEquals(2, blobs().size());
+    }
+    
+    @Test
+    void testPurgeExpired_RemovesExpiredRefsAndUnreferencedBlobs() throws IOException {
+        put(cacheAt(NOW), book(1L, "Viejo", "15.99"));
+        CatalogDiskCache later = cacheAt(NOW.plus(Duration.ofDays(6)));
+        put(later, book(2L, "Nuevo", "15.99"));
+        store(later, FEED, "\"v1\"");
+        
+        CatalogDiskCache purging = cacheAt(NOW.plus(Duration.ofDays(7)));
+        purging.purgeExpired();
+        
+        assertEquals(2, blobs().size());
+        assertTrue(purging.getBook(1L).isEmpty());
+        assertTrue(purging.getBook(2L).isPresent());
+        assertTrue(purging.feedSnapshot(URL).isPresent());
+    }
+    
+    @Test
+    void testDisabled_DoesNotTouchDisk() throws IOException {
+        CatalogDiskCache cache = CatalogDiskCache.disabled();
+        InputStream body = stream(FEED);
+        
+        try (CatalogDiskCache.FeedSnapshotWriter writer = cache.startFeedSnapshot(URL)) {
+            assertSame(body, writer.capture(body));
+            writer.commit("\"v1\"", null, 2);
+        }
+        cache.putBook(book(1L, "Uno", "15.99"));
+        
+        assertTrue(cache.feedSnapshot(URL).isEmpty());
+        assertTrue(cache.getBook(1L).isEmpty());
+    }
+    
+    private void store(CatalogDiskCache cache, String feed, String etag) throws IOException {
+        try (CatalogDiskCache.FeedSnapshotWriter writer = cache.startFeedSnapshot(URL)) {
+            InputStream body = writer.capture(stream(feed));
+            body.readAllBytes();
+            writer.commit(etag, "Wed, 01 Jan 2025 09:00:00 GMT", 2);
+        }
+    }
+    
+    private void put(CatalogDiskCache cache, ExternalBookDTO book) {
+        cache.putBook(book);
+        cache.awaitPendingWrites();
+    }
+    
+    private void deleteRecursively(Path root) throws IOException {
+        try (Stream<Path> files = Files.walk(root)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+    
+    private List<Path> blobs() throws IOException {
+        try (Stream<Path> files = Files.walk(directory.resolve("blobs"))) {
+            return files.filter(Files::isRegularFile).toList();
+        }
+    }
+    
+    private CatalogDiskCache cacheAt(Instant now) {
+        return new CatalogDiskCache(new ObjectMapper(), true, directory, Duration.ofHours(1), Duration.ofDays(7),
+                Clock.fixed(now, ZoneOffset.UTC));
+    }
+    
+    private InputStream stream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.libreria.service;
+
+import com.example.libreria.config.CacheConfig;
+import com.example.libreria.config.ResilienceConfig;
+import com.example.libreria.model.BookCacheListener;
+import com.example.libreria.repository.BookBulkRepository;
+import com.example.libreria.repository.BookRepository;
+import com.example.libreria.repository.BookStagingRepository;
+import com.example.libreria.support.StubBooksApiServer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.client.RestTemplate;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tiempo hasta tener el catálogo cargado después de un reinicio: sincronización completa contra
+ * el servidor local (con y sin una API lenta) contra el arranque desde la caché en disco.
+ *
+ * Ejecutar con: ./mvnw test -Pbenchmark -Dtest=CatalogWarmStartBenchmarkTest [-Dbenchmark.feed.size=100000]
+ */
+@Slf4j
+@Tag("benchmark")
+@DataJpaTest(properties = {"libreria.sync.parallelism=1", "external.api.books.url=http://127.0.0.1/books",
+        "libreria.disk-cache.enabled=true"})
+@Import({BookService.class, BookBulkRepository.class, BookStagingRepository.class, ExternalBookService.class,
+        CacheConfig.class, BookCacheListener.class, ResilienceConfig.class, CatalogDiskCache.class,
+        CatalogWarmStart.class, SyncJobService.class, CatalogWarmStartBenchmarkTest.HttpConfig.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class CatalogWarmStartBenchmarkTest {
+    
+    private static final int FEED_SIZE = Integer.getInteger("benchmark.feed.size", 100_000);
+    
+    @TempDir
+    static Path cacheDirectory;
+    
+    @Autowired
+    private BookService bookService;
+    
+    @Autowired
+    private ExternalBookService externalBookService;
+    
+    @Autowired
+    private CatalogWarmStart catalogWarmStart;
+    
+    @Autowired
+    private BookRepository bookRepository;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @TestConfiguration
+    static class HttpConfig {
+        
+        @Bean
+        RestTemplate restTemplate() {
+            return new RestTemplate();
+        }
+        
+        @Bean
+        ObjectMapper objectMapper() {
+            return new ObjectMapper();
+        }
+    }
+    
+    @DynamicPropertySource
+    static void cacheProperties(DynamicPropertyRegistry registry) {
+        registry.add("libreria.disk-cache.dir", () -> cacheDirectory.toString());
+    }
+    
+    @Test
+    void benchmarkSyncVsWarmStart() throws Exception {
+        try (StubBooksApiServer server = new StubBooksApiServer().withSyntheticCatalog(FEED_SIZE)) {
+            ReflectionTestUtils.setField(externalBookService, "externalApiUrl", server.booksUrl());
+            
+            // Calentamiento
+            restart();
+            bookService.syncBooksFromExternalApi();
+            restart();
+            catalogWarmStart.warmStart();
+            
+            log.info("Catálogo de {} libros", FEED_SIZE);
+            restart();
+            log.info("  Sincronización completa:            {} ms", time(bookService::syncBooksFromExternalApi));
+            
+            server.withSlowDrip(16 * 1024, Duration.ofMillis(20));
+            restart();
+            log.info("  Sincronización con API lenta:       {} ms", time(bookService::syncBooksFromExternalApi));
+            
+            int requests = server.requestCount();
+            restart();
+            log.info("  Arranque desde la caché en disco:   {} ms", time(catalogWarmStart::warmStart));
+            assertEquals(requests, server.requestCount());
+        }
+    }
+    
+    private long time(Runnable load) {
+        long start = System.nanoTime();
+        load.run();
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        assertEquals(FEED_SIZE, bookRepository.count());
+        return millis;
+    }
+    
+    // Lo que se pierde al reiniciar con H2 en memoria
+    private void restart() {
+        jdbcTemplate.update("DELETE FROM book_authors");
+        jdbcTemplate.update("DELETE FROM books");
+        jdbcTemplate.update("DELETE FROM feed_validators");
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.libreria.service;
+
+import com.example.libreria.config.CacheConfig;
+import com.example.libreria.config.ResilienceConfig;
+import com.example.libreria.dto.SyncResultDTO;
+import com.example.libreria.model.BookCacheListener;
+import com.example.libreria.repository.BookBulkRepository;
+import com.example.libreria.repository.BookRepository;
+import com.example.libreria.repository.BookStagingRepository;
+import com.example.libreria.repository.FeedValidatorRepository;
+import com.example.libreria.support.StubBooksApiServer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Arranque con el catálogo vacío a partir de la caché en disco, sin pedir nada a la API externa.
+ */
+@DataJpaTest(properties = {"libreria.sync.parallelism=1", "external.api.books.url=http://127.0.0.1/books",
+        "libreria.disk-cache.enabled=true"})
+@Import({BookService.class, BookBulkRepository.class, BookStagingRepository.class, ExternalBookService.class,
+        CacheConfig.class, BookCacheListener.class, ResilienceConfig.class, CatalogDiskCache.class,
+        CatalogWarmStart.class, SyncJobService.class, CatalogWarmStartTest.HttpConfig.class})
+class CatalogWarmStartTest {
+    
+    @TempDir
+    static Path cacheDirectory;
+    
+    private StubBooksApiServer server;
+    
+    @Autowired
+    private BookService bookService;
+    
+    @Autowired
+    private ExternalBookService externalBookService;
+    
+    @Autowired
+    private CatalogWarmStart catalogWarmStart;
+    
+    @Autowired
+    private BookRepository bookRepository;
+    
+    @Autowired
+    private FeedValidatorRepository feedValidatorRepository;
+    
+    @TestConfiguration
+    static class HttpConfig {
+        
+        @Bean
+        RestTemplate restTemplate() {
+            return new RestTemplate();
+        }
+        
+        @Bean
+        ObjectMapper objectMapper() {
+            return new ObjectMapper();
+        }
+    }
+    
+    @DynamicPropertySource
+    static void cacheProperties(DynamicPropertyRegistry registry) {
+        registry.add("libreria.disk-cache.dir", () -> cacheDirectory.toString());
+    }
+    
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new StubBooksApiServer().withSyntheticCatalog(1_200);
+        ReflectionTestUtils.setField(externalBookService, "externalApiUrl", server.booksUrl());
+    }
+    
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+    
+    @Test
+    void testWarmStart_RestoresCatalogWithoutNetwork() {
+        assertEquals(new SyncResultDTO(1_200, 0, 0, 0, false), bookService.syncBooksFromExternalApi());
+        assertEquals(1_200, externalBookService.cachedFeed().orElseThrow().books());
+        
+        // Lo que se pierde al reiniciar con H2 en memoria
+        bookRepository.deleteAll();
+        feedValidatorRepository.deleteAll();
+        int requests = server.requestCount();
+        
+        catalogWarmStart.warmStart();
+        
+        assertEquals(1_200, bookRepository.count());
+        assertEquals(requests, server.requestCount());
+        
+        // Los validadores del feed guardado hacen que la próxima sincronización sea condicional
+        assertTrue(bookService.syncBooksFromExternalApi().getNotModified());
+        assertEquals(1, server.notModifiedCount());
+    }
+    
+    @Test
+    void testWarmStart_SkippedWhenCatalogIsNotEmpty() {
+        bookService.syncBooksFromExternalApi();
+        server.withSyntheticCatalog(1_300);
+        bookService.syncBooksFromExternalApi();
+        
+        catalogWarmStart.warmStart();
+        
+        assertEquals(1_300, bookRepository.count());
+    }
+    
+    @Test
+    void testRestore_FeedFromAnotherUrlIsIgnored() {
+        bookService.syncBooksFromExternalApi();
+        
+        ReflectionTestUtils.setField(externalBookService, "externalApiUrl", "http://127.0.0.1:1/otra-api");
+        
+        assertTrue(externalBookService.cachedFeed().isEmpty());
+    }
+}
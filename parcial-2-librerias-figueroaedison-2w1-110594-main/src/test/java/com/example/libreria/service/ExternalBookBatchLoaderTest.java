@@ -0,0 +1,142 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.ExternalBookDTO;
+import com.example.libreria.support.StubBooksApiServer;
+import com.example.libreria.support.TestBooks;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.retry.Retry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.example.libreria.support.TestBooks.book;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExternalBookBatchLoaderTest {
+    
+    private StubBooksApiServer server;
+    
+    private ExternalBookService externalBookService;
+    
+    private ExternalBookBatchLoader batchLoader;
+    
+    private ExecutorService callers;
+    
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new StubBooksApiServer();
+        for (long id = 1; id <= 10; id++) {
+            server.withBook(id, "Book " + id, "Author " + id, 10.0 + id);
+        }
+        externalBookService = new ExternalBookService(new RestTemplate(), null, new ObjectMapper(),
+                CircuitBreaker.ofDefaults("external-books-api"), Bulkhead.ofDefaults("external-books-api"),
+                Retry.ofDefaults("external-books-api"),
+                CatalogDiskCache.disabled());
+        ReflectionTestUtils.setField(externalBookService, "externalApiUrl", server.booksUrl());
+        callers = Executors.newFixedThreadPool(10);
+    }
+    
+    @AfterEach
+    void tearDown() {
+        if (batchLoader != null) {
+            batchLoader.shutdown();
+        }
+        externalBookService.shutdown();
+        callers.shutdownNow();
+        server.close();
+    }
+    
+    @Test
+    void testFetchBookById_IdsWithinWindowAreSentInOneRequest() throws Exception {
+        enableBatching(Duration.ofMillis(200), 50);
+        
+        List<Future<ExternalBookDTO>> futures = new ArrayList<>();
+        for (long id = 1; id <= 10; id++) {
+            long bookId = id;
+            futures.add(callers.submit(() -> externalBookService.fetchBookById(bookId)));
+        }
+        
+        for (int i = 0; i < futures.size(); i++) {
+            ExternalBookDTO book = futures.get(i).get(5, TimeUnit.SECONDS);
+            assertEquals(i + 1L, book.getId());
+            assertEquals("Book " + (i + 1), book.getTitle());
+        }
+        assertEquals(1, server.requestCount());
+    }
+    
+    @Test
+    void testFetchBookById_FullBatchIsSentBeforeWindowEnds() throws Exception {
+        enableBatching(Duration.ofMinutes(1), 4);
+        
+        List<Future<ExternalBookDTO>> futures = new ArrayList<>();
+        for (long id = 1; id <= 8; id++) {
+            long bookId = id;
+            futures.add(callers.submit(() -> externalBookService.fetchBookById(bookId)));
+        }
+        
+        for (Future<ExternalBookDTO> future : futures) {
+            assertNotNull(future.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(2, server.requestCount());
+    }
+    
+    @Test
+    void testFetchBookById_UnknownIdReturnsNull() {
+        enableBatching(Duration.ofMillis(1), 50);
+        
+        assertNull(externalBookService.fetchBookById(999L));
+        assertEquals("Book 5", externalBookService.fetchBookById(5L).getTitle());
+    }
+    
+    @Test
+    void testLoad_DuplicateIdsShareResult() throws Exception {
+        AtomicInteger requests = new AtomicInteger();
+        batchLoader = new ExternalBookBatchLoader(ids -> {
+            requests.incrementAndGet();
+            return ids.stream().map(TestBooks::book).toList();
+        }, Duration.ofMillis(100), 50, 2);
+        
+        CompletableFuture<ExternalBookDTO> first = batchLoader.loadAsync(3L);
+        CompletableFuture<ExternalBookDTO> second = batchLoader.loadAsync(3L);
+        
+        assertSame(first.get(5, TimeUnit.SECONDS), second.get(5, TimeUnit.SECONDS));
+        assertEquals(1, requests.get());
+    }
+    
+    @Test
+    void testLoad_ErrorIsPropagatedToEveryCaller() {
+        batchLoader = new ExternalBookBatchLoader(ids -> {
+            throw new RuntimeException("Error al obtener libros de la API externa: simulado");
+        }, Duration.ofMillis(50), 50, 2);
+        
+        CompletableFuture<ExternalBookDTO> first = batchLoader.loadAsync(1L);
+        CompletableFuture<ExternalBookDTO> second = batchLoader.loadAsync(2L);
+        
+        RuntimeException exception = assertThrows(RuntimeException.class, () -> batchLoader.load(3L));
+        assertTrue(exception.getMessage().contains("Error al obtener libros de la API externa"));
+        assertTrue(first.isCompletedExceptionally());
+        assertTrue(second.isCompletedExceptionally());
+    }
+    
+    private void enableBatching(Duration window, int maxSize) {
+        ReflectionTestUtils.setField(externalBookService, "batchEnabled", true);
+        ReflectionTestUtils.setField(externalBookService, "batchWindow", window);
+        ReflectionTestUtils.setField(externalBookService, "batchMaxSize", maxSize);
+        ReflectionTestUtils.setField(externalBookService, "batchMaxInFlight", 2);
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.libreria.service;
+
+import com.example.libreria.config.RestTemplateConfig;
+import com.example.libreria.dto.ExternalBookDTO;
+import com.example.libreria.support.StubBooksApiServer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.retry.Retry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Latencia y throughput de fetchBookById contra un servidor local: una llamada HTTP por id
+ * contra lotes multi-id (external.api.books.batch.enabled), sin latencia de red y con 10 ms por respuesta.
+ *
+ * Ejecutar con: ./mvnw test -Pbenchmark -Dtest=ExternalBookBatchingBenchmarkTest
+ */
+@Slf4j
+@Tag("benchmark")
+class ExternalBookBatchingBenchmarkTest {
+    
+    private static final int THREADS = 32;
+    private static final int REQUESTS_PER_THREAD = 300;
+    private static final int BOOKS = 5_000;
+    
+    private static StubBooksApiServer server;
+    private static RestTemplateConfig config;
+    private static ExternalBookService perIdService;
+    private static ExternalBookService batchedService;
+    
+    @BeforeAll
+    static void setUp() throws IOException {
+        server = new StubBooksApiServer();
+        for (long id = 1; id <= BOOKS; id++) {
+            server.withBook(id, "Book " + id, "Author " + id, 10.0 + id % 100);
+        }
+        
+        config = new RestTemplateConfig();
+        ReflectionTestUtils.setField(config, "connectTimeout", Duration.ofSeconds(5));
+        ReflectionTestUtils.setField(config, "readTimeout", Duration.ofSeconds(5));
+        ReflectionTestUtils.setField(config, "maxConnections", 50);
+        ReflectionTestUtils.setField(config, "maxConnectionsPerRoute", THREADS);
+        ReflectionTestUtils.setField(config, "idleEviction", Duration.ofSeconds(30));
+        ReflectionTestUtils.setField(config, "keepAlive", Duration.ofSeconds(30));
+        RestTemplate restTemplate = config.restTemplate();
+        
+        perIdService = service(restTemplate);
+        batchedService = service(restTemplate);
+        ReflectionTestUtils.setField(batchedService, "batchEnabled", true);
+        ReflectionTestUtils.setField(batchedService, "batchWindow", Duration.ofMillis(5));
+        ReflectionTestUtils.setField(batchedService, "batchMaxSize", 50);
+        ReflectionTestUtils.setField(batchedService, "batchMaxInFlight", 4);
+    }
+    
+    private static ExternalBookService service(RestTemplate restTemplate) {
+        ExternalBookService service = new ExternalBookService(restTemplate, null, new ObjectMapper(),
+                CircuitBreaker.ofDefaults("external-books-api"),
+                Bulkhead.of("external-books-api", BulkheadConfig.custom().maxConcurrentCalls(THREADS).build()),
+                Retry.ofDefaults("external-books-api"),
+                CatalogDiskCache.disabled());
+        ReflectionTestUtils.setField(service, "externalApiUrl", server.booksUrl());
+        return service;
+    }
+    
+    @AfterAll
+    static void tearDown() throws IOException {
+        perIdService.shutdown();
+        batchedService.shutdown();
+        config.httpClient().close();
+        server.close();
+    }
+    
+    @Test
+    void benchmarkPerIdVsBatched() throws Exception {
+        for (Duration latency : new Duration[] {Duration.ZERO, Duration.ofMillis(10)}) {
+            server.withLatency(latency);
+            // Calentamiento
+            run(perIdService::fetchBookById);
+            run(batchedService::fetchBookById);
+            
+            int before = server.requestCount();
+            Result perId = run(perIdService::fetchBookById);
+            int perIdRequests = server.requestCount() - before;
+            before = server.requestCount();
+            Result batched = run(batchedService::fetchBookById);
+            int batchedRequests = server.requestCount() - before;
+            
+            log.info("Latencia del servidor {} ms", latency.toMillis());
+            log.info("  Una llamada por id: {} req/s, p50 {} ms, p99 {} ms, {} llamadas HTTP",
+                    perId.throughput(), perId.p50(), perId.p99(), perIdRequests);
+            log.info("  Lotes multi-id:     {} req/s, p50 {} ms, p99 {} ms, {} llamadas HTTP",
+                    batched.throughput(), batched.p50(), batched.p99(), batchedRequests);
+        }
+    }
+    
+    private Result run(LongFunction<ExternalBookDTO> lookup) throws InterruptedException {
+        long[] latencies = new long[THREADS * REQUESTS_PER_THREAD];
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int t = 0; t < THREADS; t++) {
+            int offset = t;
+            executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < REQUESTS_PER_THREAD; i++) {
+                    long id = (offset * 7919L + i * 31L) % BOOKS + 1;
+                    long begin = System.nanoTime();
+                    assertNotNull(lookup.apply(id));
+                    latencies[offset * REQUESTS_PER_THREAD + i] = System.nanoTime() - begin;
+                }
+                return null;
+            });
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.MINUTES));
+        long elapsed = System.nanoTime() - begin;
+        
+        Arrays.sort(latencies);
+        return new Result(
+                String.format("%.0f", latencies.length * 1_000_000_000.0 / elapsed),
+                String.format("%.2f", latencies[latencies.length / 2] / 1_000_000.0),
+                String.format("%.2f", latencies[latencies.length * 99 / 100] / 1_000_000.0));
+    }
+    
+    private record Result(String throughput, String p50, String p99) {
+    }
+}
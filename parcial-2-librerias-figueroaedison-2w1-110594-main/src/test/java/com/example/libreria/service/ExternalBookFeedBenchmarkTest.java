@@ -0,0 +1,127 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.ExternalBookDTO;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.retry.Retry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compara la lectura completa del feed (List<ExternalBookDTO>) contra la lectura en streaming por bloques,
+ * sobre una copia ampliada de books-db.json. Mide tiempo total y pico de heap.
+ *
+ * Ejecutar con: ./mvnw test -Pbenchmark -Dtest=ExternalBookFeedBenchmarkTest [-Dbenchmark.feed.size=1000000]
+ */
+@Slf4j
+@Tag("benchmark")
+class ExternalBookFeedBenchmarkTest {
+    
+    private static final int FEED_SIZE = Integer.getInteger("benchmark.feed.size", 300_000);
+    private static final int CHUNK_SIZE = 500;
+    
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static Path feed;
+    
+    @BeforeAll
+    static void generateFeed() throws IOException {
+        JsonNode[] templates = objectMapper.readValue(Path.of("books-db.json").toFile(), JsonNode[].class);
+        feed = Files.createTempFile("books-feed-", ".json");
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(Files.newOutputStream(feed))) {
+            generator.writeStartArray();
+            for (int i = 0; i < FEED_SIZE; i++) {
+                ObjectNode book = templates[i % templates.length].deepCopy();
+                book.put("id", i + 1L);
+                book.put("title", book.get("title").asText() + " #" + i);
+                generator.writeTree(book);
+            }
+            generator.writeEndArray();
+        }
+        log.info("Feed generado: {} libros, {} MB", FEED_SIZE, Files.size(feed) / (1024 * 1024));
+    }
+    
+    @AfterAll
+    static void deleteFeed() throws IOException {
+        Files.deleteIfExists(feed);
+    }
+    
+    @Test
+    void benchmarkFullListVsStreamingChunks() throws IOException {
+        // Calentamiento de Jackson para no medir la carga de clases
+        readFullList();
+        readInChunks();
+        
+        resetHeapPeak();
+        long start = System.nanoTime();
+        int fullCount = readFullList();
+        long fullMillis = (System.nanoTime() - start) / 1_000_000;
+        long fullPeak = heapPeakMegabytes();
+        
+        resetHeapPeak();
+        start = System.nanoTime();
+        int streamedCount = readInChunks();
+        long streamingMillis = (System.nanoTime() - start) / 1_000_000;
+        long streamingPeak = heapPeakMegabytes();
+        
+        log.info("Lista completa:       {} libros en {} ms, pico de heap {} MB", fullCount, fullMillis, fullPeak);
+        log.info("Streaming por bloques: {} libros en {} ms, pico de heap {} MB", streamedCount, streamingMillis, streamingPeak);
+        
+        assertEquals(FEED_SIZE, fullCount);
+        assertEquals(FEED_SIZE, streamedCount);
+    }
+    
+    private int readFullList() throws IOException {
+        List<ExternalBookDTO> books = objectMapper.readValue(feed.toFile(), new TypeReference<List<ExternalBookDTO>>() {});
+        return books.size();
+    }
+    
+    private int readInChunks() throws IOException {
+        ExternalBookService service = new ExternalBookService(null, null, objectMapper,
+                CircuitBreaker.ofDefaults("external-books-api"), Bulkhead.ofDefaults("external-books-api"),
+                Retry.ofDefaults("external-books-api"),
+                CatalogDiskCache.disabled());
+        AtomicLong checksum = new AtomicLong();
+        try (InputStream in = Files.newInputStream(feed)) {
+            return service.readBooksInChunks(in, CHUNK_SIZE, chunk -> checksum.addAndGet(chunk.size()));
+        }
+    }
+    
+    private static void resetHeapPeak() {
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+    
+    private static long heapPeakMegabytes() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak / (1024 * 1024);
+    }
+}
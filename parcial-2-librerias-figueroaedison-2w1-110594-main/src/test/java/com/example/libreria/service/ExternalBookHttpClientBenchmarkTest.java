@@ -0,0 +1,111 @@
+package com.example.libreria.service;
+
+import com.example.libreria.config.RestTemplateConfig;
+import com.example.libreria.support.StubBooksApiServer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.retry.Retry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Throughput de fetchBookById contra un servidor local: SimpleClientHttpRequestFactory
+ * (configuración anterior) contra el cliente Apache HttpClient con pool de conexiones.
+ *
+ * Ejecutar con: ./mvnw test -Pbenchmark -Dtest=ExternalBookHttpClientBenchmarkTest
+ */
+@Slf4j
+@Tag("benchmark")
+class ExternalBookHttpClientBenchmarkTest {
+    
+    private static final int THREADS = 16;
+    private static final int REQUESTS_PER_THREAD = 1_000;
+    private static final int BOOKS = 100;
+    
+    private static StubBooksApiServer server;
+    
+    @BeforeAll
+    static void startServer() throws IOException {
+        server = new StubBooksApiServer();
+        for (long id = 1; id <= BOOKS; id++) {
+            server.withBook(id, "Book " + id, "Author " + id, 10.0 + id);
+        }
+    }
+    
+    @AfterAll
+    static void stopServer() {
+        server.close();
+    }
+    
+    @Test
+    void benchmarkSimpleVsPooledClient() throws Exception {
+        SimpleClientHttpRequestFactory simpleFactory = new SimpleClientHttpRequestFactory();
+        simpleFactory.setConnectTimeout(5000);
+        simpleFactory.setReadTimeout(5000);
+        RestTemplate simple = new RestTemplate(simpleFactory);
+        
+        RestTemplateConfig config = new RestTemplateConfig();
+        ReflectionTestUtils.setField(config, "connectTimeout", Duration.ofSeconds(5));
+        ReflectionTestUtils.setField(config, "readTimeout", Duration.ofSeconds(5));
+        ReflectionTestUtils.setField(config, "maxConnections", 50);
+        ReflectionTestUtils.setField(config, "maxConnectionsPerRoute", THREADS);
+        ReflectionTestUtils.setField(config, "idleEviction", Duration.ofSeconds(30));
+        ReflectionTestUtils.setField(config, "keepAlive", Duration.ofSeconds(30));
+        RestTemplate pooled = config.restTemplate();
+        
+        // Calentamiento
+        run(simple);
+        run(pooled);
+        
+        double simpleThroughput = run(simple);
+        double pooledThroughput = run(pooled);
+        
+        log.info("SimpleClientHttpRequestFactory: {} req/s", String.format("%.0f", simpleThroughput));
+        log.info("HttpClient con pool:            {} req/s", String.format("%.0f", pooledThroughput));
+        
+        config.httpClient().close();
+    }
+    
+    private double run(RestTemplate restTemplate) throws InterruptedException {
+        ExternalBookService service = new ExternalBookService(restTemplate, null, new ObjectMapper(),
+                CircuitBreaker.ofDefaults("external-books-api"), Bulkhead.ofDefaults("external-books-api"),
+                Retry.ofDefaults("external-books-api"),
+                CatalogDiskCache.disabled());
+        ReflectionTestUtils.setField(service, "externalApiUrl", server.booksUrl());
+        
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int t = 0; t < THREADS; t++) {
+            int offset = t;
+            executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < REQUESTS_PER_THREAD; i++) {
+                    assertNotNull(service.fetchBookById((long) (offset + i) % BOOKS + 1));
+                }
+                return null;
+            });
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.MINUTES));
+        long elapsed = System.nanoTime() - begin;
+        return THREADS * REQUESTS_PER_THREAD * 1_000_000_000.0 / elapsed;
+    }
+}
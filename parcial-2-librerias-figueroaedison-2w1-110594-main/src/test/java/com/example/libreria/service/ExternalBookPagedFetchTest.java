@@ -0,0 +1,150 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.ExternalBookDTO;
+import com.example.libreria.support.StubBooksApiServer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.retry.Retry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Descarga del feed por páginas contra un servidor local.
+ */
+class ExternalBookPagedFetchTest {
+    
+    private StubBooksApiServer server;
+    
+    private ExternalBookService externalBookService;
+    
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new StubBooksApiServer();
+        externalBookService = new ExternalBookService(new RestTemplate(), null, new ObjectMapper(),
+                CircuitBreaker.ofDefaults("external-books-api"), Bulkhead.ofDefaults("external-books-api"),
+                Retry.ofDefaults("external-books-api"),
+                CatalogDiskCache.disabled());
+        ReflectionTestUtils.setField(externalBookService, "externalApiUrl", server.booksUrl());
+        ReflectionTestUtils.setField(externalBookService, "chunkSize", 500);
+        ReflectionTestUtils.setField(externalBookService, "pageSize", 4);
+    }
+    
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+    
+    @Test
+    void testFetchAllBooksInChunks_ReadsEveryPage() {
+        addBooks(10);
+        List<List<ExternalBookDTO>> chunks = new ArrayList<>();
+        
+        FeedFetchResult result = externalBookService.fetchAllBooksInChunks(chunks::add);
+        
+        assertTrue(result.isModified());
+        assertEquals(10, result.getTotal());
+        assertEquals(List.of(4, 4, 2), chunks.stream().map(List::size).toList());
+        assertEquals(10L, chunks.get(2).get(1).getId());
+        assertEquals(3, server.requestCount());
+    }
+    
+    @Test
+    void testFetchAllBooksInChunks_LastFullPageIsFollowedByEmptyPage() {
+        addBooks(8);
+        List<List<ExternalBookDTO>> chunks = new ArrayList<>();
+        
+        FeedFetchResult result = externalBookService.fetchAllBooksInChunks(chunks::add);
+        
+        assertEquals(8, result.getTotal());
+        assertEquals(2, chunks.size());
+        assertEquals(3, server.requestCount());
+    }
+    
+    @Test
+    void testFetchAllBooksInChunks_NextPageWaitsForConsumer() throws Exception {
+        addBooks(10);
+        CountDownLatch firstChunkReceived = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        
+        CompletableFuture<FeedFetchResult> fetch = CompletableFuture.supplyAsync(() ->
+                externalBookService.fetchAllBooksInChunks(chunk -> {
+                    firstChunkReceived.countDown();
+                    await(release);
+                }));
+        
+        assertTrue(firstChunkReceived.await(5, TimeUnit.SECONDS));
+        Thread.sleep(200);
+        assertEquals(1, server.requestCount());
+        
+        release.countDown();
+        assertEquals(10, fetch.get(5, TimeUnit.SECONDS).getTotal());
+        assertEquals(3, server.requestCount());
+    }
+    
+    @Test
+    void testFetchAllBooksInChunks_UpstreamIgnoringPagingIsReadOnce() {
+        addBooks(10);
+        server.withPagingIgnored(true);
+        List<List<ExternalBookDTO>> chunks = new ArrayList<>();
+        
+        FeedFetchResult result = externalBookService.fetchAllBooksInChunks(chunks::add);
+        
+        assertEquals(10, result.getTotal());
+        assertEquals(List.of(4, 4, 2), chunks.stream().map(List::size).toList());
+        assertEquals(1, server.requestCount());
+    }
+    
+    @Test
+    void testFetchAllBooksInChunks_RepeatedPageFails() {
+        addBooks(10);
+        server.withPagingIgnored(false);
+        List<List<ExternalBookDTO>> chunks = new ArrayList<>();
+        
+        RuntimeException error = assertThrows(RuntimeException.class,
+                () -> externalBookService.fetchAllBooksInChunks(chunks::add));
+        
+        assertTrue(error.getMessage().contains("repite la anterior"));
+        // La página repetida no llega al consumidor
+        assertEquals(1, chunks.size());
+        assertEquals(2, server.requestCount());
+    }
+    
+    @Test
+    void testFetchAllBooksInChunks_StopsAtMaxPages() {
+        addBooks(10);
+        ReflectionTestUtils.setField(externalBookService, "maxPages", 2);
+        
+        RuntimeException error = assertThrows(RuntimeException.class,
+                () -> externalBookService.fetchAllBooksInChunks(chunk -> { }));
+        
+        assertTrue(error.getMessage().contains("más de 2 páginas"));
+        assertEquals(2, server.requestCount());
+    }
+    
+    private void addBooks(int count) {
+        for (long id = 1; id <= count; id++) {
+            server.withBook(id, "Book " + id, "Author " + id, 10.0 + id);
+        }
+    }
+    
+    private void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.libreria.service;
+
+import com.example.libreria.config.ResilienceConfig;
+import com.example.libreria.config.RestTemplateConfig;
+import com.example.libreria.support.StubBooksApiServer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.core.IntervalFunction;
+import io.github.resilience4j.retry.Retry;
+import io.github.resilience4j.retry.RetryConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Cola de latencia y tasa de error de fetchBookById contra el servidor local con latencia inyectada:
+ * sin protección, con pedidos de cobertura (hedge) después del p95 y con reintentos con backoff y jitter.
+ *
+ * Ejecutar con: ./mvnw test -Pbenchmark -Dtest=ExternalBookRetryHedgeBenchmarkTest
+ */
+@Slf4j
+@Tag("benchmark")
+class ExternalBookRetryHedgeBenchmarkTest {
+    
+    private static final int THREADS = 16;
+    private static final int REQUESTS_PER_THREAD = 200;
+    private static final int BOOKS = 5_000;
+    
+    private static StubBooksApiServer server;
+    private static RestTemplateConfig config;
+    private static RestTemplate restTemplate;
+    
+    @BeforeAll
+    static void setUp() throws IOException {
+        server = new StubBooksApiServer().withSyntheticCatalog(BOOKS);
+        
+        config = new RestTemplateConfig();
+        ReflectionTestUtils.setField(config, "connectTimeout", Duration.ofSeconds(5));
+        ReflectionTestUtils.setField(config, "readTimeout", Duration.ofSeconds(5));
+        ReflectionTestUtils.setField(config, "maxConnections", 50);
+        ReflectionTestUtils.setField(config, "maxConnectionsPerRoute", 2 * THREADS);
+        ReflectionTestUtils.setField(config, "idleEviction", Duration.ofSeconds(30));
+        ReflectionTestUtils.setField(config, "keepAlive", Duration.ofSeconds(30));
+        restTemplate = config.restTemplate();
+    }
+    
+    @AfterAll
+    static void tearDown() throws IOException {
+        config.httpClient().close();
+        server.close();
+    }
+    
+    @Test
+    void benchmarkHedgingSlowTail() throws InterruptedException {
+        // 5 ms por respuesta y el 3% tarda 200 ms más
+        server.withLatency(Duration.ofMillis(5)).withSlowResponses(0.03, Duration.ofMillis(200)).withErrors(0, 500);
+        
+        log.info("Pedidos por id (16 hilos, 5 ms de latencia, 3% con +200 ms)");
+        run("Sin hedge", 1, false);
+        run("Hedge p95", 1, true);
+    }
+    
+    @Test
+    void benchmarkRetriesOnErrors() throws InterruptedException {
+        // 5 ms por respuesta y el 5% responde 500
+        server.withLatency(Duration.ofMillis(5)).withSlowResponses(0, Duration.ZERO).withErrors(0.05, 500);
+        
+        log.info("Pedidos por id (16 hilos, 5 ms de latencia, 5% de 500)");
+        run("Sin reintentos", 1, false);
+        run("3 intentos", 3, false);
+    }
+    
+    private void run(String name, int maxAttempts, boolean hedge) throws InterruptedException {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        ExternalBookService service = newService(maxAttempts, hedge, registry);
+        try {
+            // Calentamiento: conexiones del pool y ventana de latencias para el p95
+            measure(service);
+            registry.clear();
+            service.bindTo(registry);
+            
+            int before = server.requestCount();
+            Result result = measure(service);
+            int requests = server.requestCount() - before;
+            
+            double hedgesWon = registry.find("external.books.hedges").tag("winner", "hedge").counters().stream()
+                    .mapToDouble(Counter::count).sum();
+            long retries = registry.find("external.books.request.attempts").tag("attempt", "retry").timers().stream()
+                    .mapToLong(Timer::count).sum();
+            log.info("  {}: p50 {} ms, p99 {} ms, p99.9 {} ms, {} fallidos, {} llamadas HTTP ({} reintentos, {} hedges ganados)",
+                    name, result.p50(), result.p99(), result.p999(), result.failures(), requests, retries,
+                    String.format("%.0f", hedgesWon));
+        } finally {
+            service.shutdown();
+        }
+    }
+    
+    private ExternalBookService newService(int maxAttempts, boolean hedge, MeterRegistry registry) {
+        Retry retry = Retry.of(ResilienceConfig.EXTERNAL_BOOKS_API, RetryConfig.custom()
+                .maxAttempts(maxAttempts)
+                .intervalFunction(IntervalFunction.ofExponentialRandomBackoff(Duration.ofMillis(20), 2, 0.5))
+                .retryOnException(ResilienceConfig::isRetryable)
+                .build());
+        ExternalBookService service = new ExternalBookService(restTemplate, null, new ObjectMapper(),
+                CircuitBreaker.ofDefaults(ResilienceConfig.EXTERNAL_BOOKS_API),
+                Bulkhead.of(ResilienceConfig.EXTERNAL_BOOKS_API, BulkheadConfig.custom()
+                        .maxConcurrentCalls(2 * THREADS)
+                        .build()),
+                retry,
+                CatalogDiskCache.disabled());
+        ReflectionTestUtils.setField(service, "externalApiUrl", server.booksUrl());
+        ReflectionTestUtils.setField(service, "hedgeEnabled", hedge);
+        ReflectionTestUtils.setField(service, "hedgePercentile", 0.95);
+        ReflectionTestUtils.setField(service, "hedgeMinDelay", Duration.ofMillis(5));
+        ReflectionTestUtils.setField(service, "hedgeMinSamples", 20);
+        ReflectionTestUtils.setField(service, "hedgeMaxThreads", 2 * THREADS);
+        service.bindTo(registry);
+        return service;
+    }
+    
+    private Result measure(ExternalBookService service) throws InterruptedException {
+        long[] latencies = new long[THREADS * REQUESTS_PER_THREAD];
+        AtomicInteger failures = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int t = 0; t < THREADS; t++) {
+            int offset = t;
+            executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < REQUESTS_PER_THREAD; i++) {
+                    long id = (offset * 7919L + i * 31L) % BOOKS + 1;
+                    long begin = System.nanoTime();
+                    try {
+                        assertNotNull(service.fetchBookById(id));
+                    } catch (RuntimeException e) {
+                        failures.incrementAndGet();
+                    }
+                    latencies[offset * REQUESTS_PER_THREAD + i] = System.nanoTime() - begin;
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.MINUTES));
+        
+        Arrays.sort(latencies);
+        return new Result(
+                String.format("%.2f", latencies[latencies.length / 2] / 1_000_000.0),
+                String.format("%.2f", latencies[latencies.length * 99 / 100] / 1_000_000.0),
+                String.format("%.2f", latencies[latencies.length * 999 / 1000] / 1_000_000.0),
+                failures.get());
+    }
+    
+    private record Result(String p50, String p99, String p999, int failures) {
+    }
+}
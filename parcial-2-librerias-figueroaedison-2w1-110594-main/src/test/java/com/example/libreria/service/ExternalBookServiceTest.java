@@ -0,0 +1,456 @@
+package com.example.libreria.service;
+
+import com.example.libreria.config.ResilienceConfig;
+import com.example.libreria.dto.ExternalBookDTO;
+import com.example.libreria.repository.FeedValidatorRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.core.IntervalFunction;
+import io.github.resilience4j.retry.Retry;
+import io.github.resilience4j.retry.RetryConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ExternalBookServiceTest {
+    
+    @Mock
+    private RestTemplate restTemplate;
+    
+    @Mock
+    private FeedValidatorRepository feedValidatorRepository;
+    
+    private ExternalBookService externalBookService;
+    
+    private MeterRegistry meterRegistry;
+    
+    private CircuitBreaker circuitBreaker;
+    
+    private Bulkhead bulkhead;
+    
+    @BeforeEach
+    void setUp() {
+        circuitBreaker = CircuitBreaker.of(ResilienceConfig.EXTERNAL_BOOKS_API, CircuitBreakerConfig.custom()
+                .slidingWindowSize(2)
+                .minimumNumberOfCalls(2)
+                .ignoreExceptions(BulkheadFullException.class)
+                .recordException(ResilienceConfig::isExternalApiFailure)
+                .build());
+        bulkhead = Bulkhead.of(ResilienceConfig.EXTERNAL_BOOKS_API, BulkheadConfig.custom()
+                .maxConcurrentCalls(1)
+                .maxWaitDuration(Duration.ZERO)
+                .build());
+        createService(1);
+    }
+    
+    private void createService(int maxAttempts) {
+        Retry retry = Retry.of(ResilienceConfig.EXTERNAL_BOOKS_API, RetryConfig.custom()
+                .maxAttempts(maxAttempts)
+                .intervalFunction(IntervalFunction.ofExponentialRandomBackoff(Duration.ofMillis(1), 2, 0.5))
+                .retryOnException(ResilienceConfig::isRetryable)
+                .build());
+        externalBookService = new ExternalBookService(restTemplate, feedValidatorRepository, new ObjectMapper(),
+                circuitBreaker, bulkhead, retry, CatalogDiskCache.disabled());
+        meterRegistry = new SimpleMeterRegistry();
+        externalBookService.bindTo(meterRegistry);
+    }
+    
+    @Test
+    void testReadBooksInChunks_SplitsFeedInFixedSizeChunks() throws IOException {
+        List<List<ExternalBookDTO>> chunks = new ArrayList<>();
+        
+        try (InputStream feed = Files.newInputStream(Path.of("books-db.json"))) {
+            int total = externalBookService.readBooksInChunks(feed, 3, chunks::add);
+            
+            assertEquals(4, total);
+        }
+        
+        assertEquals(2, chunks.size());
+        assertEquals(3, chunks.get(0).size());
+        assertEquals(1, chunks.get(1).size());
+        
+        ExternalBookDTO first = chunks.get(0).get(0);
+        assertEquals(258027L, first.getId());
+        assertEquals("The Lord of the Rings", first.getTitle());
+        assertEquals(List.of("J. R. R. Tolkien"), first.getAuthorName());
+        assertEquals(120, first.getEditionCount());
+    }
+    
+    @Test
+    void testReadBooksInChunks_EmptyFeed() throws IOException {
+        List<List<ExternalBookDTO>> chunks = new ArrayList<>();
+        
+        int total = externalBookService.readBooksInChunks(stream("[]"), 3, chunks::add);
+        
+        assertEquals(0, total);
+        assertTrue(chunks.isEmpty());
+    }
+    
+    @Test
+    void testReadBooksInChunks_NotAnArray() {
+        assertThrows(IOException.class, () -> {
+            externalBookService.readBooksInChunks(stream("{\"id\": 1}"), 3, chunk -> { });
+        });
+    }
+    
+    @Test
+    void testReadBooksInChunks_ElementThatIsNotABookFailsTheFeed() {
+        List<List<ExternalBookDTO>> chunks = new ArrayList<>();
+        
+        assertThrows(IOException.class, () -> externalBookService.readBooksInChunks(
+                stream("[{\"id\": 1}, null, {\"id\": 2}]"), 3, chunks::add));
+        assertTrue(chunks.isEmpty());
+    }
+    
+    @Test
+    void testFetchBookById_ConcurrentCallersShareOneRequest() throws Exception {
+        ExternalBookDTO book = new ExternalBookDTO();
+        book.setId(258027L);
+        book.setTitle("The Lord of the Rings");
+        
+        CountDownLatch release = new CountDownLatch(1);
+        when(restTemplate.getForObject(anyString(), eq(ExternalBookDTO.class))).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return book;
+        });
+        
+        int callers = 10;
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<ExternalBookDTO>> results = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                results.add(executor.submit(() -> externalBookService.fetchBookById(258027L)));
+            }
+            awaitCoalesced(callers - 1);
+            release.countDown();
+            
+            for (Future<ExternalBookDTO> result : results) {
+                assertSame(book, result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        
+        verify(restTemplate, times(1)).getForObject(anyString(), eq(ExternalBookDTO.class));
+        assertEquals(1.0, meterRegistry.get("external.books.requests.executed").functionCounter().count());
+        assertEquals(callers - 1, meterRegistry.get("external.books.requests.coalesced").functionCounter().count());
+    }
+    
+    @Test
+    void testFetchBookById_WaitingCallersReceiveSameError() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(restTemplate.getForObject(anyString(), eq(ExternalBookDTO.class))).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            throw new ResourceAccessException("Connection refused");
+        });
+        
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<ExternalBookDTO> first = executor.submit(() -> externalBookService.fetchBookById(1L));
+            awaitExecuted(1);
+            Future<ExternalBookDTO> second = executor.submit(() -> externalBookService.fetchBookById(1L));
+            awaitCoalesced(1);
+            release.countDown();
+            
+            Exception firstError = assertThrows(Exception.class, () -> first.get(5, TimeUnit.SECONDS));
+            Exception secondError = assertThrows(Exception.class, () -> second.get(5, TimeUnit.SECONDS));
+            assertSame(firstError.getCause(), secondError.getCause());
+            assertTrue(firstError.getCause().getMessage().contains("Error al obtener el libro de la API externa"));
+        } finally {
+            executor.shutdownNow();
+        }
+        
+        verify(restTemplate, times(1)).getForObject(anyString(), eq(ExternalBookDTO.class));
+    }
+    
+    @Test
+    void testFetchBookById_SequentialCallsAreNotCoalesced() {
+        ExternalBookDTO book = new ExternalBookDTO();
+        book.setId(1L);
+        when(restTemplate.getForObject(anyString(), eq(ExternalBookDTO.class))).thenReturn(book);
+        
+        externalBookService.fetchBookById(1L);
+        externalBookService.fetchBookById(1L);
+        
+        verify(restTemplate, times(2)).getForObject(anyString(), eq(ExternalBookDTO.class));
+        assertEquals(0.0, meterRegistry.get("external.books.requests.coalesced").functionCounter().count());
+    }
+    
+    @Test
+    void testFetchBookById_CircuitOpensAfterFailures() {
+        when(restTemplate.getForObject(anyString(), eq(ExternalBookDTO.class)))
+                .thenThrow(new ResourceAccessException("Read timed out"));
+        
+        assertThrows(RuntimeException.class, () -> externalBookService.fetchBookById(1L));
+        assertThrows(RuntimeException.class, () -> externalBookService.fetchBookById(2L));
+        RuntimeException error = assertThrows(RuntimeException.class, () -> externalBookService.fetchBookById(3L));
+        
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        assertTrue(error.getMessage().contains("no está disponible"));
+        verify(restTemplate, times(2)).getForObject(anyString(), eq(ExternalBookDTO.class));
+        assertEquals(1.0, rejected("circuit_open"));
+    }
+    
+    @Test
+    void testFetchBookById_CircuitOpenServesLastKnownCopy() {
+        ExternalBookDTO book = new ExternalBookDTO();
+        book.setId(1L);
+        book.setTitle("The Hobbit");
+        when(restTemplate.getForObject(anyString(), eq(ExternalBookDTO.class))).thenReturn(book);
+        externalBookService.fetchBookById(1L);
+        
+        circuitBreaker.transitionToOpenState();
+        
+        assertSame(book, externalBookService.fetchBookById(1L));
+        verify(restTemplate, times(1)).getForObject(anyString(), eq(ExternalBookDTO.class));
+        assertEquals(1.0, rejected("circuit_open"));
+        assertEquals(1.0, meterRegistry.get("external.books.requests.stale").functionCounter().count());
+    }
+    
+    @Test
+    void testFetchBookById_NotFoundDoesNotOpenCircuit() {
+        when(restTemplate.getForObject(anyString(), eq(ExternalBookDTO.class)))
+                .thenThrow(HttpClientErrorException.create(HttpStatus.NOT_FOUND, "Not Found", HttpHeaders.EMPTY, null, null));
+        
+        for (long id = 1; id <= 3; id++) {
+            long missing = id;
+            assertThrows(RuntimeException.class, () -> externalBookService.fetchBookById(missing));
+        }
+        
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        assertEquals(0, circuitBreaker.getMetrics().getNumberOfFailedCalls());
+        verify(restTemplate, times(3)).getForObject(anyString(), eq(ExternalBookDTO.class));
+    }
+    
+    @Test
+    void testFetchBookById_BulkheadFullRejectsWithoutCountingFailure() {
+        assertTrue(bulkhead.tryAcquirePermission());
+        try {
+            RuntimeException error = assertThrows(RuntimeException.class, () -> externalBookService.fetchBookById(1L));
+            assertTrue(error.getMessage().contains("no está disponible"));
+        } finally {
+            bulkhead.onComplete();
+        }
+        
+        verifyNoInteractions(restTemplate);
+        assertEquals(1.0, rejected("bulkhead_full"));
+        assertEquals(0, circuitBreaker.getMetrics().getNumberOfFailedCalls());
+    }
+    
+    @Test
+    void testFetchBookById_BatchedCircuitOpenServesLastKnownCopy() {
+        ReflectionTestUtils.setField(externalBookService, "externalApiUrl", "http://127.0.0.1/books");
+        ReflectionTestUtils.setField(externalBookService, "batchEnabled", true);
+        ReflectionTestUtils.setField(externalBookService, "batchWindow", Duration.ofMillis(1));
+        ReflectionTestUtils.setField(externalBookService, "batchMaxSize", 50);
+        ReflectionTestUtils.setField(externalBookService, "batchMaxInFlight", 1);
+        ExternalBookDTO book = new ExternalBookDTO();
+        book.setId(1L);
+        when(restTemplate.getForObject(anyString(), eq(ExternalBookDTO[].class))).thenReturn(new ExternalBookDTO[] {book});
+        
+        try {
+            assertSame(book, externalBookService.fetchBookById(1L));
+            circuitBreaker.transitionToOpenState();
+            
+            // El guard está debajo del lote: el rechazo llega a cada pedido, que sirve su última copia
+            assertSame(book, externalBookService.fetchBookById(1L));
+        } finally {
+            externalBookService.shutdown();
+        }
+        
+        verify(restTemplate).getForObject("http://127.0.0.1/books?id=1", ExternalBookDTO[].class);
+        assertEquals(1.0, rejected("circuit_open"));
+        assertEquals(1.0, meterRegistry.get("external.books.requests.stale").functionCounter().count());
+    }
+    
+    @Test
+    void testFetchBookById_RetriesUpstreamFailures() {
+        createService(3);
+        ExternalBookDTO book = new ExternalBookDTO();
+        book.setId(1L);
+        when(restTemplate.getForObject(anyString(), eq(ExternalBookDTO.class)))
+                .thenThrow(new ResourceAccessException("Connection reset"))
+                .thenReturn(book);
+        
+        assertSame(book, externalBookService.fetchBookById(1L));
+        
+        verify(restTemplate, times(2)).getForObject(anyString(), eq(ExternalBookDTO.class));
+        assertEquals(1, attempts("first", "error"));
+        assertEquals(1, attempts("retry", "success"));
+    }
+    
+    @Test
+    void testFetchBookById_NotFoundIsNotRetried() {
+        createService(3);
+        when(restTemplate.getForObject(anyString(), eq(ExternalBookDTO.class)))
+                .thenThrow(HttpClientErrorException.create(HttpStatus.NOT_FOUND, "Not Found", HttpHeaders.EMPTY, null, null));
+        
+        assertThrows(RuntimeException.class, () -> externalBookService.fetchBookById(1L));
+        
+        verify(restTemplate, times(1)).getForObject(anyString(), eq(ExternalBookDTO.class));
+        assertEquals(1, attempts("first", "error"));
+    }
+    
+    @Test
+    void testFetchBookById_GivesUpAfterMaxAttempts() {
+        circuitBreaker = CircuitBreaker.ofDefaults(ResilienceConfig.EXTERNAL_BOOKS_API);
+        createService(3);
+        when(restTemplate.getForObject(anyString(), eq(ExternalBookDTO.class)))
+                .thenThrow(new ResourceAccessException("Read timed out"));
+        
+        RuntimeException error = assertThrows(RuntimeException.class, () -> externalBookService.fetchBookById(1L));
+        
+        assertTrue(error.getMessage().contains("Error al obtener el libro de la API externa"));
+        verify(restTemplate, times(3)).getForObject(anyString(), eq(ExternalBookDTO.class));
+        assertEquals(1, attempts("first", "error"));
+        assertEquals(2, attempts("retry", "error"));
+    }
+    
+    @Test
+    void testFetchBookById_HedgedRequestWinsAndCancelsSlowPrimary() throws Exception {
+        ReflectionTestUtils.setField(externalBookService, "hedgeEnabled", true);
+        ReflectionTestUtils.setField(externalBookService, "hedgeMinSamples", 1);
+        // Margen para que el primer intento arranque antes que la cobertura aunque haya un solo núcleo
+        ReflectionTestUtils.setField(externalBookService, "hedgeMinDelay", Duration.ofMillis(200));
+        bulkhead.changeConfig(BulkheadConfig.custom().maxConcurrentCalls(2).build());
+        ExternalBookDTO slow = new ExternalBookDTO();
+        slow.setId(1L);
+        ExternalBookDTO fast = new ExternalBookDTO();
+        fast.setId(1L);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        when(restTemplate.getForObject(anyString(), eq(ExternalBookDTO.class))).thenAnswer(invocation -> {
+            if (calls.incrementAndGet() == 2) {
+                release.await(5, TimeUnit.SECONDS);
+                return slow;
+            }
+            return fast;
+        });
+        
+        externalBookService.fetchBookById(1L);
+        try {
+            assertSame(fast, externalBookService.fetchBookById(1L));
+        } finally {
+            release.countDown();
+        }
+        
+        // El pedido que perdió termina después, cancelado: su resultado se descarta
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (attempts("first", "cancelled") == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(1, attempts("first", "cancelled"));
+        assertEquals(3, calls.get());
+        assertEquals(1.0, meterRegistry.get("external.books.hedges").tag("winner", "hedge").counter().count());
+        assertEquals(1, attempts("hedge", "success"));
+    }
+    
+    @Test
+    void testFetchBookById_NoHedgeWithoutFreeThreads() {
+        ReflectionTestUtils.setField(externalBookService, "hedgeEnabled", true);
+        ReflectionTestUtils.setField(externalBookService, "hedgeMinSamples", 1);
+        ReflectionTestUtils.setField(externalBookService, "hedgeMinDelay", Duration.ofMillis(20));
+        ReflectionTestUtils.setField(externalBookService, "hedgeMaxThreads", 1);
+        ExternalBookDTO slow = new ExternalBookDTO();
+        slow.setId(1L);
+        AtomicInteger calls = new AtomicInteger();
+        when(restTemplate.getForObject(anyString(), eq(ExternalBookDTO.class))).thenAnswer(invocation -> {
+            if (calls.incrementAndGet() == 2) {
+                Thread.sleep(100);
+            }
+            return slow;
+        });
+        
+        externalBookService.fetchBookById(1L);
+        // El único hilo de hedge está ocupado con el primer intento: no se lanza la cobertura
+        assertSame(slow, externalBookService.fetchBookById(1L));
+        
+        assertEquals(2, calls.get());
+        assertEquals(0, attempts("hedge", "success") + attempts("hedge", "error"));
+    }
+    
+    @Test
+    void testFetchBookById_NoHedgeWithoutEnoughSamples() {
+        ReflectionTestUtils.setField(externalBookService, "hedgeEnabled", true);
+        ExternalBookDTO book = new ExternalBookDTO();
+        book.setId(1L);
+        when(restTemplate.getForObject(anyString(), eq(ExternalBookDTO.class))).thenReturn(book);
+        
+        externalBookService.fetchBookById(1L);
+        
+        verify(restTemplate, times(1)).getForObject(anyString(), eq(ExternalBookDTO.class));
+        assertEquals(0.0, meterRegistry.get("external.books.hedges").counters().stream()
+                .mapToDouble(Counter::count).sum());
+    }
+    
+    private long attempts(String attempt, String outcome) {
+        return meterRegistry.get("external.books.request.attempts")
+                .tag("attempt", attempt)
+                .tag("outcome", outcome)
+                .timer()
+                .count();
+    }
+    
+    private double rejected(String reason) {
+        return meterRegistry.get("external.books.requests.rejected").tag("reason", reason).functionCounter().count();
+    }
+    
+    private void awaitExecuted(long expected) throws InterruptedException {
+        awaitCounter("external.books.requests.executed", expected);
+    }
+    
+    private void awaitCoalesced(long expected) throws InterruptedException {
+        awaitCounter("external.books.requests.coalesced", expected);
+    }
+    
+    private void awaitCounter(String name, long expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (meterRegistry.get(name).functionCounter().count() < expected) {
+            if (System.nanoTime() > deadline) {
+                fail("Se esperaban " + expected + " en " + name);
+            }
+            Thread.sleep(5);
+        }
+    }
+    
+    private InputStream stream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.libreria.service;
+
+import com.example.libreria.config.RestTemplateConfig;
+import com.example.libreria.repository.FeedValidatorRepository;
+import com.example.libreria.support.StubBooksApiServer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.retry.Retry;
+import io.github.resilience4j.retry.RetryConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Benchmarks reproducibles de ExternalBookService contra el servidor local con catálogo sintético:
+ * throughput del feed (respuesta única, por páginas y lenta), pedidos por id con latencia y errores
+ * inyectados, y comportamiento de los timeouts del cliente HTTP.
+ *
+ * Ejecutar con: ./mvnw test -Pbenchmark -Dtest=ExternalBookStubBenchmarkTest [-Dbenchmark.feed.size=200000]
+ */
+@Slf4j
+@Tag("benchmark")
+class ExternalBookStubBenchmarkTest {
+    
+    private static final int FEED_SIZE = Integer.getInteger("benchmark.feed.size", 200_000);
+    private static final Duration READ_TIMEOUT = Duration.ofMillis(500);
+    
+    private StubBooksApiServer server;
+    private RestTemplateConfig config;
+    private ExternalBookService externalBookService;
+    
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new StubBooksApiServer().withSyntheticCatalog(FEED_SIZE);
+        
+        config = new RestTemplateConfig();
+        ReflectionTestUtils.setField(config, "connectTimeout", Duration.ofSeconds(5));
+        ReflectionTestUtils.setField(config, "readTimeout", READ_TIMEOUT);
+        ReflectionTestUtils.setField(config, "maxConnections", 50);
+        ReflectionTestUtils.setField(config, "maxConnectionsPerRoute", 20);
+        ReflectionTestUtils.setField(config, "idleEviction", Duration.ofSeconds(30));
+        ReflectionTestUtils.setField(config, "keepAlive", Duration.ofSeconds(30));
+        RestTemplate restTemplate = config.restTemplate();
+        
+        externalBookService = new ExternalBookService(restTemplate, mock(FeedValidatorRepository.class), new ObjectMapper(),
+                CircuitBreaker.ofDefaults("external-books-api"), Bulkhead.ofDefaults("external-books-api"),
+                // Sin reintentos: se mide el efecto directo de la latencia y los errores inyectados
+                Retry.of("external-books-api", RetryConfig.custom().maxAttempts(1).build()),
+                CatalogDiskCache.disabled());
+        ReflectionTestUtils.setField(externalBookService, "externalApiUrl", server.booksUrl());
+        ReflectionTestUtils.setField(externalBookService, "chunkSize", 500);
+    }
+    
+    @AfterEach
+    void tearDown() throws IOException {
+        config.httpClient().close();
+        server.close();
+    }
+    
+    @Test
+    void benchmarkFeedThroughput() {
+        // Calentamiento
+        readFeed(0);
+        
+        log.info("Feed sintético de {} libros", FEED_SIZE);
+        log.info("  Respuesta única:        {}", readFeed(0));
+        log.info("  Páginas de 5000:        {}", readFeed(5_000));
+        
+        server.withSlowDrip(64 * 1024, Duration.ofMillis(2));
+        log.info("  Respuesta lenta (64 KB cada 2 ms): {}", readFeed(0));
+    }
+    
+    @Test
+    void benchmarkLookupsWithLatencyAndErrors() throws InterruptedException {
+        int threads = 16;
+        int requestsPerThread = 200;
+        server.withLatency(Duration.ofMillis(5)).withErrors(0.05, 500);
+        
+        AtomicInteger failures = new AtomicInteger();
+        long[] latencies = new long[threads * requestsPerThread];
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int t = 0; t < threads; t++) {
+            int offset = t;
+            executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < requestsPerThread; i++) {
+                    long id = (offset * 7919L + i * 31L) % FEED_SIZE + 1;
+                    long begin = System.nanoTime();
+                    try {
+                        assertNotNull(externalBookService.fetchBookById(id));
+                    } catch (RuntimeException e) {
+                        failures.incrementAndGet();
+                    }
+                    latencies[offset * requestsPerThread + i] = System.nanoTime() - begin;
+                }
+                return null;
+            });
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.MINUTES));
+        long elapsed = System.nanoTime() - begin;
+        
+        Arrays.sort(latencies);
+        log.info("Pedidos por id (16 hilos, 5 ms de latencia, 5% de 500): {} req/s, p50 {} ms, p99 {} ms, "
+                        + "{} fallidos ({} errores inyectados)",
+                String.format("%.0f", latencies.length * 1_000_000_000.0 / elapsed),
+                String.format("%.2f", latencies[latencies.length / 2] / 1_000_000.0),
+                String.format("%.2f", latencies[latencies.length * 99 / 100] / 1_000_000.0),
+                failures.get(), server.errorCount());
+    }
+    
+    @Test
+    void benchmarkTimeouts() {
+        // Una respuesta que no llega: el timeout de lectura la corta
+        server.withLatency(Duration.ofSeconds(2));
+        long begin = System.nanoTime();
+        assertThrows(RuntimeException.class, () -> externalBookService.fetchBookById(1L));
+        long stalledMillis = (System.nanoTime() - begin) / 1_000_000;
+        
+        // Una respuesta que llega de a poco: cada lectura trae datos antes del timeout,
+        // así que el pedido completo puede durar mucho más que el timeout de lectura
+        server.withLatency(Duration.ZERO).withSlowDrip(16, Duration.ofMillis(200));
+        begin = System.nanoTime();
+        assertNotNull(externalBookService.fetchBookById(1L));
+        long drippedMillis = (System.nanoTime() - begin) / 1_000_000;
+        
+        log.info("Timeout de lectura {} ms", READ_TIMEOUT.toMillis());
+        log.info("  Respuesta demorada 2 s: falla a los {} ms", stalledMillis);
+        log.info("  Respuesta de a 16 bytes cada 200 ms: completa a los {} ms", drippedMillis);
+        assertTrue(drippedMillis > READ_TIMEOUT.toMillis());
+    }
+    
+    private String readFeed(int pageSize) {
+        ReflectionTestUtils.setField(externalBookService, "pageSize", pageSize);
+        AtomicLong books = new AtomicLong();
+        long begin = System.nanoTime();
+        FeedFetchResult result = externalBookService.fetchAllBooksInChunks(chunk -> books.addAndGet(chunk.size()));
+        long millis = Math.max(1, (System.nanoTime() - begin) / 1_000_000);
+        assertEquals(FEED_SIZE, result.getTotal());
+        assertEquals(FEED_SIZE, books.get());
+        return String.format("%d ms, %d libros/s", millis, FEED_SIZE * 1000L / millis);
+    }
+}
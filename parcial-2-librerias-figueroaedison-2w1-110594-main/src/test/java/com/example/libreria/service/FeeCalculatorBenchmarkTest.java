@@ -0,0 +1,105 @@
+package com.example.libreria.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.function.IntToLongFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tarifa base y multa de muchas reservas con la cuenta en BigDecimal y con la cuenta en centavos:
+ * tiempo y memoria asignada por operación (contador de bytes asignados del hilo).
+ *
+ * Ejecutar con: ./mvnw test -Pbenchmark -Dtest=FeeCalculatorBenchmarkTest [-Dbenchmark.fees.operations=20000000]
+ */
+@Slf4j
+@Tag("benchmark")
+class FeeCalculatorBenchmarkTest {
+    
+    private static final int OPERATIONS = Integer.getInteger("benchmark.fees.operations", 20_000_000);
+    private static final int PRICES = 4_096;
+    private static final int ROUNDS = 5;
+    
+    private final FeeCalculator feeCalculator = new FeeCalculator(new BigDecimal("0.15"));
+    
+    @Test
+    void benchmarkFeeCalculation() {
+        // Precios como los del catálogo: 2 decimales, hasta 200
+        Random random = new Random(42);
+        BigDecimal[] prices = new BigDecimal[PRICES];
+        int[] days = new int[PRICES];
+        for (int i = 0; i < PRICES; i++) {
+            prices[i] = BigDecimal.valueOf(100 + random.nextInt(20_000), 2);
+            days[i] = 1 + random.nextInt(30);
+        }
+        
+        IntToLongFunction bigDecimal = i -> {
+            int index = i & (PRICES - 1);
+            return feeCalculator.exactBaseFee(prices[index], days[index]).hashCode()
+                    + feeCalculator.exactLateFee(prices[index], days[index]).hashCode();
+        };
+        IntToLongFunction cents = i -> {
+            int index = i & (PRICES - 1);
+            return feeCalculator.baseFee(prices[index], days[index]).hashCode()
+                    + feeCalculator.lateFee(prices[index], days[index]).hashCode();
+        };
+        
+        // Calentamiento: que el JIT compile las dos cuentas antes de medir
+        measure(bigDecimal, OPERATIONS / 10);
+        measure(cents, OPERATIONS / 10);
+        
+        long[] bestBigDecimal = {Long.MAX_VALUE, 0, 0};
+        long[] bestCents = {Long.MAX_VALUE, 0, 0};
+        for (int round = 0; round < ROUNDS; round++) {
+            keepBest(bestBigDecimal, measure(bigDecimal, OPERATIONS));
+            keepBest(bestCents, measure(cents, OPERATIONS));
+        }
+        
+        // Mismos importes (valor y escala) con las dos cuentas
+        assertEquals(bestBigDecimal[2], bestCents[2]);
+        
+        log.info("{} operaciones (tarifa base + multa)", OPERATIONS);
+        log.info("BigDecimal: {} ns/op, {} bytes/op, {} Mops/s", nanosPerOp(bestBigDecimal),
+                bytesPerOp(bestBigDecimal), opsPerMicro(bestBigDecimal));
+        log.info("Centavos:   {} ns/op, {} bytes/op, {} Mops/s", nanosPerOp(bestCents),
+                bytesPerOp(bestCents), opsPerMicro(bestCents));
+    }
+    
+    /**
+     * @return tiempo en ns, bytes asignados y suma de los hash de los importes (para que el JIT no descarte la cuenta)
+     */
+    private long[] measure(IntToLongFunction operation, int operations) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        long checksum = 0;
+        for (int i = 0; i < operations; i++) {
+            checksum += operation.applyAsLong(i);
+        }
+        long elapsed = System.nanoTime() - start;
+        return new long[]{elapsed, threads.getCurrentThreadAllocatedBytes() - allocatedBefore, checksum};
+    }
+    
+    private void keepBest(long[] best, long[] result) {
+        if (result[0] < best[0]) {
+            System.arraycopy(result, 0, best, 0, result.length);
+        }
+    }
+    
+    private String nanosPerOp(long[] result) {
+        return String.format("%.1f", (double) result[0] / OPERATIONS);
+    }
+    
+    private String bytesPerOp(long[] result) {
+        return String.format("%.1f", (double) result[1] / OPERATIONS);
+    }
+    
+    private String opsPerMicro(long[] result) {
+        return String.format("%.1f", OPERATIONS * 1_000.0 / result[0]);
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.libreria.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * La cuenta en centavos tiene que dar exactamente lo mismo (valor y escala) que la cuenta con BigDecimal.
+ * Además de los casos puntuales, se comparan muchos precios y días generados al azar con semilla fija:
+ * escalas de -2 a 5, montos chicos y enormes, negativos y valores que desbordan un long.
+ */
+class FeeCalculatorTest {
+    
+    private static final int SAMPLES = 200_000;
+    
+    private final FeeCalculator feeCalculator = new FeeCalculator(new BigDecimal("0.15"));
+    
+    @Test
+    void testBaseFee_Examples() {
+        assertEquals(new BigDecimal("111.93"), feeCalculator.baseFee(new BigDecimal("15.99"), 7));
+        assertEquals(new BigDecimal("0.00"), feeCalculator.baseFee(new BigDecimal("15.99"), 0));
+        // Más de 2 decimales: se redondea el producto, no el precio
+        assertEquals(new BigDecimal("35.00"), feeCalculator.baseFee(new BigDecimal("4.9995"), 7));
+    }
+    
+    @Test
+    void testLateFee_Examples() {
+        assertEquals(new BigDecimal("7.20"), feeCalculator.lateFee(new BigDecimal("15.99"), 3));
+        // Mitades exactas: HALF_UP se aleja del cero
+        assertEquals(new BigDecimal("0.02"), feeCalculator.lateFee(new BigDecimal("0.10"), 1));
+        assertEquals(new BigDecimal("-0.02"), feeCalculator.lateFee(new BigDecimal("-0.10"), 1));
+        assertEquals(new BigDecimal("0.01"), feeCalculator.lateFee(new BigDecimal("0.09"), 1));
+    }
+    
+    @Test
+    void testBaseFee_MatchesBigDecimalForRandomInputs() {
+        Random random = new Random(20250301L);
+        for (int i = 0; i < SAMPLES; i++) {
+            BigDecimal price = randomAmount(random);
+            int rentalDays = random.nextInt(8) == 0 ? random.nextInt() : random.nextInt(400);
+            
+            assertIdentical(feeCalculator.exactBaseFee(price, rentalDays), feeCalculator.baseFee(price, rentalDays),
+                    price + " × " + rentalDays);
+        }
+    }
+    
+    @Test
+    void testLateFee_MatchesBigDecimalForRandomInputs() {
+        Random random = new Random(20250302L);
+        for (int i = 0; i < SAMPLES; i++) {
+            BigDecimal price = randomAmount(random);
+            long daysLate = random.nextInt(8) == 0 ? random.nextLong() : 1 + random.nextInt(400);
+            
+            assertIdentical(feeCalculator.exactLateFee(price, daysLate), feeCalculator.lateFee(price, daysLate),
+                    price + " × 0.15 × " + daysLate);
+        }
+    }
+    
+    @Test
+    void testLateFee_OtherRates() {
+        Random random = new Random(20250303L);
+        for (String rate : new String[]{"0.1", "0.125", "1", "2E+1", "0.0333333"}) {
+            FeeCalculator calculator = new FeeCalculator(new BigDecimal(rate));
+            for (int i = 0; i < SAMPLES / 10; i++) {
+                BigDecimal price = randomAmount(random);
+                long daysLate = 1 + random.nextInt(400);
+                
+                assertIdentical(calculator.exactLateFee(price, daysLate), calculator.lateFee(price, daysLate),
+                        price + " × " + rate + " × " + daysLate);
+            }
+        }
+    }
+    
+    @Test
+    void testToCents_MatchesBigDecimal() {
+        assertEquals(1599, FeeCalculator.toCents(new BigDecimal("15.99")));
+        assertEquals(-1, FeeCalculator.toCents(new BigDecimal("-0.01")));
+        assertEquals(999_999_999_999_999L, FeeCalculator.toCents(new BigDecimal("9999999999999.99")));
+        assertThrows(ArithmeticException.class, () -> FeeCalculator.toCents(new BigDecimal("0.001")));
+        
+        Random random = new Random(20250305L);
+        for (int i = 0; i < SAMPLES; i++) {
+            BigDecimal amount = randomAmount(random);
+            if (amount.stripTrailingZeros().scale() > 2) {
+                continue;
+            }
+            long expected;
+            try {
+                expected = amount.movePointRight(2).longValueExact();
+            } catch (ArithmeticException e) {
+                continue;
+            }
+            assertEquals(expected, FeeCalculator.toCents(amount), amount.toString());
+        }
+    }
+    
+    @Test
+    void testDivideHalfUp_MatchesRoundingMode() {
+        Random random = new Random(20250304L);
+        long[] divisors = {1, 2, 10, 100, 10_000, 1_000_000_007L, Long.MAX_VALUE / 3};
+        for (int i = 0; i < SAMPLES; i++) {
+            long dividend = random.nextBoolean() ? random.nextLong() : random.nextInt(2_001) - 1_000;
+            long divisor = divisors[random.nextInt(divisors.length)];
+            
+            long expected = BigDecimal.valueOf(dividend)
+                    .divide(BigDecimal.valueOf(divisor), 0, RoundingMode.HALF_UP)
+                    .longValueExact();
+            assertEquals(expected, FeeCalculator.divideHalfUp(dividend, divisor), dividend + " / " + divisor);
+        }
+    }
+    
+    /**
+     * Importes de distintos tamaños y escalas: la mayoría con 2 decimales, como los precios del catálogo
+     */
+    private BigDecimal randomAmount(Random random) {
+        int scale = random.nextInt(4) == 0 ? random.nextInt(8) - 2 : 2;
+        long unscaled = switch (random.nextInt(4)) {
+            case 0 -> random.nextInt(100_000);
+            case 1 -> random.nextInt(100_000_000);
+            case 2 -> random.nextLong() % 1_000_000_000_000L;
+            default -> random.nextLong();
+        };
+        return BigDecimal.valueOf(unscaled, scale);
+    }
+    
+    private void assertIdentical(BigDecimal expected, BigDecimal actual, String operation) {
+        // equals de BigDecimal compara valor y escala
+        assertEquals(expected, actual, operation);
+        assertEquals(2, actual.scale(), operation);
+    }
+}
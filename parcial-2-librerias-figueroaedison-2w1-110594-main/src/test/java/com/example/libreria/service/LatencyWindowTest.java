@@ -0,0 +1,54 @@
+package com.example.libreria.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyWindowTest {
+    
+    private final LatencyWindow window = new LatencyWindow(100, 10);
+    
+    @Test
+    void testPercentile_EmptyWindow() {
+        assertNull(window.percentile(0.95));
+    }
+    
+    @Test
+    void testPercentile_RecomputedEveryNSamples() {
+        record(100, 10);
+        assertEquals(Duration.ofMillis(10), window.percentile(0.95));
+        
+        // Con menos de 10 muestras nuevas se devuelve el percentil ya calculado
+        record(9, 1_000);
+        assertEquals(Duration.ofMillis(10), window.percentile(0.95));
+        
+        record(1, 1_000);
+        assertEquals(Duration.ofMillis(1_000), window.percentile(0.95));
+    }
+    
+    @Test
+    void testPercentile_FollowsEarlySamples() {
+        record(1, 5);
+        assertEquals(Duration.ofMillis(5), window.percentile(0.95));
+        
+        record(1, 7);
+        assertEquals(Duration.ofMillis(7), window.percentile(0.95));
+    }
+    
+    @Test
+    void testPercentile_OtherPercentileIsNotTakenFromCache() {
+        record(50, 10);
+        record(50, 20);
+        
+        assertEquals(Duration.ofMillis(20), window.percentile(0.95));
+        assertEquals(Duration.ofMillis(10), window.percentile(0.5));
+    }
+    
+    private void record(int samples, long millis) {
+        for (int i = 0; i < samples; i++) {
+            window.record(Duration.ofMillis(millis).toNanos());
+        }
+    }
+}
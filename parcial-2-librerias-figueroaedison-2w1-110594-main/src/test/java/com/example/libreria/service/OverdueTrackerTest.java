@@ -0,0 +1,139 @@
+package com.example.libreria.service;
+
+import com.example.libreria.repository.ReservationRepository;
+import com.example.libreria.repository.ReservationRepository.ReservationDueView;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OverdueTrackerTest {
+    
+    private static final LocalDate TODAY = LocalDate.of(2025, 3, 10);
+    
+    @Mock
+    private ReservationRepository reservationRepository;
+    
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+    
+    private OverdueTracker overdueTracker;
+    
+    @BeforeEach
+    void setUp() {
+        overdueTracker = new OverdueTracker(reservationRepository, eventPublisher);
+    }
+    
+    @Test
+    void testOverdueIds_LoadsActiveReservationsOnceAndOrdersByDueDate() {
+        when(reservationRepository.findActiveDueDates()).thenReturn(List.of(
+                due(1L, TODAY.plusDays(2)), due(2L, TODAY.minusDays(1)), due(3L, TODAY.minusDays(5)),
+                due(4L, TODAY)));
+        
+        assertEquals(List.of(3L, 2L), overdueTracker.overdueIds(TODAY));
+        assertEquals(List.of(3L, 2L), overdueTracker.overdueIds(TODAY));
+        verify(reservationRepository, times(1)).findActiveDueDates();
+    }
+    
+    @Test
+    void testOverdueIds_DayRollsOver() {
+        when(reservationRepository.findActiveDueDates()).thenReturn(List.of(
+                due(1L, TODAY.plusDays(2)), due(2L, TODAY.minusDays(1)), due(4L, TODAY)));
+        
+        assertEquals(List.of(2L), overdueTracker.overdueIds(TODAY));
+        assertEquals(List.of(2L, 4L), overdueTracker.overdueIds(TODAY.plusDays(1)));
+        assertEquals(List.of(2L, 4L, 1L), overdueTracker.overdueIds(TODAY.plusDays(3)));
+        
+        // Si el reloj vuelve atrás, las que todavía no vencieron salen de la lista
+        assertEquals(List.of(2L), overdueTracker.overdueIds(TODAY));
+    }
+    
+    @Test
+    void testOverdueIds_SameDayOrderedById() {
+        when(reservationRepository.findActiveDueDates()).thenReturn(List.of(
+                due(30L, TODAY.minusDays(1)), due(4L, TODAY.minusDays(2)), due(10L, TODAY.minusDays(1)),
+                due(2L, TODAY.minusDays(1))));
+        
+        assertEquals(List.of(4L, 2L, 10L, 30L), overdueTracker.overdueIds(TODAY));
+    }
+    
+    @Test
+    void testOverdueIds_PublishesEventWhenReservationsBecomeOverdue() {
+        when(reservationRepository.findActiveDueDates()).thenReturn(List.of(
+                due(1L, TODAY.plusDays(2)), due(2L, TODAY.minusDays(1)), due(4L, TODAY)));
+        
+        overdueTracker.overdueIds(TODAY);
+        verify(eventPublisher).publishEvent(new ReservationsOverdueEvent(TODAY, List.of(2L)));
+        
+        // Mismo día, o un día sin vencimientos nuevos: no hay evento
+        overdueTracker.overdueIds(TODAY);
+        overdueTracker.overdueIds(TODAY.plusDays(1));
+        overdueTracker.overdueIds(TODAY.plusDays(1));
+        verify(eventPublisher).publishEvent(new ReservationsOverdueEvent(TODAY.plusDays(1), List.of(4L)));
+        verifyNoMoreInteractions(eventPublisher);
+    }
+    
+    @Test
+    void testTrackAndUntrack() {
+        when(reservationRepository.findActiveDueDates()).thenReturn(List.of(due(1L, TODAY.minusDays(3))));
+        assertEquals(List.of(1L), overdueTracker.overdueIds(TODAY));
+        
+        overdueTracker.track(2L, TODAY.minusDays(1));
+        overdueTracker.track(3L, TODAY.plusDays(1));
+        assertEquals(List.of(1L, 2L), overdueTracker.overdueIds(TODAY));
+        
+        overdueTracker.untrack(1L, TODAY.minusDays(3));
+        overdueTracker.untrack(3L, TODAY.plusDays(1));
+        assertEquals(List.of(2L), overdueTracker.overdueIds(TODAY.plusDays(5)));
+    }
+    
+    @Test
+    void testTrack_BeforeLoadIsLeftToTheReload() {
+        overdueTracker.track(1L, TODAY.minusDays(1));
+        when(reservationRepository.findActiveDueDates()).thenReturn(List.of(due(1L, TODAY.minusDays(1))));
+        
+        assertEquals(List.of(1L), overdueTracker.overdueIds(TODAY));
+    }
+    
+    @Test
+    void testTrack_WaitsForCommit() {
+        when(reservationRepository.findActiveDueDates()).thenReturn(List.of());
+        assertEquals(List.of(), overdueTracker.overdueIds(TODAY));
+        
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            overdueTracker.track(1L, TODAY.minusDays(1));
+            assertEquals(List.of(), overdueTracker.overdueIds(TODAY));
+            
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertEquals(List.of(1L), overdueTracker.overdueIds(TODAY));
+    }
+    
+    private ReservationDueView due(Long id, LocalDate expectedReturnDate) {
+        return new ReservationDueView() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+            
+            @Override
+            public LocalDate getExpectedReturnDate() {
+                return expectedReturnDate;
+            }
+        };
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.libreria.service;
+
+import com.example.libreria.config.CacheConfig;
+import com.example.libreria.model.BookCacheListener;
+import com.example.libreria.model.Reservation;
+import com.example.libreria.repository.ReservationRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongUnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Consultas de ReservationRepository sobre un historial generado de reservas, sin los índices
+ * compuestos de Reservation (solo la clave primaria y los índices que H2 crea para las claves foráneas)
+ * y con ellos.
+ *
+ * Ejecutar con: ./mvnw test -Pbenchmark -Dtest=ReservationIndexBenchmarkTest [-Dbenchmark.reservations=1000000]
+ */
+@Slf4j
+@Tag("benchmark")
+// Sin show-sql: escribir cada consulta en la consola pesaría más que las consultas con índice
+@DataJpaTest(properties = "spring.jpa.show-sql=false")
+@Import({CacheConfig.class, BookCacheListener.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ReservationIndexBenchmarkTest {
+    
+    private static final int RESERVATIONS = Integer.getInteger("benchmark.reservations", 1_000_000);
+    private static final int USERS = 10_000;
+    private static final int BOOKS = 20_000;
+    private static final int INSERT_CHUNK = 50_000;
+    
+    // Una reserva cada 30 segundos desde el 1 de enero de 2024: una de cada 25 sigue activa
+    // y una de cada 101 quedó marcada como vencida
+    private static final LocalDate FIRST_DAY = LocalDate.of(2024, 1, 1);
+    private static final LocalDate TODAY = FIRST_DAY.plusDays(30);
+    
+    @Autowired
+    private ReservationRepository reservationRepository;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Test
+    void benchmarkReservationIndexes() {
+        long start = System.nanoTime();
+        populate();
+        log.info("{} reservas generadas en {} ms", RESERVATIONS, (System.nanoTime() - start) / 1_000_000);
+        
+        Map<String, String> indexes = reservationIndexes();
+        assertFalse(indexes.isEmpty());
+        
+        indexes.keySet().forEach(name -> jdbcTemplate.execute("DROP INDEX " + name));
+        jdbcTemplate.execute("ANALYZE");
+        Map<String, long[]> before = measureQueries();
+        
+        indexes.forEach((name, columns) ->
+                jdbcTemplate.execute("CREATE INDEX " + name + " ON reservations (" + columns + ")"));
+        jdbcTemplate.execute("ANALYZE");
+        Map<String, long[]> after = measureQueries();
+        
+        log.info("{} reservas, índices {}", RESERVATIONS, indexes.keySet());
+        before.forEach((query, withoutIndexes) -> {
+            long[] withIndexes = after.get(query);
+            // Mismas filas en las dos pasadas: los índices no cambian el resultado
+            assertEquals(withoutIndexes[1], withIndexes[1], query);
+            log.info("{}: sin índices {} µs por consulta, con índices {} µs ({}x)", query, withoutIndexes[0],
+                    withIndexes[0], String.format("%.1f", (double) withoutIndexes[0] / Math.max(1, withIndexes[0])));
+        });
+    }
+    
+    private void populate() {
+        jdbcTemplate.update("DELETE FROM reservations");
+        jdbcTemplate.update("DELETE FROM users");
+        jdbcTemplate.update("DELETE FROM book_authors");
+        jdbcTemplate.update("DELETE FROM books");
+        jdbcTemplate.update("INSERT INTO users (id, name, email, created_at) "
+                + "SELECT X, 'User ' || X, 'user' || X || '@example.com', TIMESTAMP '2024-01-01 00:00:00' "
+                + "FROM SYSTEM_RANGE(1, ?)", USERS);
+        jdbcTemplate.update("INSERT INTO books (external_id, title, price, stock_quantity, available_quantity, retired) "
+                + "SELECT X, 'Book ' || X, 10.00, 100, 100, FALSE FROM SYSTEM_RANGE(1, ?)", BOOKS);
+        // En bloques: un único INSERT de un millón de filas es una sola transacción que H2 mantiene en memoria
+        for (int first = 1; first <= RESERVATIONS; first += INSERT_CHUNK) {
+            jdbcTemplate.update("INSERT INTO reservations (user_id, book_external_id, rental_days, start_date, "
+                    + "expected_return_date, daily_rate, base_fee, total_fee, late_fee, status, created_at) "
+                    + "SELECT MOD(X, ?) + 1, MOD(X * 7, ?) + 1, 7, DATEADD(DAY, X / 2880, CAST(? AS DATE)), "
+                    + "DATEADD(DAY, 7 + X / 2880, CAST(? AS DATE)), "
+                    + "10.00, 70.00, 70.00, 0, "
+                    + "CASE WHEN MOD(X, 25) = 0 THEN 'ACTIVE' WHEN MOD(X, 101) = 0 THEN 'OVERDUE' ELSE 'RETURNED' END, "
+                    + "DATEADD(SECOND, X * 30, CAST(? AS TIMESTAMP)) FROM SYSTEM_RANGE(?, ?)",
+                    USERS, BOOKS, FIRST_DAY, FIRST_DAY, FIRST_DAY, first,
+                    Math.min(first + INSERT_CHUNK - 1, RESERVATIONS));
+        }
+    }
+    
+    /**
+     * Índices compuestos de reservations (los declarados en Reservation) con sus columnas en orden
+     */
+    private Map<String, String> reservationIndexes() {
+        Map<String, String> indexes = new LinkedHashMap<>();
+        jdbcTemplate.query("SELECT INDEX_NAME, COLUMN_NAME FROM INFORMATION_SCHEMA.INDEX_COLUMNS "
+                        + "WHERE TABLE_NAME = 'RESERVATIONS' AND INDEX_NAME LIKE 'IDX_RESERVATIONS_%' "
+                        + "ORDER BY INDEX_NAME, ORDINAL_POSITION",
+                row -> {
+                    indexes.merge(row.getString(1), row.getString(2), (columns, column) -> columns + ", " + column);
+                });
+        return indexes;
+    }
+    
+    /**
+     * Microsegundos promedio por consulta y total de filas devueltas, por consulta
+     */
+    private Map<String, long[]> measureQueries() {
+        Map<String, long[]> results = new LinkedHashMap<>();
+        results.put("findByStatus(OVERDUE)", measure(5,
+                i -> reservationRepository.findByStatus(Reservation.ReservationStatus.OVERDUE).size()));
+        results.put("findActiveDueDates", measure(5,
+                i -> reservationRepository.findActiveDueDates().size()));
+        results.put("findOverdueReservations", measure(5,
+                i -> reservationRepository.findOverdueReservations(TODAY.plusDays(i)).size()));
+        results.put("countActiveReservationsByBookExternalId", measure(200,
+                i -> reservationRepository.countActiveReservationsByBookExternalId(i * 37 % BOOKS + 1)));
+        results.put("findActiveReservationsByBookExternalId", measure(200,
+                i -> reservationRepository.findActiveReservationsByBookExternalId(i * 37 % BOOKS + 1).size()));
+        results.put("findByUserId", measure(200,
+                i -> reservationRepository.findByUserId(i * 13 % USERS + 1).size()));
+        return results;
+    }
+    
+    private long[] measure(int calls, LongUnaryOperator query) {
+        // Calentamiento
+        for (int i = 0; i < 3; i++) {
+            query.applyAsLong(i);
+        }
+        
+        long rows = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < calls; i++) {
+            rows += query.applyAsLong(i);
+        }
+        long micros = (System.nanoTime() - start) / 1_000 / calls;
+        return new long[]{micros, rows};
+    }
+}
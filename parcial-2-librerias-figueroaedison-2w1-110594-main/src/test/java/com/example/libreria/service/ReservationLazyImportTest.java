@@ -0,0 +1,214 @@
+package com.example.libreria.service;
+
+import com.example.libreria.config.CacheConfig;
+import com.example.libreria.config.ResilienceConfig;
+import com.example.libreria.dto.ReservationRequestDTO;
+import com.example.libreria.dto.ReservationResponseDTO;
+import com.example.libreria.exception.ResourceNotFoundException;
+import com.example.libreria.model.Book;
+import com.example.libreria.model.BookCacheListener;
+import com.example.libreria.model.Reservation;
+import com.example.libreria.model.User;
+import com.example.libreria.repository.BookBulkRepository;
+import com.example.libreria.repository.BookRepository;
+import com.example.libreria.repository.BookStagingRepository;
+import com.example.libreria.repository.ReservationPageRepository;
+import com.example.libreria.repository.ReservationRepository;
+import com.example.libreria.repository.UserRepository;
+import com.example.libreria.support.StubBooksApiServer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Reservas de libros que todavía no se sincronizaron: el libro se importa de la API externa a demanda.
+ * Sin transacción del test, porque la importación confirma en su propia transacción.
+ * La llamada a la API se hace antes de abrir la transacción de la reserva, sin retener una conexión.
+ */
+@DataJpaTest(properties = {"external.api.books.url=http://127.0.0.1/books",
+        "libreria.reservations.import-missing-books=true", "libreria.disk-cache.enabled=false"})
+@Import({ReservationFacade.class, ReservationService.class, ReservationPageRepository.class, BookService.class, BookBulkRepository.class,
+        BookStagingRepository.class, ExternalBookService.class, CacheConfig.class, BookCacheListener.class,
+        ResilienceConfig.class, CatalogDiskCache.class, OverdueTracker.class,
+        ReservationLazyImportTest.HttpConfig.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ReservationLazyImportTest {
+    
+    private static final long BOOK_ID = 42L;
+    
+    private StubBooksApiServer server;
+    private User user;
+    
+    @Autowired
+    private ReservationFacade reservationFacade;
+    
+    @MockitoSpyBean
+    private BookService bookService;
+    
+    @Autowired
+    private ExternalBookService externalBookService;
+    
+    @Autowired
+    private BookRepository bookRepository;
+    
+    @Autowired
+    private ReservationRepository reservationRepository;
+    
+    @Autowired
+    private UserRepository userRepository;
+    
+    @TestConfiguration
+    static class HttpConfig {
+        
+        @Bean
+        RestTemplate restTemplate() {
+            return new RestTemplate();
+        }
+        
+        @Bean
+        ObjectMapper objectMapper() {
+            return new ObjectMapper();
+        }
+    }
+    
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new StubBooksApiServer().withSyntheticCatalog(100);
+        ReflectionTestUtils.setField(externalBookService, "externalApiUrl", server.booksUrl());
+        
+        user = new User();
+        user.setName("Juan Pérez");
+        user.setEmail("juan@example.com");
+        user = userRepository.save(user);
+    }
+    
+    @AfterEach
+    void tearDown() {
+        setImportMissingBooks(true);
+        server.close();
+        reservationRepository.deleteAll();
+        bookRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+    
+    @Test
+    void testCreateReservation_ImportsBookMissingFromCatalog() {
+        ReservationResponseDTO reservation = reservationFacade.createReservation(request(BOOK_ID));
+        
+        assertEquals(BOOK_ID, reservation.getBookExternalId());
+        assertEquals("Synthetic Book #" + BOOK_ID, reservation.getBookTitle());
+        assertEquals(1, server.requestCount());
+        assertEquals(1, bookRepository.count());
+        assertEquals(BookService.DEFAULT_INITIAL_STOCK - 1,
+                bookRepository.findByExternalId(BOOK_ID).orElseThrow().getAvailableQuantity());
+        
+        // El libro ya está en el catálogo: la segunda reserva no consulta la API
+        reservationFacade.createReservation(request(BOOK_ID));
+        assertEquals(1, server.requestCount());
+    }
+    
+    @Test
+    void testCreateReservation_ImportsOutsideTheReservationTransaction() {
+        List<Boolean> transactionActive = new ArrayList<>();
+        doAnswer(invocation -> {
+            transactionActive.add(TransactionSynchronizationManager.isActualTransactionActive());
+            return invocation.callRealMethod();
+        }).when(bookService).importBookFromExternalApi(BOOK_ID);
+        
+        reservationFacade.createReservation(request(BOOK_ID));
+        
+        assertEquals(List.of(false), transactionActive);
+    }
+    
+    @Test
+    void testCreateReservation_ConcurrentMissesShareOneImport() throws Exception {
+        server.withLatency(Duration.ofMillis(200));
+        int threads = 6;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<ReservationResponseDTO>> reservations = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            reservations.add(executor.submit(() -> {
+                start.await();
+                return reservationFacade.createReservation(request(BOOK_ID));
+            }));
+        }
+        start.countDown();
+        for (Future<ReservationResponseDTO> reservation : reservations) {
+            assertEquals(BOOK_ID, reservation.get(10, TimeUnit.SECONDS).getBookExternalId());
+        }
+        executor.shutdown();
+        
+        assertEquals(1, server.requestCount());
+        assertEquals(BookService.DEFAULT_INITIAL_STOCK - threads,
+                bookRepository.findByExternalId(BOOK_ID).orElseThrow().getAvailableQuantity());
+    }
+    
+    @Test
+    void testCreateReservation_BookUnknownToExternalApi() {
+        assertThrows(ResourceNotFoundException.class, () -> reservationFacade.createReservation(request(999L)));
+        
+        assertEquals(1, server.requestCount());
+        assertEquals(0, bookRepository.count());
+        assertEquals(0, reservationRepository.count());
+    }
+    
+    @Test
+    void testCreateReservation_RetiredBookIsRejectedWithoutImporting() {
+        ReservationResponseDTO active = reservationFacade.createReservation(request(BOOK_ID));
+        
+        // El libro dejó de venir en la API: la reserva existente sigue, pero no se aceptan nuevas
+        Book book = bookRepository.findByExternalId(BOOK_ID).orElseThrow();
+        book.setRetired(true);
+        bookRepository.save(book);
+        
+        assertThrows(ResourceNotFoundException.class, () -> reservationFacade.createReservation(request(BOOK_ID)));
+        
+        assertEquals(1, server.requestCount());
+        assertEquals(List.of(active.getId()), reservationRepository.findAll().stream().map(Reservation::getId).toList());
+    }
+    
+    @Test
+    void testCreateReservation_ImportDisabled() {
+        setImportMissingBooks(false);
+        
+        assertThrows(ResourceNotFoundException.class, () -> reservationFacade.createReservation(request(BOOK_ID)));
+        
+        assertEquals(0, server.requestCount());
+        assertEquals(0, bookRepository.count());
+    }
+    
+    private void setImportMissingBooks(boolean enabled) {
+        ReflectionTestUtils.setField(reservationFacade, "importMissingBooks", enabled);
+    }
+    
+    private ReservationRequestDTO request(Long bookExternalId) {
+        return new ReservationRequestDTO(user.getId(), bookExternalId, 7, LocalDate.of(2025, 1, 1));
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.libreria.service;
+
+import com.example.libreria.config.CacheConfig;
+import com.example.libreria.dto.ReservationFilterDTO;
+import com.example.libreria.dto.ReservationPageResponseDTO;
+import com.example.libreria.dto.ReservationResponseDTO;
+import com.example.libreria.model.Book;
+import com.example.libreria.model.BookCacheListener;
+import com.example.libreria.model.Reservation;
+import com.example.libreria.model.User;
+import com.example.libreria.repository.BookBulkRepository;
+import com.example.libreria.repository.BookStagingRepository;
+import com.example.libreria.repository.ReservationPageRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Paginación por cursor de reservas contra una base H2 real: orden (createdAt, id) con empates,
+ * filtros combinados y cursores inválidos.
+ */
+@DataJpaTest
+@Import({ReservationService.class, ReservationPageRepository.class, BookService.class, BookBulkRepository.class,
+        BookStagingRepository.class, CacheConfig.class, BookCacheListener.class, OverdueTracker.class})
+class ReservationPageTest {
+    
+    // De a tres reservas con el mismo createdAt, cada seis horas desde el 1 de marzo
+    private static final LocalDateTime FIRST_CREATED_AT = LocalDateTime.of(2025, 3, 1, 10, 0);
+    private static final int RESERVATIONS = 30;
+    
+    @Autowired
+    private ReservationService reservationService;
+    
+    @Autowired
+    private TestEntityManager entityManager;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @MockitoBean
+    private ExternalBookService externalBookService;
+    
+    private final List<User> users = new ArrayList<>();
+    private final List<Reservation> reservations = new ArrayList<>();
+    
+    @BeforeEach
+    void setUp() {
+        for (int i = 0; i < 2; i++) {
+            User user = new User();
+            user.setName("User " + i);
+            user.setEmail("user" + i + "@example.com");
+            users.add(entityManager.persist(user));
+        }
+        List<Book> books = new ArrayList<>();
+        for (long id = 1; id <= 3; id++) {
+            Book book = new Book();
+            book.setExternalId(id);
+            book.setTitle("Book " + id);
+            book.setPrice(new BigDecimal("10.00"));
+            book.setStockQuantity(100);
+            book.setAvailableQuantity(100);
+            books.add(entityManager.persist(book));
+        }
+        
+        for (int i = 0; i < RESERVATIONS; i++) {
+            Reservation reservation = new Reservation();
+            reservation.setUser(users.get(i % 2));
+            reservation.setBook(books.get(i % 3));
+            reservation.setRentalDays(7);
+            reservation.setStartDate(LocalDate.of(2025, 3, 1));
+            reservation.setExpectedReturnDate(LocalDate.of(2025, 3, 8));
+            reservation.setDailyRate(new BigDecimal("10.00"));
+            reservation.setBaseFee(new BigDecimal("70.00"));
+            reservation.setTotalFee(new BigDecimal("70.00"));
+            reservation.setStatus(i % 4 == 0 ? Reservation.ReservationStatus.RETURNED
+                    : Reservation.ReservationStatus.ACTIVE);
+            reservations.add(entityManager.persist(reservation));
+        }
+        entityManager.flush();
+        
+        // createdAt lo asigna @PrePersist; se reemplaza para tener fechas conocidas y empates
+        for (int i = 0; i < RESERVATIONS; i++) {
+            LocalDateTime createdAt = FIRST_CREATED_AT.plusHours(6L * (i / 3));
+            jdbcTemplate.update("UPDATE reservations SET created_at = ? WHERE id = ?",
+                    createdAt, reservations.get(i).getId());
+            reservations.get(i).setCreatedAt(createdAt);
+        }
+        entityManager.clear();
+    }
+    
+    @Test
+    void testPages_WalkWholeHistoryNewestFirstWithoutGapsOrDuplicates() {
+        assertEquals(expectedIds(reservation -> true), walk(new ReservationFilterDTO(), 7));
+    }
+    
+    @Test
+    void testPages_FirstPageAndCursor() {
+        ReservationPageResponseDTO first = reservationService.getReservationsPage(new ReservationFilterDTO(), null, 4);
+        
+        assertEquals(4, first.getSize());
+        assertTrue(first.getHasNext());
+        assertNotNull(first.getNextCursor());
+        assertEquals(expectedIds(reservation -> true).subList(0, 4),
+                first.getContent().stream().map(ReservationResponseDTO::getId).toList());
+                
+        ReservationPageResponseDTO last = reservationService.getReservationsPage(
+                new ReservationFilterDTO(), null, RESERVATIONS);
+        assertFalse(last.getHasNext());
+        assertNull(last.getNextCursor());
+    }
+    
+    @Test
+    void testPages_FilterByStatus() {
+        ReservationFilterDTO filter = new ReservationFilterDTO();
+        filter.setStatus(Reservation.ReservationStatus.ACTIVE);
+        
+        assertEquals(expectedIds(reservation -> reservation.getStatus() == Reservation.ReservationStatus.ACTIVE),
+                walk(filter, 4));
+    }
+    
+    @Test
+    void testPages_FilterByBookAndUser() {
+        ReservationFilterDTO filter = new ReservationFilterDTO();
+        filter.setBookExternalId(2L);
+        filter.setUserId(users.get(1).getId());
+        
+        assertEquals(expectedIds(reservation -> reservation.getBook().getExternalId() == 2L
+                && reservation.getUser() == users.get(1)), walk(filter, 2));
+    }
+    
+    @Test
+    void testPages_FilterByDateRangeAndStatus() {
+        ReservationFilterDTO filter = new ReservationFilterDTO();
+        filter.setStatus(Reservation.ReservationStatus.RETURNED);
+        filter.setFrom(LocalDate.of(2025, 3, 2));
+        filter.setTo(LocalDate.of(2025, 3, 3));
+        
+        List<Long> expected = expectedIds(reservation ->
+                reservation.getStatus() == Reservation.ReservationStatus.RETURNED
+                && !reservation.getCreatedAt().isBefore(LocalDate.of(2025, 3, 2).atStartOfDay())
+                && reservation.getCreatedAt().isBefore(LocalDate.of(2025, 3, 4).atStartOfDay()));
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, walk(filter, 1));
+    }
+    
+    @Test
+    void testPages_InvalidCursor() {
+        assertThrows(IllegalArgumentException.class,
+                () -> reservationService.getReservationsPage(new ReservationFilterDTO(), "not-a-cursor", 10));
+    }
+    
+    private List<Long> walk(ReservationFilterDTO filter, int size) {
+        List<Long> ids = new ArrayList<>();
+        String cursor = null;
+        ReservationPageResponseDTO page;
+        do {
+            page = reservationService.getReservationsPage(filter, cursor, size);
+            assertTrue(page.getSize() <= size);
+            page.getContent().forEach(reservation -> ids.add(reservation.getId()));
+            cursor = page.getNextCursor();
+        } while (page.getHasNext());
+        return ids;
+    }
+    
+    private List<Long> expectedIds(Predicate<Reservation> filter) {
+        return reservations.stream()
+                .filter(filter)
+                .sorted(Comparator.comparing(Reservation::getCreatedAt).thenComparing(Reservation::getId).reversed())
+                .map(Reservation::getId)
+                .toList();
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.libreria.service;
+
+import com.example.libreria.config.CacheConfig;
+import com.example.libreria.dto.ReservationFilterDTO;
+import com.example.libreria.dto.ReservationPageResponseDTO;
+import com.example.libreria.dto.ReservationResponseDTO;
+import com.example.libreria.model.Book;
+import com.example.libreria.model.BookCacheListener;
+import com.example.libreria.model.Reservation;
+import com.example.libreria.model.User;
+import com.example.libreria.repository.BookBulkRepository;
+import com.example.libreria.repository.BookStagingRepository;
+import com.example.libreria.repository.ReservationPageRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifica que listar reservas no dispare consultas extra por reserva para cargar
+ * el usuario y el libro (relaciones LAZY que se leen al convertir a DTO).
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Import({ReservationService.class, ReservationPageRepository.class, BookService.class, BookBulkRepository.class,
+        BookStagingRepository.class, CacheConfig.class, BookCacheListener.class, OverdueTracker.class})
+class ReservationServiceQueryCountTest {
+    
+    // 20 reservas de 4 usuarios, cada una de un libro distinto: cada 4 una devuelta, las impares vencidas
+    private static final int RESERVATIONS = 20;
+    private static final int USERS = 4;
+    
+    @Autowired
+    private ReservationService reservationService;
+    
+    @Autowired
+    private TestEntityManager entityManager;
+    
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    
+    @Autowired
+    private OverdueTracker overdueTracker;
+    
+    @MockitoBean
+    private ExternalBookService externalBookService;
+    
+    private Statistics statistics;
+    private final List<User> users = new ArrayList<>();
+    private final List<Reservation> reservations = new ArrayList<>();
+    
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        persistReservations();
+    }
+    
+    @Test
+    void testGetAllReservations_SingleStatement() {
+        assertEquals(1, countStatements(reservationService::getAllReservations, RESERVATIONS));
+    }
+    
+    @Test
+    void testGetReservationsByUserId_SingleStatement() {
+        Long userId = users.get(1).getId();
+        
+        assertEquals(1, countStatements(() -> reservationService.getReservationsByUserId(userId),
+                RESERVATIONS / USERS));
+    }
+    
+    @Test
+    void testGetActiveReservations_SingleStatement() {
+        assertEquals(1, countStatements(reservationService::getActiveReservations, 15));
+    }
+    
+    @Test
+    void testGetOverdueReservations_SingleStatement() {
+        // Las reservas se insertaron por fuera del servicio: el índice de vencimientos se arma antes de medir
+        overdueTracker.reload();
+        
+        assertEquals(1, countStatements(reservationService::getOverdueReservations, 10));
+    }
+    
+    @Test
+    void testGetReservationsPage_SingleStatementPerPage() {
+        ReservationFilterDTO filter = new ReservationFilterDTO();
+        filter.setStatus(Reservation.ReservationStatus.ACTIVE);
+        entityManager.clear();
+        statistics.clear();
+        
+        ReservationPageResponseDTO first = reservationService.getReservationsPage(filter, null, 10);
+        reservationService.getReservationsPage(filter, first.getNextCursor(), 10);
+        
+        assertEquals(10, first.getSize());
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+    
+    @Test
+    void testGetReservationById_SingleStatement() {
+        Long reservationId = reservations.get(0).getId();
+        entityManager.clear();
+        statistics.clear();
+        
+        ReservationResponseDTO reservation = reservationService.getReservationById(reservationId);
+        
+        assertEquals("Book 1", reservation.getBookTitle());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+    
+    private long countStatements(Supplier<List<ReservationResponseDTO>> listing, int expectedReservations) {
+        entityManager.clear();
+        statistics.clear();
+        
+        List<ReservationResponseDTO> result = listing.get();
+        
+        assertEquals(expectedReservations, result.size());
+        result.forEach(reservation -> {
+            assertNotNull(reservation.getUserName());
+            assertEquals("Book " + reservation.getBookExternalId(), reservation.getBookTitle());
+        });
+        return statistics.getPrepareStatementCount();
+    }
+    
+    private void persistReservations() {
+        for (int i = 0; i < USERS; i++) {
+            User user = new User();
+            user.setName("User " + i);
+            user.setEmail("user" + i + "@example.com");
+            users.add(entityManager.persist(user));
+        }
+        
+        LocalDate today = LocalDate.now();
+        for (long id = 1; id <= RESERVATIONS; id++) {
+            Book book = new Book();
+            book.setExternalId(id);
+            book.setTitle("Book " + id);
+            book.setPrice(new BigDecimal("10.00"));
+            book.setStockQuantity(10);
+            book.setAvailableQuantity(9);
+            entityManager.persist(book);
+            
+            LocalDate startDate = id % 2 == 1 ? today.minusDays(30) : today;
+            Reservation reservation = new Reservation();
+            reservation.setUser(users.get((int) (id % USERS)));
+            reservation.setBook(book);
+            reservation.setRentalDays(7);
+            reservation.setStartDate(startDate);
+            reservation.setExpectedReturnDate(startDate.plusDays(7));
+            reservation.setDailyRate(book.getPrice());
+            reservation.setBaseFee(new BigDecimal("70.00"));
+            reservation.setTotalFee(new BigDecimal("70.00"));
+            reservation.setStatus(id % 4 == 0 ? Reservation.ReservationStatus.RETURNED
+                    : Reservation.ReservationStatus.ACTIVE);
+            reservations.add(entityManager.persist(reservation));
+        }
+        entityManager.flush();
+    }
+}
@@ -6,10 +6,12 @@ import com.example.libreria.dto.ReturnBookRequestDTO;
 import com.example.libreria.exception.InsufficientStockException;
 import com.example.libreria.exception.ResourceNotFoundException;
 import com.example.libreria.model.Book;
+import com.example.libreria.model.BookCacheListener;
 import com.example.libreria.model.Reservation;
 import com.example.libreria.model.Reservation.ReservationStatus;
 import com.example.libreria.model.User;
 import com.example.libreria.repository.BookRepository;
+import com.example.libreria.repository.ReservationPageRepository;
 import com.example.libreria.repository.ReservationRepository;
 import com.example.libreria.repository.UserRepository;
 import org.junit.jupiter.api.BeforeEach;
@@ -22,7 +24,9 @@ import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.LongStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -46,12 +50,21 @@ class ReservationServiceTest {
     @Mock
     private ReservationRepository reservationRepository;
 
+    @Mock
+    private ReservationPageRepository reservationPageRepository;
+
     @Mock
     private UserRepository userRepository;
 
     @Mock
     private BookRepository bookRepository;
 
+    @Mock
+    private OverdueTracker overdueTracker;
+
+    @Mock
+    private BookCacheListener bookCacheListener;
+
     @InjectMocks
     private ReservationService reservationService;
 
@@ -74,11 +87,9 @@ class ReservationServiceTest {
 
         // Crear libro de prueba
         testBook = new Book();
-        testBook.setId(1L);
         testBook.setExternalId(258027L);
         testBook.setTitle("The Lord of the Rings");
-        testBook.setAuthor("J. R. R. Tolkien");
-        testBook.setDescription("Epic fantasy novel");
+        testBook.setAuthorName(List.of("J. R. R. Tolkien"));
         testBook.setPrice(new BigDecimal("15.99"));
         testBook.setStockQuantity(10);
         testBook.setAvailableQuantity(10);
@@ -91,6 +102,7 @@ class ReservationServiceTest {
         testReservation.setStartDate(LocalDate.now());
         testReservation.setRentalDays(7);
         testReservation.setExpectedReturnDate(LocalDate.now().plusDays(7));
+        testReservation.setDailyRate(new BigDecimal("15.99"));
         testReservation.setBaseFee(new BigDecimal("111.93")); // 15.99 * 7
         testReservation.setTotalFee(new BigDecimal("111.93"));
         testReservation.setLateFee(BigDecimal.ZERO);
@@ -112,7 +124,8 @@ class ReservationServiceTest {
         requestDTO.setRentalDays(7);
 
         when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
-        when(bookRepository.findByExternalId(258027L)).thenReturn(Optional.of(testBook));
+        when(bookRepository.findById(258027L)).thenReturn(Optional.of(testBook));
+        when(bookRepository.decrementAvailableQuantity(258027L)).thenReturn(1);
         when(reservationRepository.save(any(Reservation.class))).thenReturn(testReservation);
 
         // Act (Actuar)
@@ -123,12 +136,14 @@ class ReservationServiceTest {
         assertEquals(1L, result.getId());
         assertEquals("Juan Pérez", result.getUserName());
         assertEquals("The Lord of the Rings", result.getBookTitle());
-        assertEquals(new BigDecimal("111.93"), result.getBaseFee());
+        assertEquals(new BigDecimal("111.93"), result.getTotalFee());
         assertEquals(ReservationStatus.ACTIVE, result.getStatus());
 
-        // Verificar que se redujo el stock disponible
-        verify(bookRepository).save(testBook);
-        assertEquals(9, testBook.getAvailableQuantity());
+        // Verificar que se redujo el stock disponible con el update condicional
+        verify(bookRepository).decrementAvailableQuantity(258027L);
+        verify(bookRepository, never()).save(any(Book.class));
+        // El update masivo no pasa por el listener de la entidad: la caché se invalida aparte
+        verify(bookCacheListener).evict(258027L);
     }
 
     /**
@@ -170,7 +185,7 @@ class ReservationServiceTest {
         requestDTO.setRentalDays(7);
 
         when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
-        when(bookRepository.findByExternalId(999999L)).thenReturn(Optional.empty());
+        when(bookRepository.findById(999999L)).thenReturn(Optional.empty());
 
         // Act & Assert
         assertThrows(ResourceNotFoundException.class, () -> {
@@ -197,13 +212,64 @@ class ReservationServiceTest {
         requestDTO.setRentalDays(7);
 
         when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
-        when(bookRepository.findByExternalId(258027L)).thenReturn(Optional.of(testBook));
+        when(bookRepository.findById(258027L)).thenReturn(Optional.of(testBook));
+
+        // Act & Assert
+        assertThrows(InsufficientStockException.class, () -> {
+            reservationService.createReservation(requestDTO);
+        });
+
+        verify(reservationRepository, never()).save(any(Reservation.class));
+    }
+
+    /**
+     * Test 4b: Otra reserva concurrente se llevó la última unidad
+     * El update condicional no modifica filas y debe lanzar InsufficientStockException
+     */
+    @Test
+    @DisplayName("Debe lanzar excepción cuando el update condicional de stock no modifica filas")
+    void testCreateReservation_StockTakenConcurrently() {
+        // Arrange
+        ReservationRequestDTO requestDTO = new ReservationRequestDTO();
+        requestDTO.setUserId(1L);
+        requestDTO.setBookExternalId(258027L);
+        requestDTO.setStartDate(LocalDate.now());
+        requestDTO.setRentalDays(7);
+
+        when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
+        when(bookRepository.findById(258027L)).thenReturn(Optional.of(testBook));
+        when(bookRepository.decrementAvailableQuantity(258027L)).thenReturn(0);
+        when(bookRepository.findRetiredByExternalId(258027L)).thenReturn(Optional.of(false));
 
         // Act & Assert
         assertThrows(InsufficientStockException.class, () -> {
             reservationService.createReservation(requestDTO);
         });
 
+        verify(reservationRepository, never()).save(any(Reservation.class));
+        verify(bookCacheListener, never()).evict(any());
+    }
+
+    @Test
+    @DisplayName("Debe rechazar la reserva si el libro se retiró antes del update condicional de stock")
+    void testCreateReservation_BookRetiredConcurrently() {
+        // Arrange
+        ReservationRequestDTO requestDTO = new ReservationRequestDTO();
+        requestDTO.setUserId(1L);
+        requestDTO.setBookExternalId(258027L);
+        requestDTO.setStartDate(LocalDate.now());
+        requestDTO.setRentalDays(7);
+
+        when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
+        when(bookRepository.findById(258027L)).thenReturn(Optional.of(testBook));
+        when(bookRepository.decrementAvailableQuantity(258027L)).thenReturn(0);
+        when(bookRepository.findRetiredByExternalId(258027L)).thenReturn(Optional.of(true));
+
+        // Act & Assert
+        assertThrows(ResourceNotFoundException.class, () -> {
+            reservationService.createReservation(requestDTO);
+        });
+
         verify(reservationRepository, never()).save(any(Reservation.class));
     }
 
@@ -219,6 +285,7 @@ class ReservationServiceTest {
         returnRequest.setReturnDate(LocalDate.now().plusDays(7)); // A tiempo
 
         when(reservationRepository.findById(1L)).thenReturn(Optional.of(testReservation));
+        when(bookRepository.incrementAvailableQuantity(258027L)).thenReturn(1);
         when(reservationRepository.save(any(Reservation.class))).thenReturn(testReservation);
 
         // Act
@@ -231,8 +298,8 @@ class ReservationServiceTest {
         assertEquals(new BigDecimal("111.93"), testReservation.getTotalFee());
 
         // Verificar que se incrementó el stock disponible
-        verify(bookRepository).save(testBook);
-        assertEquals(11, testBook.getAvailableQuantity());
+        verify(bookRepository).incrementAvailableQuantity(258027L);
+        verify(bookCacheListener).evict(258027L);
     }
 
     /**
@@ -263,7 +330,26 @@ class ReservationServiceTest {
         BigDecimal expectedTotal = new BigDecimal("119.13");
         assertEquals(expectedTotal, testReservation.getTotalFee());
 
-        verify(bookRepository).save(testBook);
+        verify(bookRepository).incrementAvailableQuantity(258027L);
+    }
+
+    @Test
+    @DisplayName("Debe calcular la multa con la tarifa de la reserva aunque cambie el precio del libro")
+    void testReturnBook_LateFeeUsesReservationDailyRate() {
+        // Arrange
+        testBook.setPrice(new BigDecimal("40.00")); // El precio subió después de reservar
+        ReturnBookRequestDTO returnRequest = new ReturnBookRequestDTO();
+        returnRequest.setReturnDate(LocalDate.now().plusDays(10)); // 3 días tarde
+
+        when(reservationRepository.findById(1L)).thenReturn(Optional.of(testReservation));
+        when(reservationRepository.save(any(Reservation.class))).thenReturn(testReservation);
+
+        // Act
+        reservationService.returnBook(1L, returnRequest);
+
+        // Assert: 15.99 * 0.15 * 3 días = 7.20, no 40.00 * 0.15 * 3 = 18.00
+        assertEquals(new BigDecimal("7.20"), testReservation.getLateFee());
+        assertEquals(new BigDecimal("119.13"), testReservation.getTotalFee());
     }
 
     /**
@@ -305,7 +391,8 @@ class ReservationServiceTest {
         requestDTO.setRentalDays(10);
 
         when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
-        when(bookRepository.findByExternalId(258027L)).thenReturn(Optional.of(testBook));
+        when(bookRepository.findById(258027L)).thenReturn(Optional.of(testBook));
+        when(bookRepository.decrementAvailableQuantity(258027L)).thenReturn(1);
         when(reservationRepository.save(any(Reservation.class))).thenAnswer(invocation -> {
             Reservation saved = invocation.getArgument(0);
             saved.setId(1L);
@@ -318,7 +405,7 @@ class ReservationServiceTest {
         // Assert
         // Tarifa esperada: 15.99 * 10 = 159.90
         BigDecimal expectedFee = new BigDecimal("159.90");
-        assertEquals(expectedFee, result.getBaseFee());
+        assertEquals(expectedFee, result.getTotalFee());
     }
 
     /**
@@ -355,5 +442,38 @@ class ReservationServiceTest {
             reservationService.getReservationById(999L);
         });
     }
+
+    @Test
+    @DisplayName("Debe leer las reservas vencidas en lotes de tamaño fijo")
+    void testGetOverdueReservations_ReadsInBatches() {
+        // Arrange
+        int overdueCount = ReservationService.OVERDUE_BATCH_SIZE + 1;
+        List<Long> overdueIds = LongStream.rangeClosed(1, overdueCount).boxed().toList();
+        when(overdueTracker.overdueIds(any(LocalDate.class))).thenReturn(overdueIds);
+        when(reservationRepository.findActiveByIdIn(anyCollection())).thenAnswer(invocation -> {
+            List<Long> ids = invocation.getArgument(0);
+            return ids.stream().map(this::reservation).toList();
+        });
+
+        // Act
+        List<ReservationResponseDTO> result = reservationService.getOverdueReservations();
+
+        // Assert
+        verify(reservationRepository).findActiveByIdIn(overdueIds.subList(0, ReservationService.OVERDUE_BATCH_SIZE));
+        verify(reservationRepository).findActiveByIdIn(List.of((long) overdueCount));
+        assertEquals(overdueIds, result.stream().map(ReservationResponseDTO::getId).toList());
+    }
+
+    private Reservation reservation(Long id) {
+        Reservation reservation = new Reservation();
+        reservation.setId(id);
+        reservation.setUser(testUser);
+        reservation.setBook(testBook);
+        reservation.setStartDate(testReservation.getStartDate());
+        reservation.setRentalDays(testReservation.getRentalDays());
+        reservation.setExpectedReturnDate(testReservation.getExpectedReturnDate());
+        reservation.setStatus(ReservationStatus.ACTIVE);
+        return reservation;
+    }
 }
 
@@ -0,0 +1,78 @@
+package com.example.libreria.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+    
+    private final SingleFlight<Long, String> singleFlight = new SingleFlight<>();
+    
+    @Test
+    void testExecute_WaitersShareTheResult() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> leader = CompletableFuture.supplyAsync(() -> singleFlight.execute(1L, () -> {
+            started.countDown();
+            await(release);
+            return "book";
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> waiter = startWaiter(1L, () -> "second call");
+        release.countDown();
+        
+        assertEquals("book", leader.get(5, TimeUnit.SECONDS));
+        assertEquals("book", waiter.get(5, TimeUnit.SECONDS));
+        assertEquals(1, singleFlight.executionCount());
+    }
+    
+    @Test
+    void testExecute_ErrorReleasesWaiters() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> leader = CompletableFuture.supplyAsync(() -> singleFlight.execute(1L, () -> {
+            started.countDown();
+            await(release);
+            throw new StackOverflowError("simulado");
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> waiter = startWaiter(1L, () -> "second call");
+        release.countDown();
+        
+        // Sin completar el futuro compartido, el que espera quedaría bloqueado para siempre
+        ExecutionException leaderError = assertThrows(ExecutionException.class, () -> leader.get(5, TimeUnit.SECONDS));
+        ExecutionException waiterError = assertThrows(ExecutionException.class, () -> waiter.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(StackOverflowError.class, leaderError.getCause());
+        assertInstanceOf(StackOverflowError.class, waiterError.getCause());
+        
+        // La clave se libera: el siguiente pedido vuelve a ejecutar la llamada
+        assertEquals("retry", singleFlight.execute(1L, () -> "retry"));
+    }
+    
+    // Arranca un segundo pedido de la misma clave, con el primero ya en curso, y espera a que quede agrupado
+    private CompletableFuture<String> startWaiter(Long key, Supplier<String> call)
+            throws InterruptedException {
+        CompletableFuture<String> waiter = CompletableFuture.supplyAsync(() -> singleFlight.execute(key, call));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (singleFlight.coalescedCount() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(1, singleFlight.coalescedCount());
+        return waiter;
+    }
+    
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
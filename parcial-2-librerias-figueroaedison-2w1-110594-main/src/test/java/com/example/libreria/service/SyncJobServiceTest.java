@@ -0,0 +1,119 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.SyncJobDTO;
+import com.example.libreria.dto.SyncResultDTO;
+import com.example.libreria.exception.ResourceNotFoundException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.example.libreria.support.TestBooks.book;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SyncJobServiceTest {
+    
+    @Mock
+    private BookService bookService;
+    
+    private SyncJobService syncJobService;
+    
+    @BeforeEach
+    void setUp() {
+        syncJobService = new SyncJobService(bookService);
+    }
+    
+    @AfterEach
+    void tearDown() {
+        syncJobService.shutdown();
+    }
+    
+    @Test
+    void testStartSync_ReportsProgressWhileRunning() throws Exception {
+        CountDownLatch firstChunkDone = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        when(bookService.syncBooksFromExternalApi(any(SyncProgressListener.class))).thenAnswer(invocation -> {
+            SyncProgressListener listener = invocation.getArgument(0);
+            listener.onChunkCompleted(List.of(book(1L), book(2L)), new SyncResultDTO(2, 0, 0, 0, false));
+            firstChunkDone.countDown();
+            finish.await(5, TimeUnit.SECONDS);
+            return new SyncResultDTO(2, 0, 0, 3, false);
+        });
+        
+        SyncJob job = syncJobService.startSync();
+        assertTrue(firstChunkDone.await(5, TimeUnit.SECONDS));
+        
+        SyncJobDTO running = syncJobService.getJob(job.getId()).toDTO();
+        assertEquals("RUNNING", running.getStatus());
+        assertEquals(2L, running.getProcessed());
+        assertEquals(1, running.getChunks());
+        assertEquals(new SyncResultDTO(2, 0, 0, 0, false), running.getResult());
+        assertNotNull(running.getStartedAt());
+        assertNull(running.getFinishedAt());
+        
+        finish.countDown();
+        SyncJobDTO completed = awaitFinished(job);
+        assertEquals("COMPLETED", completed.getStatus());
+        assertEquals(new SyncResultDTO(2, 0, 0, 3, false), completed.getResult());
+        assertTrue(completed.getRowsPerSecond() > 0);
+        assertTrue(completed.getErrors().isEmpty());
+    }
+    
+    @Test
+    void testStartSync_WhileRunningReturnsSameJob() throws Exception {
+        CountDownLatch finish = new CountDownLatch(1);
+        when(bookService.syncBooksFromExternalApi(any(SyncProgressListener.class))).thenAnswer(invocation -> {
+            finish.await(5, TimeUnit.SECONDS);
+            return new SyncResultDTO(0, 0, 0, 0, false);
+        });
+        
+        SyncJob first = syncJobService.startSync();
+        SyncJob second = syncJobService.startSync();
+        finish.countDown();
+        awaitFinished(first);
+        SyncJob third = syncJobService.startSync();
+        awaitFinished(third);
+        
+        assertSame(first, second);
+        assertNotEquals(first.getId(), third.getId());
+        verify(bookService, times(2)).syncBooksFromExternalApi(any(SyncProgressListener.class));
+    }
+    
+    @Test
+    void testStartSync_FetchErrorFailsJob() throws Exception {
+        when(bookService.syncBooksFromExternalApi(any(SyncProgressListener.class)))
+                .thenThrow(new RuntimeException("Error al obtener libros de la API externa: timeout"));
+        
+        SyncJob job = syncJobService.startSync();
+        SyncJobDTO failed = awaitFinished(job);
+        
+        assertEquals("FAILED", failed.getStatus());
+        assertEquals(List.of("Error al obtener libros de la API externa: timeout"), failed.getErrors());
+        assertNotNull(failed.getFinishedAt());
+    }
+    
+    @Test
+    void testGetJob_NotFound() {
+        assertThrows(ResourceNotFoundException.class, () -> syncJobService.getJob("missing"));
+    }
+    
+    private SyncJobDTO awaitFinished(SyncJob job) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (job.isActive()) {
+            if (System.nanoTime() > deadline) {
+                fail("La sincronización no terminó");
+            }
+            Thread.sleep(5);
+        }
+        return job.toDTO();
+    }
+}
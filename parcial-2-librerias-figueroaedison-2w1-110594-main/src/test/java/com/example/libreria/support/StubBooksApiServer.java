@@ -0,0 +1,352 @@
+package com.example.libreria.support;
+
+import com.example.libreria.dto.ExternalBookDTO;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * Servidor HTTP local que imita la API externa de libros, para tests y benchmarks.
+ * Sirve GET /books (catálogo completo), GET /books?_page=1&_limit=100 (una página),
+ * GET /books?id=1&id=2 (varios ids) y GET /books/{id}.
+ * El catálogo completo lleva ETag y Last-Modified, que cambian con cada withBook, y responde 304
+ * a los pedidos condicionales si no hubo cambios.
+ *
+ * Además del catálogo explícito (withBook) puede servir un catálogo sintético de ids 1..N (TestBooks.synthetic) generado
+ * al vuelo, sin guardarlo en memoria, e inyectar latencia (fija o para una fracción de los pedidos),
+ * errores, respuestas que llegan de a poco, una paginación que no se respeta y un feed con un elemento
+ * que no es un libro.
+ */
+public class StubBooksApiServer implements AutoCloseable {
+    
+    static {
+        // Sin TCP_NODELAY el HttpServer del JDK suma ~40 ms por respuesta (Nagle + ACK retardado)
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+    
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ConcurrentSkipListMap<Long, ExternalBookDTO> books = new ConcurrentSkipListMap<>();
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private final AtomicInteger notModifiedCount = new AtomicInteger();
+    private final AtomicInteger errorCount = new AtomicInteger();
+    private volatile int version;
+    private volatile long syntheticSize;
+    private volatile boolean etagEnabled = true;
+    private volatile boolean pageIgnored;
+    private volatile boolean limitIgnored;
+    private volatile Instant lastModified = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+    private volatile Duration latency = Duration.ZERO;
+    private volatile double slowRate;
+    private volatile Duration slowLatency = Duration.ZERO;
+    private volatile double errorRate;
+    private volatile int errorStatus = 500;
+    private volatile int dripBytes;
+    private volatile Duration dripPause = Duration.ZERO;
+    private volatile int nullEntryPosition = -1;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    
+    public StubBooksApiServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        executor = Executors.newFixedThreadPool(32);
+        server.setExecutor(executor);
+        server.createContext("/books", this::handle);
+        server.start();
+    }
+    
+    public StubBooksApiServer withBook(long id, String title, String author, double price) {
+        books.put(id, TestBooks.book(id, title, BigDecimal.valueOf(price).toPlainString(), author));
+        catalogChanged();
+        return this;
+    }
+    
+    /**
+     * Catálogo sintético con ids 1..size. Cada libro se genera a partir de su id cuando se sirve,
+     * así que el tamaño no está limitado por la memoria. Los libros de withBook reemplazan a los sintéticos.
+     */
+    public StubBooksApiServer withSyntheticCatalog(long size) {
+        this.syntheticSize = size;
+        catalogChanged();
+        return this;
+    }
+    
+    /**
+     * Demora fija agregada a cada respuesta, para simular la latencia de red de la API real.
+     */
+    public StubBooksApiServer withLatency(Duration latency) {
+        this.latency = latency;
+        return this;
+    }
+    
+    /**
+     * Demora extra para una fracción de los pedidos (entre 0 y 1), elegidos al azar.
+     * Simula la cola de latencia de la API real: la mayoría responde rápido y unos pocos tardan mucho.
+     */
+    public StubBooksApiServer withSlowResponses(double rate, Duration latency) {
+        this.slowRate = rate;
+        this.slowLatency = latency;
+        return this;
+    }
+    
+    /**
+     * Responde con el status indicado a una fracción de los pedidos (entre 0 y 1), elegidos al azar.
+     */
+    public StubBooksApiServer withErrors(double rate, int status) {
+        this.errorRate = rate;
+        this.errorStatus = status;
+        return this;
+    }
+    
+    /**
+     * Escribe el cuerpo de las respuestas de a bytesPerWrite bytes, con una pausa entre escrituras.
+     * Simula una API lenta que mantiene la conexión activa sin llegar a disparar el timeout de lectura.
+     */
+    public StubBooksApiServer withSlowDrip(int bytesPerWrite, Duration pause) {
+        this.dripBytes = bytesPerWrite;
+        this.dripPause = pause;
+        return this;
+    }
+    
+    /**
+     * Deja de enviar ETag, para probar pedidos condicionales solo con Last-Modified.
+     */
+    public StubBooksApiServer withoutEtag() {
+        this.etagEnabled = false;
+        return this;
+    }
+    
+    /**
+     * Simula una API que no entiende la paginación: ignora _page y devuelve siempre la primera página
+     * (o, con ignoreLimit, el catálogo completo).
+     */
+    public StubBooksApiServer withPagingIgnored(boolean ignoreLimit) {
+        this.pageIgnored = true;
+        this.limitIgnored = ignoreLimit;
+        return this;
+    }
+    
+    /**
+     * Escribe un null en lugar del libro en la posición indicada (desde 0) del catálogo completo,
+     * corriendo los demás. Cuenta como un cambio del catálogo, así que no se responde 304.
+     */
+    public StubBooksApiServer withNullEntryAt(int position) {
+        this.nullEntryPosition = position;
+        catalogChanged();
+        return this;
+    }
+    
+    public String booksUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/books";
+    }
+    
+    public int requestCount() {
+        return requestCount.get();
+    }
+    
+    public int notModifiedCount() {
+        return notModifiedCount.get();
+    }
+    
+    public int errorCount() {
+        return errorCount.get();
+    }
+    
+    private void catalogChanged() {
+        version++;
+        // Last-Modified tiene resolución de segundos: se avanza para que el cambio se note
+        lastModified = lastModified.plusSeconds(1);
+    }
+    
+    private void handle(HttpExchange exchange) throws IOException {
+        requestCount.incrementAndGet();
+        pause(latency);
+        if (slowRate > 0 && ThreadLocalRandom.current().nextDouble() < slowRate) {
+            pause(slowLatency);
+        }
+        if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+            errorCount.incrementAndGet();
+            send(exchange, errorStatus, "{\"error\":\"injected\"}".getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+        
+        String path = exchange.getRequestURI().getPath();
+        String query = exchange.getRequestURI().getRawQuery();
+        boolean collection = path.equals("/books") || path.equals("/books/");
+        if (collection && query != null && query.contains("_page=")) {
+            int page = pageIgnored ? 1 : Integer.parseInt(queryParam(query, "_page"));
+            int limit = limitIgnored ? Integer.MAX_VALUE : Integer.parseInt(queryParam(query, "_limit"));
+            sendBooks(exchange, catalog((long) (page - 1) * limit).limit(limit).iterator(), -1);
+        } else if (collection && query != null) {
+            List<ExternalBookDTO> found = Arrays.stream(query.split("&"))
+                    .filter(param -> param.startsWith("id="))
+                    .map(param -> book(Long.parseLong(param.substring("id=".length()))))
+                    .filter(Objects::nonNull)
+                    .toList();
+            send(exchange, 200, objectMapper.writeValueAsBytes(found));
+        } else if (collection) {
+            String etag = "\"catalog-v" + version + "\"";
+            String modified = DateTimeFormatter.RFC_1123_DATE_TIME.format(lastModified.atZone(ZoneOffset.UTC));
+            if (etagEnabled) {
+                exchange.getResponseHeaders().add("ETag", etag);
+            }
+            exchange.getResponseHeaders().add("Last-Modified", modified);
+            if (isNotModified(exchange, etagEnabled ? etag : null)) {
+                notModifiedCount.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+            sendBooks(exchange, catalog(0).iterator(), nullEntryPosition);
+        } else {
+            ExternalBookDTO book = book(Long.parseLong(path.substring("/books/".length())));
+            if (book == null) {
+                send(exchange, 404, "{}".getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            send(exchange, 200, objectMapper.writeValueAsBytes(book));
+        }
+    }
+    
+    // Libros sintéticos en orden de id, seguidos de los explícitos que quedan fuera de ese rango.
+    // El salto de los sintéticos es directo, para que pedir una página no cueste recorrer las anteriores
+    private Stream<ExternalBookDTO> catalog(long offset) {
+        long size = syntheticSize;
+        Stream<ExternalBookDTO> synthetic = LongStream.rangeClosed(Math.min(offset, size) + 1, size)
+                .mapToObj(this::book);
+        Stream<ExternalBookDTO> explicit = books.values().stream()
+                .filter(book -> book.getId() < 1 || book.getId() > size)
+                .skip(Math.max(0, offset - size));
+        return Stream.concat(synthetic, explicit);
+    }
+    
+    private ExternalBookDTO book(long id) {
+        ExternalBookDTO book = books.get(id);
+        if (book != null || id < 1 || id > syntheticSize) {
+            return book;
+        }
+        return TestBooks.synthetic(id);
+    }
+    
+    private String queryParam(String query, String name) {
+        return Arrays.stream(query.split("&"))
+                .filter(param -> param.startsWith(name + "="))
+                .map(param -> param.substring(name.length() + 1))
+                .findFirst()
+                .orElseThrow();
+    }
+    
+    // If-None-Match tiene prioridad sobre If-Modified-Since (RFC 9110)
+    private boolean isNotModified(HttpExchange exchange, String etag) {
+        String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+        if (ifNoneMatch != null && etag != null) {
+            return ifNoneMatch.equals(etag);
+        }
+        String ifModifiedSince = exchange.getRequestHeaders().getFirst("If-Modified-Since");
+        if (ifModifiedSince != null) {
+            Instant since = ZonedDateTime.parse(ifModifiedSince, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+            return !lastModified.isAfter(since);
+        }
+        return false;
+    }
+    
+    private void pause(Duration duration) {
+        if (duration.isZero()) {
+            return;
+        }
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    // Arreglo JSON escrito en streaming (transferencia chunked), sin armar la respuesta en memoria
+    private void sendBooks(HttpExchange exchange, Iterator<ExternalBookDTO> catalog, int nullPosition)
+            throws IOException {
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, 0);
+        ObjectWriter writer = objectMapper.writerFor(ExternalBookDTO.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        try (OutputStream out = drip(exchange.getResponseBody());
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.writeStartArray();
+            for (int position = 0; catalog.hasNext(); position++) {
+                if (position == nullPosition) {
+                    generator.writeNull();
+                }
+                writer.writeValue(generator, catalog.next());
+            }
+            generator.writeEndArray();
+        } catch (IOException e) {
+            // El cliente cortó la conexión (por ejemplo, por timeout)
+        }
+    }
+    
+    private void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = drip(exchange.getResponseBody())) {
+            out.write(body);
+        } catch (IOException e) {
+            // El cliente cortó la conexión (por ejemplo, por timeout)
+        }
+    }
+    
+    // Las escrituras se juntan en bloques de dripBytes y cada bloque se envía seguido de una pausa
+    private OutputStream drip(OutputStream out) {
+        int bytes = dripBytes;
+        Duration pause = dripPause;
+        if (bytes <= 0) {
+            return out;
+        }
+        return new BufferedOutputStream(new FilterOutputStream(out) {
+            @Override
+            public void write(byte[] buffer, int offset, int length) throws IOException {
+                for (int written = 0; written < length; written += bytes) {
+                    out.write(buffer, offset + written, Math.min(bytes, length - written));
+                    out.flush();
+                    pause(pause);
+                }
+            }
+            
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[] {(byte) b}, 0, 1);
+            }
+        }, bytes);
+    }
+    
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.libreria.support;
+
+import com.example.libreria.dto.ExternalBookDTO;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Libros de la API externa para los tests. El catálogo sintético se genera a partir del id, así que
+ * StubBooksApiServer y los benchmarks arman el mismo libro para el mismo id sin guardarlo en memoria.
+ */
+public final class TestBooks {
+
+    private static final String[] AUTHORS = {
+            "J. R. R. Tolkien", "Douglas Adams", "Gabriel García Márquez", "Jane Austen",
+            "Ursula K. Le Guin", "Jorge Luis Borges", "Mary Shelley", "Isaac Asimov"
+    };
+
+    private TestBooks() {
+    }
+
+    /**
+     * Libro con id y título ("Book {id}"), sin el resto de los campos
+     */
+    public static ExternalBookDTO book(Long id) {
+        ExternalBookDTO book = new ExternalBookDTO();
+        book.setId(id);
+        book.setTitle("Book " + id);
+        return book;
+    }
+
+    /**
+     * Libro con todos los campos; el año, las ediciones y el texto completo son fijos
+     */
+    public static ExternalBookDTO book(Long id, String title, String price, String... authors) {
+        return new ExternalBookDTO(id, true, 120, title, List.of(authors), 1954, new BigDecimal(price));
+    }
+
+    /**
+     * Libro del catálogo sintético: siempre el mismo para el mismo id, con precio entre 5.00 y 49.99
+     */
+    public static ExternalBookDTO synthetic(long id) {
+        return new ExternalBookDTO(id, id % 3 != 0, (int) (id % 200) + 1, "Synthetic Book #" + id,
+                List.of(AUTHORS[(int) (id % AUTHORS.length)]), 1800 + (int) (id % 225),
+                BigDecimal.valueOf(500 + id % 4500, 2));
+    }
+
+    /**
+     * El libro sintético con otro título: cambia su huella de contenido, así que una sincronización lo actualiza
+     */
+    public static ExternalBookDTO revised(long id) {
+        ExternalBookDTO book = synthetic(id);
+        book.setTitle("Revised Synthetic Book #" + id);
+        return book;
+    }
+}